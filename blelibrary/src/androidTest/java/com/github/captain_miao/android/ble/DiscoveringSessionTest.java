@@ -0,0 +1,111 @@
+package com.github.captain_miao.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.github.captain_miao.android.ble.constant.BleScanState;
+import com.github.captain_miao.android.ble.operation.GattOperation;
+import com.github.captain_miao.android.ble.operation.GattOperationQueue;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * what onDiscoverServices queues without an address goes to the device being discovered
+ */
+public class DiscoveringSessionTest extends TestCase {
+    private HandlerThread mThread;
+    private DiscoveringService mService;
+    private GattSession mLatest;
+    private GattSession mDiscovered;
+
+    private static class PendingOperation extends GattOperation {
+        PendingOperation() {
+            super(Type.READ_REMOTE_RSSI);
+        }
+
+        @Override
+        public boolean execute(BluetoothGatt gatt) {
+            return true;
+        }
+    }
+
+    private static class DiscoveringService extends BaseBleService {
+        final GattOperation mOperation = new PendingOperation();
+
+        @Override
+        public void onDiscoverServices(BluetoothGatt gatt) {
+            write(mOperation);
+        }
+
+        @Override
+        public void onBleScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+        }
+
+        @Override
+        public void onBleScanFailed(BleScanState scanState) {
+        }
+    }
+
+    private GattSession session(String address) {
+        GattSession session = new GattSession(address);
+        session.mOperationQueue = new GattOperationQueue(null, new Handler(mThread.getLooper()),
+                new GattOperationQueue.OperationListener() {
+                    @Override
+                    public void onOperationCompleted(GattOperation operation) {
+                    }
+                });
+        return session;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        mThread = new HandlerThread("service");
+        mThread.start();
+        final CountDownLatch created = new CountDownLatch(1);
+        new Handler(mThread.getLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                mService = new DiscoveringService();
+                created.countDown();
+            }
+        });
+        assertTrue(created.await(5, TimeUnit.SECONDS));
+        mService.setPreferredMtu(0);
+        mLatest = session("00:11:22:33:44:01");
+        mDiscovered = session("00:11:22:33:44:02");
+        mDiscovered.mSetupStartedAt = SystemClock.elapsedRealtime();
+        mService.setCurrentSession(mLatest);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mLatest.mOperationQueue.clear();
+        mDiscovered.mOperationQueue.clear();
+        mService.onDestroy();
+        mThread.quit();
+    }
+
+    public void testWriteGoesToTheDiscoveredDevice() {
+        mService.onServicesDiscovered(mDiscovered, null);
+
+        assertSame(mService.mOperation, mDiscovered.mOperationQueue.getCurrent());
+        assertTrue(mLatest.mOperationQueue.isIdle());
+        //and it is part of the setup of that device
+        assertTrue(mDiscovered.mSetupOperations.contains(mService.mOperation));
+    }
+
+    public void testLatestDeviceIsTheDefaultAfterTheDiscovery() {
+        mService.onServicesDiscovered(mDiscovered, null);
+
+        assertSame(mLatest, mService.getSession(null));
+    }
+}
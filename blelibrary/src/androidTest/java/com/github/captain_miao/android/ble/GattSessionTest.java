@@ -0,0 +1,25 @@
+package com.github.captain_miao.android.ble;
+
+import junit.framework.TestCase;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class GattSessionTest extends TestCase {
+    private static final UUID CHARACTERISTIC = UUID.fromString("0000fff1-0000-1000-8000-00805f9b34fb");
+
+    public void testDeviceWithNotificationsOnIsNotIdle() {
+        GattSession session = new GattSession("00:11:22:33:44:01");
+        assertTrue(session.isIdle());
+
+        //a sensor which only notifies never queues anything
+        session.mNotifying.add(CHARACTERISTIC);
+        assertFalse(session.isIdle());
+
+        session.mNotifying.remove(CHARACTERISTIC);
+        assertTrue(session.isIdle());
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.captain_miao.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+
+import com.github.captain_miao.android.ble.constant.BleScanState;
+import com.github.captain_miao.android.ble.constant.OperationPriority;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * a caller reusing its array right after a direct call must not change the queued write
+ */
+public class LocalWriteSnapshotTest extends TestCase {
+    private static final UUID SERVICE = UUID.fromString("0000fff0-0000-1000-8000-00805f9b34fb");
+    private static final UUID CHARACTERISTIC = UUID.fromString("0000fff1-0000-1000-8000-00805f9b34fb");
+
+    private HandlerThread mThread;
+    private RecordingService mService;
+    private BluetoothHelper mHelper;
+
+    private static class RecordingService extends BaseBleService {
+        final List<byte[]> mWritten = new ArrayList<>();
+        final CountDownLatch mDone = new CountDownLatch(1);
+
+        @Override
+        public void onDiscoverServices(BluetoothGatt gatt) {
+        }
+
+        @Override
+        public void onBleScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+        }
+
+        @Override
+        public void onBleScanFailed(BleScanState scanState) {
+        }
+
+        @Override
+        protected synchronized boolean writeToCharacteristic(GattSession session, UUID serviceUUID,
+                                                             UUID characteristicUUID, byte[] values,
+                                                             OperationPriority priority, Object requester,
+                                                             int requestId) {
+            mWritten.add(values.clone());
+            mDone.countDown();
+            return true;
+        }
+
+        @Override
+        protected synchronized boolean writeToCharacteristics(GattSession session, List<CharacteristicWrite> writes,
+                                                              OperationPriority priority) {
+            for (CharacteristicWrite write : writes) {
+                mWritten.add(write.getValue().clone());
+            }
+            mDone.countDown();
+            return true;
+        }
+    }
+
+    private static class TestHelper extends BluetoothHelper {
+        TestHelper() {
+            super(null, Looper.getMainLooper());
+        }
+
+        @Override
+        public boolean bindService(OnBindListener bindListener) {
+            return true;
+        }
+
+        @Override
+        public void unbindService() {
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        mThread = new HandlerThread("service");
+        mThread.start();
+        final CountDownLatch created = new CountDownLatch(1);
+        new Handler(mThread.getLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                //its handler runs on this thread
+                mService = new RecordingService();
+                created.countDown();
+            }
+        });
+        assertTrue(created.await(5, TimeUnit.SECONDS));
+        IBinder binder = mService.onBind(new Intent());
+        mHelper = new TestHelper();
+        mHelper.onServiceConnected(null, binder);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mHelper.release();
+        mService.onDestroy();
+        mThread.quit();
+    }
+
+    //keeps the service thread busy until the latch opens, so the direct call stays queued
+    private CountDownLatch blockServiceThread() {
+        final CountDownLatch release = new CountDownLatch(1);
+        mService.postLocalCall(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return release;
+    }
+
+    public void testWriteKeepsTheValueOfTheCall() throws Exception {
+        byte[] values = {1, 2, 3, 4};
+        CountDownLatch release = blockServiceThread();
+
+        assertTrue(mHelper.writeCharacteristic(SERVICE, CHARACTERISTIC, values));
+        //a streaming producer fills the same array with its next packet
+        Arrays.fill(values, (byte) 9);
+        release.countDown();
+
+        assertTrue(mService.mDone.await(5, TimeUnit.SECONDS));
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3, 4}, mService.mWritten.get(0)));
+    }
+
+    public void testBatchKeepsTheValuesAndTheListOfTheCall() throws Exception {
+        byte[] values = {1, 2};
+        List<CharacteristicWrite> writes = new ArrayList<>();
+        writes.add(new CharacteristicWrite(SERVICE, CHARACTERISTIC, values));
+        CountDownLatch release = blockServiceThread();
+
+        assertTrue(mHelper.writeCharacteristics(writes));
+        Arrays.fill(values, (byte) 9);
+        writes.add(new CharacteristicWrite(SERVICE, CHARACTERISTIC, new byte[]{7}));
+        release.countDown();
+
+        assertTrue(mService.mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mService.mWritten.size());
+        assertTrue(Arrays.equals(new byte[]{1, 2}, mService.mWritten.get(0)));
+    }
+}
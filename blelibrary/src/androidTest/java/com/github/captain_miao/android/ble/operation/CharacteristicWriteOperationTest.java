@@ -0,0 +1,54 @@
+package com.github.captain_miao.android.ble.operation;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import junit.framework.TestCase;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class CharacteristicWriteOperationTest extends TestCase {
+    private static final int GATT_SUCCESS = 0;
+    private static final int GATT_FAILURE = 257;
+
+    private static CharacteristicWriteOperation packet(CharacteristicWriteOperation.SplitStatus status, int requestId) {
+        CharacteristicWriteOperation operation = new CharacteristicWriteOperation(null, new byte[]{1})
+                .setSplitStatus(status);
+        operation.setRequest(requestId == 0 ? null : new Object(), requestId);
+        return operation;
+    }
+
+    public void testLastPacketReportsTheFirstFailure() {
+        CharacteristicWriteOperation.SplitStatus status = new CharacteristicWriteOperation.SplitStatus();
+        CharacteristicWriteOperation first = packet(status, 0);
+        CharacteristicWriteOperation second = packet(status, 0);
+        CharacteristicWriteOperation last = packet(status, 7);
+
+        first.onCallback(null, GattOperation.Type.CHARACTERISTIC_WRITE, null, GATT_SUCCESS);
+        second.fail(BleConstants.GATT_OPERATION_TIMEOUT);
+        last.onCallback(null, GattOperation.Type.CHARACTERISTIC_WRITE, null, GATT_FAILURE);
+
+        assertEquals(GATT_SUCCESS, first.getResultStatus());
+        assertEquals(BleConstants.GATT_OPERATION_TIMEOUT, second.getResultStatus());
+        assertEquals(BleConstants.GATT_OPERATION_TIMEOUT, last.getResultStatus());
+    }
+
+    public void testSuccessfulSplitWriteSucceeds() {
+        CharacteristicWriteOperation.SplitStatus status = new CharacteristicWriteOperation.SplitStatus();
+        CharacteristicWriteOperation first = packet(status, 0);
+        CharacteristicWriteOperation last = packet(status, 7);
+
+        first.onCallback(null, GattOperation.Type.CHARACTERISTIC_WRITE, null, GATT_SUCCESS);
+        last.onCallback(null, GattOperation.Type.CHARACTERISTIC_WRITE, null, GATT_SUCCESS);
+
+        assertEquals(GATT_SUCCESS, last.getResultStatus());
+    }
+
+    public void testSingleWriteReportsItsOwnStatus() {
+        CharacteristicWriteOperation operation = packet(null, 7);
+        operation.onCallback(null, GattOperation.Type.CHARACTERISTIC_WRITE, null, GATT_FAILURE);
+
+        assertEquals(GATT_FAILURE, operation.getResultStatus());
+    }
+}
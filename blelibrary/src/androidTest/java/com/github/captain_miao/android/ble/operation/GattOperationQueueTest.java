@@ -0,0 +1,108 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class GattOperationQueueTest extends TestCase {
+    private static final long TIMEOUT = 50;
+
+    private HandlerThread mThread;
+    private GattOperationQueue mQueue;
+    private CountDownLatch mTimedOut;
+
+    private static class RssiOperation extends GattOperation {
+        RssiOperation() {
+            super(Type.READ_REMOTE_RSSI);
+        }
+
+        @Override
+        public boolean execute(BluetoothGatt gatt) {
+            return true;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        mThread = new HandlerThread("queue");
+        mThread.start();
+        mTimedOut = new CountDownLatch(1);
+        mQueue = new GattOperationQueue(null, new Handler(mThread.getLooper()),
+                new GattOperationQueue.OperationListener() {
+                    @Override
+                    public void onOperationCompleted(GattOperation operation) {
+                        mTimedOut.countDown();
+                    }
+                });
+        mQueue.setTimeout(GattOperation.Type.READ_REMOTE_RSSI, TIMEOUT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mQueue.clear();
+        mThread.quit();
+    }
+
+    public void testLateCallbackDoesNotFinishTheNextOperation() throws Exception {
+        RssiOperation first = new RssiOperation();
+        RssiOperation second = new RssiOperation();
+        second.setTimeout(60000);
+        mQueue.enqueue(first);
+        mQueue.enqueue(second);
+
+        assertTrue(mTimedOut.await(5, TimeUnit.SECONDS));
+        assertEquals(BleConstants.GATT_OPERATION_TIMEOUT, first.getStatus());
+        assertSame(second, mQueue.getCurrent());
+        assertTrue(second.getGeneration() > first.getGeneration());
+
+        //the stack confirms the timed out request, the callback is dropped
+        assertNull(mQueue.onCallback(GattOperation.Type.READ_REMOTE_RSSI, null, BluetoothGatt.GATT_FAILURE));
+        assertFalse(second.isFinished());
+        assertEquals(0, mQueue.getStaleCount());
+
+        //the next callback is the answer of the second request
+        assertSame(second, mQueue.onCallback(GattOperation.Type.READ_REMOTE_RSSI, null, BluetoothGatt.GATT_SUCCESS));
+        assertTrue(second.isFinished());
+        assertEquals(BluetoothGatt.GATT_SUCCESS, second.getStatus());
+        assertTrue(mQueue.isIdle());
+    }
+
+    public void testCallbackOfTheNextOperationIsKeptWhenTheLateOneNeverComes() throws Exception {
+        mQueue.setStaleGrace(100);
+        RssiOperation first = new RssiOperation();
+        RssiOperation second = new RssiOperation();
+        second.setTimeout(60000);
+        mQueue.enqueue(first);
+        mQueue.enqueue(second);
+
+        assertTrue(mTimedOut.await(5, TimeUnit.SECONDS));
+        assertSame(second, mQueue.getCurrent());
+        //the stack dropped the first request (e.g. status 133), only the answer of the second comes
+        Thread.sleep(200);
+
+        assertSame(second, mQueue.onCallback(GattOperation.Type.READ_REMOTE_RSSI, null, BluetoothGatt.GATT_SUCCESS));
+        assertTrue(second.isFinished());
+        assertEquals(BluetoothGatt.GATT_SUCCESS, second.getStatus());
+        assertEquals(0, mQueue.getStaleCount());
+    }
+
+    public void testClearForgetsTimedOutOperations() throws Exception {
+        mQueue.enqueue(new RssiOperation());
+        assertTrue(mTimedOut.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mQueue.getStaleCount());
+
+        mQueue.clear();
+        assertEquals(0, mQueue.getStaleCount());
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class ReliableWriteOperationTest extends TestCase {
+    private static final int GATT_SUCCESS = 0;
+    private static final int GATT_FAILURE = 257;
+    private static final int GATT_INVALID_ATTRIBUTE_LENGTH = 13;
+
+    //records the calls into the stack instead of making them
+    private static class Recorder extends ReliableWriteOperation {
+        final List<String> calls = new ArrayList<>();
+        boolean refusePrepare = false;
+
+        Recorder(int writes) {
+            for (int i = 0; i < writes; i++) {
+                add(null, new byte[]{(byte) i});
+            }
+        }
+
+        @Override
+        protected boolean begin(BluetoothGatt gatt) {
+            calls.add("begin");
+            return true;
+        }
+
+        @Override
+        protected boolean prepare(BluetoothGatt gatt, CharacteristicWriteOperation write) {
+            calls.add("prepare " + write.getValue()[0]);
+            return !refusePrepare;
+        }
+
+        @Override
+        protected boolean commit(BluetoothGatt gatt) {
+            calls.add("execute");
+            return true;
+        }
+
+        @Override
+        protected void abort(BluetoothGatt gatt) {
+            calls.add("abort");
+        }
+
+        void prepared(int status) {
+            onCallback(null, Type.CHARACTERISTIC_WRITE, null, status);
+        }
+    }
+
+    public void testEveryPreparedWriteThenExecute() {
+        Recorder operation = new Recorder(2);
+
+        assertTrue(operation.execute(null));
+        operation.prepared(GATT_SUCCESS);
+        operation.prepared(GATT_SUCCESS);
+        assertFalse(operation.isFinished());
+        operation.onCallback(null, GattOperation.Type.RELIABLE_WRITE, null, GATT_SUCCESS);
+
+        assertEquals(Arrays.asList("begin", "prepare 0", "prepare 1", "execute"), operation.calls);
+        assertTrue(operation.isFinished());
+        assertEquals(GATT_SUCCESS, operation.getStatus());
+    }
+
+    public void testFailedPreparedWriteAbortsTheBatch() {
+        Recorder operation = new Recorder(3);
+        operation.execute(null);
+        operation.prepared(GATT_SUCCESS);
+
+        operation.prepared(GATT_INVALID_ATTRIBUTE_LENGTH);
+
+        assertEquals(Arrays.asList("begin", "prepare 0", "prepare 1", "abort"), operation.calls);
+        //in flight until the stack answers the abort, only that answer belongs to it
+        assertFalse(operation.isFinished());
+        assertFalse(operation.matches(GattOperation.Type.CHARACTERISTIC_WRITE, null));
+        assertTrue(operation.matches(GattOperation.Type.RELIABLE_WRITE, null));
+
+        operation.onCallback(null, GattOperation.Type.RELIABLE_WRITE, null, GATT_SUCCESS);
+        assertTrue(operation.isFinished());
+        assertEquals(GATT_INVALID_ATTRIBUTE_LENGTH, operation.getStatus());
+    }
+
+    public void testRefusedWriteAbortsTheBatch() {
+        Recorder operation = new Recorder(2);
+        operation.execute(null);
+        operation.refusePrepare = true;
+
+        operation.prepared(GATT_SUCCESS);
+        operation.onCallback(null, GattOperation.Type.RELIABLE_WRITE, null, GATT_SUCCESS);
+
+        assertEquals(Arrays.asList("begin", "prepare 0", "prepare 1", "abort"), operation.calls);
+        assertEquals(GATT_FAILURE, operation.getStatus());
+    }
+
+    public void testRefusedFirstWriteWaitsForTheAbort() {
+        Recorder operation = new Recorder(2);
+        operation.refusePrepare = true;
+
+        assertTrue(operation.execute(null));
+        assertFalse(operation.isFinished());
+        operation.onCallback(null, GattOperation.Type.RELIABLE_WRITE, null, GATT_SUCCESS);
+
+        assertEquals(Arrays.asList("begin", "prepare 0", "abort"), operation.calls);
+        assertEquals(GATT_FAILURE, operation.getStatus());
+    }
+
+    public void testUnansweredAbortTimesOutWithoutASecondAbort() {
+        Recorder operation = new Recorder(2);
+        operation.execute(null);
+        operation.prepared(GATT_INVALID_ATTRIBUTE_LENGTH);
+
+        operation.onTimeout(null);
+
+        assertEquals(Arrays.asList("begin", "prepare 0", "abort"), operation.calls);
+        assertEquals(BleConstants.GATT_OPERATION_TIMEOUT, operation.getStatus());
+    }
+
+    public void testTimeoutAbortsTheBatch() {
+        Recorder operation = new Recorder(2);
+        operation.execute(null);
+
+        operation.onTimeout(null);
+
+        assertEquals("abort", operation.calls.get(operation.calls.size() - 1));
+        assertEquals(BleConstants.GATT_OPERATION_TIMEOUT, operation.getStatus());
+    }
+}
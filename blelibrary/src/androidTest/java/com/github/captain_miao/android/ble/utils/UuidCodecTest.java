@@ -0,0 +1,42 @@
+package com.github.captain_miao.android.ble.utils;
+
+import android.os.Bundle;
+
+import junit.framework.TestCase;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * the codec on a real Bundle, the encoding itself is covered by UuidLongsTest
+ */
+public class UuidCodecTest extends TestCase {
+    private static final UUID UUID_A = UUID.fromString("0000fff1-0000-1000-8000-00805f9b34fb");
+    private static final String KEY = "characteristic_uuid";
+
+    public void testBundleRoundTrip() {
+        Bundle bundle = new Bundle();
+        UuidCodec.putUuid(bundle, KEY, UUID_A);
+
+        assertEquals(UUID_A, UuidCodec.getUuid(bundle, KEY));
+        assertFalse(bundle.containsKey(KEY));
+    }
+
+    public void testLegacyBundleKeepsTheSerializable() {
+        Bundle bundle = new Bundle();
+        UuidCodec.putUuid(bundle, KEY, UUID_A, true);
+
+        assertEquals(UUID_A, bundle.getSerializable(KEY));
+    }
+
+    public void testNullIsNotPut() {
+        Bundle bundle = new Bundle();
+        UuidCodec.putUuid(bundle, KEY, null, true);
+
+        assertTrue(bundle.isEmpty());
+        assertNull(UuidCodec.getUuid(bundle, KEY));
+        assertNull(UuidCodec.getUuid(null, KEY));
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.captain_miao.android.ble;
 
 import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 
 import java.lang.ref.WeakReference;
@@ -22,6 +23,12 @@ public class AppHandler<T> extends Handler {
         this.mMessageListener = listener;
     }
 
+    public AppHandler(Looper looper, T reference, HandleMessageListener<T> listener) {
+        super(looper);
+        this.mReference = new WeakReference<>(reference);
+        this.mMessageListener = listener;
+    }
+
     @Override
     public final void handleMessage(Message msg) {
         T reference = mReference.get();
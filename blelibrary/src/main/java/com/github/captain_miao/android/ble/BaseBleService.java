@@ -13,63 +13,210 @@ import android.bluetooth.BluetoothManager;
 import android.bluetooth.BluetoothProfile;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.IBinder;
 import android.os.Message;
 import android.os.Messenger;
+import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import android.os.SystemClock;
 
+import com.github.captain_miao.android.ble.batch.NotificationBatch;
+import com.github.captain_miao.android.ble.batch.NotificationBatchCodec;
+import com.github.captain_miao.android.ble.batch.NotificationBatcher;
 import com.github.captain_miao.android.ble.constant.BleConnectState;
 import com.github.captain_miao.android.ble.constant.BleConstants;
+import com.github.captain_miao.android.ble.constant.OperationPriority;
+import com.github.captain_miao.android.ble.constant.OverflowPolicy;
+import com.github.captain_miao.android.ble.flow.OutboundQueue;
+import com.github.captain_miao.android.ble.operation.BufferPool;
+import com.github.captain_miao.android.ble.operation.BulkTransferOperation;
+import com.github.captain_miao.android.ble.operation.CharacteristicReadOperation;
+import com.github.captain_miao.android.ble.operation.CharacteristicWriteOperation;
+import com.github.captain_miao.android.ble.operation.DescriptorReadOperation;
+import com.github.captain_miao.android.ble.operation.DescriptorWriteOperation;
+import com.github.captain_miao.android.ble.operation.GattOperation;
+import com.github.captain_miao.android.ble.operation.GattOperationQueue;
+import com.github.captain_miao.android.ble.operation.ReadRssiOperation;
+import com.github.captain_miao.android.ble.operation.ReliableWriteOperation;
+import com.github.captain_miao.android.ble.operation.RequestMtuOperation;
+import com.github.captain_miao.android.ble.operation.StreamWriteOperation;
+import com.github.captain_miao.android.ble.operation.WriteCoalescer;
+import com.github.captain_miao.android.ble.pool.ConnectionPool;
+import com.github.captain_miao.android.ble.pool.SetupScheduler;
+import com.github.captain_miao.android.ble.ring.NotificationRing;
+import com.github.captain_miao.android.ble.ring.NotificationRingWriter;
+import com.github.captain_miao.android.ble.subscription.SubscriptionFilter;
+import com.github.captain_miao.android.ble.subscription.SubscriptionIndex;
+import com.github.captain_miao.android.ble.transfer.BulkTransfer;
+import com.github.captain_miao.android.ble.transfer.TransferListener;
+import com.github.captain_miao.android.ble.transfer.TransferSource;
 import com.github.captain_miao.android.ble.utils.BleLog;
 import com.github.captain_miao.android.ble.utils.BleUtils;
 import com.github.captain_miao.android.ble.utils.HexUtil;
-
+import com.github.captain_miao.android.ble.utils.UuidCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
-public abstract class BaseBleService extends Service implements SimpleScanCallback{
+public abstract class BaseBleService extends Service implements SimpleScanCallback {
 	private final static String TAG = BaseBleService.class.getName();
 
 	protected final BleServiceHandle mHandler;
 	private final Messenger mMessenger;
 
-	private BluetoothGatt mGatt = null;
+	//connections by device address
+	private final Map<String, GattSession> mSessions = new LinkedHashMap<>();
+	//the latest connected device, the calls without a device go to it
+	private GattSession mCurrentSession = null;
+	//the device whose onDiscoverServices runs on this thread, its calls without a device go to it
+	private final ThreadLocal<GattSession> mDiscoveringSession = new ThreadLocal<>();
+	//bounds the open connections under the limit of the stack, evicts idle ones
+	private final ConnectionPool mConnectionPool = new ConnectionPool(BleConstants.DEFAULT_MAX_CONNECTIONS);
+	private final ConnectionPool.IdleCheck mIdleCheck = new ConnectionPool.IdleCheck() {
+		@Override
+		public boolean isIdle(String address) {
+			GattSession session = mSessions.get(address);
+			return session == null || (session.isIdle()
+					&& (session != mBulkSession || mBulkTransfer == null || mBulkTransfer.isCompleted()));
+		}
+	};
+	//the gatt gets its disconnect callback before it is closed
+	private static final long SESSION_CLOSE_DELAY = 500;
+	//one device at a time goes through connect, discovery, MTU and CCCD writes
+	private final SetupScheduler<GattSession> mSetupScheduler = new SetupScheduler<>();
+	private long mSetupTimeout = BleConstants.DEFAULT_SETUP_TIMEOUT;
+	private final Runnable mSetupTimeoutTask = new Runnable() {
+		@Override
+		public void run() {
+			GattSession session;
+			synchronized (BaseBleService.this) {
+				session = mSetupScheduler.getActive();
+			}
+			if (session != null) {
+				//a stalled connect or discovery would keep one of the few gatt clients of the stack,
+				//the device is closed and reported disconnected, its next connect starts over
+				BleLog.w(TAG, "setup timed out, close " + session);
+				synchronized (BaseBleService.this) {
+					mConnectionPool.remove(session.getAddress());
+				}
+				closeSession(session, BleConstants.GATT_OPERATION_TIMEOUT);
+				updateState(session, BleConnectState.DISCONNECTED);
+			}
+		}
+	};
+	//scan state, or the state of the latest device event
 	public BleConnectState mState = BleConnectState.INITIALED;
 	private BleScanner mBleScanner;
 
 	//Messenger queue
 	private final List<Messenger> mClients = new LinkedList<>();
-	protected static final Queue<Object> sWriteQueue = new ConcurrentLinkedQueue<>();
-	private static boolean sIsWriting = false;
+	//clients which registered without a protocol version, they still read Serializable UUIDs
+	private final List<Messenger> mLegacyClients = new LinkedList<>();
+	//remote clients which read notifications from the shared ring, a subset of mClients
+	private final List<Messenger> mRingClients = new LinkedList<>();
+	private NotificationRingWriter mNotificationRing = null;
+	private File mNotificationRingFile = null;
+	private int mRingSlots = NotificationRing.DEFAULT_SLOTS;
+	private int mRingSlotSize = NotificationRing.DEFAULT_SLOT_SIZE;
+	private boolean mRingWakeupPending = false;
+	private final Runnable mRingWakeup = new Runnable() {
+		@Override
+		public void run() {
+			sendRingWakeup();
+		}
+	};
+	//remote clients by the events they subscribed
+	private final SubscriptionIndex<Messenger> mSubscriptions = new SubscriptionIndex<>();
+	private final List<Messenger> mRecipients = new ArrayList<>();
+	//bounded outbound queues of the remote clients which asked for flow control
+	private final Map<Messenger, OutboundQueue<Message>> mOutboxes = new HashMap<>();
+	private static final Object RING_WAKEUP_KEY = new Object();
+	private static final Object DROPPED_KEY = new Object();
+	//remote clients which get their notifications in batches
+	private final Map<Messenger, NotificationBatcher> mNotificationBatchers = new HashMap<>();
+	//clients in this process, called directly
+	private final List<LocalBleClient> mLocalClients = new CopyOnWriteArrayList<>();
+	//bound services of this process by their binder, lets BluetoothHelper skip the Messenger
+	private static final Map<IBinder, BaseBleService> sLocalServices = new HashMap<>();
+	private final Map<GattOperation.Type, Long> mOperationTimeouts = new EnumMap<>(GattOperation.Type.class);
+	//watchdog counters of the previous connections
+	private int mOperationTimeoutCount = 0;
+	private int mOperationStallCount = 0;
+	private int mStarvationLimit = GattOperationQueue.DEFAULT_STARVATION_LIMIT;
+	//opt-in merging of small BULK writes, per connection
+	private long mCoalesceMaxDelay = 0;
+	private int mCoalesceMaxBytes = 0;
+	private int mPreferredMtu = BleConstants.MAX_MTU;
+	private NotificationAssembler mNotificationAssembler = null;
+	//payload snapshots of queued writes
+	private final BufferPool mBufferPool = new BufferPool();
+	//the one bulk transfer, kept across connections to resume it
+	private BulkTransfer mBulkTransfer = null;
+	private BulkTransferOperation mBulkOperation = null;
+	private GattSession mBulkSession = null;
+	private UUID mBulkServiceUuid;
+	private UUID mBulkCharacteristicUuid;
+	private boolean mBulkResumeOnConnect = false;
+	//runs listeners on the service thread, out of the gatt callback
+	private final Executor mServiceExecutor = new Executor() {
+		@Override
+		public void execute(Runnable runnable) {
+			mHandler.post(runnable);
+		}
+	};
 
 	//after discover services call it.
+	//calls without an address made from it go to the device of the gatt, not to the latest connected one
 	public abstract void onDiscoverServices(final BluetoothGatt gatt);
 
 
-	private BluetoothGattCallback mGattCallback = new BluetoothGattCallback() {
+	//the callback of one connection, events of the device go to its session
+	private class SessionCallback extends BluetoothGattCallback {
+		private final GattSession mSession;
+
+		SessionCallback(GattSession session) {
+			this.mSession = session;
+		}
+
 		@Override
 		public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
 			BleLog.i(TAG, "onConnectionStateChange: State = " + BleUtils.getBleConnectStatus(status)
 					+ " newState = " + BleUtils.getBleConnectStatus(newState));
 
 			if (newState == BluetoothProfile.STATE_CONNECTED) {
-				updateState(BleConnectState.CONNECTED);
+				updateState(mSession, BleConnectState.CONNECTED);
 				//start discoverServices
 				BleLog.i(TAG, "gatt.discoverServices()");
 				gatt.discoverServices();
 			} else if (newState == BluetoothProfile.STATE_CONNECTING) {
-				updateState(BleConnectState.CONNECTING);
+				updateState(mSession, BleConnectState.CONNECTING);
 			} else if (newState == BluetoothProfile.STATE_DISCONNECTING) {
-				updateState(BleConnectState.DISCONNECTING);
+				updateState(mSession, BleConnectState.DISCONNECTING);
 			} else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
 				//disconnect
-				sIsWriting = false;
-				sWriteQueue.clear();
-				updateState(BleConnectState.DISCONNECTED);
+				clearOperationQueue(mSession);
+				suspendBulkTransfer(mSession, status);
+				if (mNotificationAssembler != null) {
+					mNotificationAssembler.reset(mSession.getAddress());
+				}
+				updateState(mSession, BleConnectState.DISCONNECTED);
+				finishSetup(mSession, status == BluetoothGatt.GATT_SUCCESS ? BluetoothGatt.GATT_FAILURE : status);
             }
 		}
 
@@ -77,14 +224,14 @@ public abstract class BaseBleService extends Service implements SimpleScanCallba
 		public void onServicesDiscovered(BluetoothGatt gatt, int status) {
 
 			if (status == BluetoothGatt.GATT_SUCCESS) {
-				onDiscoverServices(gatt);
-				updateState(BleConnectState.SERVICE_IS_DISCOVERED);
+				BaseBleService.this.onServicesDiscovered(mSession, gatt);
 			} else {
-				BleUtils.refreshDeviceCache(mGatt);
+				BleUtils.refreshDeviceCache(gatt);
 				//ServicesDiscovered: such as 129
-				if(mState != BleConnectState.SERVICE_IS_NOT_DISCOVERED) {
-                    updateState(mState);
+				if(mSession.mState != BleConnectState.SERVICE_IS_NOT_DISCOVERED) {
+                    updateState(mSession, mSession.mState);
                 }
+				finishSetup(mSession, status);
 			}
 
 			//MSG_BLE_ID_SERVICES_DISCOVERED
@@ -92,6 +239,7 @@ public abstract class BaseBleService extends Service implements SimpleScanCallba
 			msg.what = BleConstants.MSG_BLE_ID_SERVICES_DISCOVERED;
 			msg.arg1 = status;
        		msg.obj = gatt;
+			msg.setData(obtainData(mSession, null));
 			notifyAllBleClients(msg);
 			BleLog.i(TAG, "onServicesDiscovered: " + BleUtils.getGattStatus(status));
 		}
@@ -99,10 +247,26 @@ public abstract class BaseBleService extends Service implements SimpleScanCallba
 		@Override
 		public void onCharacteristicWrite(BluetoothGatt gatt,
 				BluetoothGattCharacteristic characteristic, int status) {
+			GattOperation operation = onOperationCallback(mSession, GattOperation.Type.CHARACTERISTIC_WRITE, characteristic, status);
+			if (operation != null && operation.getType() != GattOperation.Type.CHARACTERISTIC_WRITE) {
+				//packet of a stream or prepared write of a reliable write
+				if (operation.isFinished()) {
+					onOperationCompleted(mSession, operation);
+				}
+				if (operation.getType() != GattOperation.Type.RELIABLE_WRITE) {
+					//packets are reported by the stream or the transfer as a whole
+					return;
+				}
+			}
 			BleLog.i(TAG, "onCharacteristicWrite: " + BleUtils.getGattStatus(status));
 			UUID uuid = characteristic.getUuid();
-			sendBleMessage(BleConstants.MSG_BLE_ID_CHARACTERISTIC_WRITE, status, uuid);
-			onNextWrite();
+			boolean write = operation instanceof CharacteristicWriteOperation;
+			sendBleMessage(mSession, BleConstants.MSG_BLE_ID_CHARACTERISTIC_WRITE,
+					write ? ((CharacteristicWriteOperation) operation).getResultStatus() : status, null, uuid,
+					write ? operation : null);
+			if (write) {
+				((CharacteristicWriteOperation) operation).release();
+			}
 		}
 
 		@Override
@@ -111,18 +275,25 @@ public abstract class BaseBleService extends Service implements SimpleScanCallba
 			BleLog.i(TAG, "onDescriptorWrite: " + BleUtils.getGattStatus(status));
 			UUID uuid = descriptor.getUuid();
 
-			sendBleMessage(BleConstants.MSG_BLE_ID_DESCRIPTOR_WRITE, status, uuid);
-			onNextWrite();
+			GattOperation operation = onOperationCallback(mSession, GattOperation.Type.DESCRIPTOR_WRITE, descriptor, status);
+			sendBleMessage(mSession, BleConstants.MSG_BLE_ID_DESCRIPTOR_WRITE, status, null, uuid, operation);
 		}
 
 		@Override
 		public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-			final byte[] data = characteristic.getValue();
-			BleLog.i(TAG, "onCharacteristicChanged: " + HexUtil.encodeHexStr(data));
+			final byte[] fragment = characteristic.getValue();
+			BleLog.i(TAG, "onCharacteristicChanged: " + HexUtil.encodeHexStr(fragment));
 			UUID uuid = characteristic.getUuid();
+			//a device which only notifies is in use too
+			touchSession(mSession);
+			final NotificationAssembler assembler = mNotificationAssembler;
+			final byte[] data = assembler == null ? fragment : assembler.onFragment(mSession.getAddress(), uuid, fragment);
+			if (data == null) {
+				//wait for the rest of the frame
+				return;
+			}
 
-			sendBleMessage(BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION, BluetoothGatt.GATT_SUCCESS, data, uuid);
-			onNextWrite();
+			sendBleMessage(mSession, BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION, BluetoothGatt.GATT_SUCCESS, data, uuid);
 		}
 
         @Override
@@ -131,55 +302,73 @@ public abstract class BaseBleService extends Service implements SimpleScanCallba
 			BleLog.i(TAG, "onCharacteristicRead: " + HexUtil.encodeHexStr(data));
 			UUID uuid = characteristic.getUuid();
 
-			sendBleMessage(BleConstants.MSG_BLE_ID_CHARACTERISTIC_READ, status, data, uuid);
-			onNextWrite();
+			GattOperation operation = onOperationCallback(mSession, GattOperation.Type.CHARACTERISTIC_READ, characteristic, status);
+			sendBleMessage(mSession, BleConstants.MSG_BLE_ID_CHARACTERISTIC_READ, status, data, uuid, operation);
         }
 
 		@Override
 		public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
 			final byte[] data = descriptor.getValue();
-			BleLog.i(TAG, "onCharacteristicRead: " + HexUtil.encodeHexStr(data));
+			BleLog.i(TAG, "onDescriptorRead: " + HexUtil.encodeHexStr(data));
 			UUID uuid = descriptor.getUuid();
 
-			sendBleMessage(BleConstants.MSG_BLE_ID_DESCRIPTOR_READ, status, data, uuid);
-			onNextWrite();
+			GattOperation operation = onOperationCallback(mSession, GattOperation.Type.DESCRIPTOR_READ, descriptor, status);
+			sendBleMessage(mSession, BleConstants.MSG_BLE_ID_DESCRIPTOR_READ, status, data, uuid, operation);
 		}
 
 		@Override
 		public void onReliableWriteCompleted(BluetoothGatt gatt, int status) {
 			BleLog.i(TAG, "onReliableWriteCompleted: " + BleUtils.getGattStatus(status));
 
+			GattOperation operation = onOperationCallback(mSession, GattOperation.Type.RELIABLE_WRITE, null, status);
+			if (operation == null) {
+				//late answer of a timed out batch, its clients already got the timeout
+				return;
+			}
 			Message msg = Message.obtain();
 			msg.what = BleConstants.MSG_BLE_ID_RELIABLE_WRITE_COMPLETED;
-			msg.arg1 = status;
+			//the answer to an abort carries the status of the abort, the batch failed with its cause
+			msg.arg1 = operation.getStatus();
+			msg.setData(obtainData(mSession, null));
 			notifyAllBleClients(msg);
-			onNextWrite();
 		}
 
 		@Override
 		public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status) {
 			BleLog.i(TAG, "onReadRemoteRssi: " + rssi + " status:" + BleUtils.getGattStatus(status));
 
+			if (onOperationCallback(mSession, GattOperation.Type.READ_REMOTE_RSSI, null, status) == null) {
+				return;
+			}
 			Message msg = Message.obtain();
 			msg.what = BleConstants.MSG_BLE_ID_READ_REMOTE_RSSI;
 			msg.arg1 = status;
 			msg.arg2 = rssi;
+			msg.setData(obtainData(mSession, null));
 			notifyAllBleClients(msg);
-			onNextWrite();
 		}
 
 		@Override
 		public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
-			BleLog.i(TAG, "onMtuChanged: " + BleUtils.getGattStatus(status));
+			BleLog.i(TAG, "onMtuChanged: " + mtu + " status:" + BleUtils.getGattStatus(status));
+			if (status == BluetoothGatt.GATT_SUCCESS) {
+				mSession.mMtu = mtu;
+			}
 
+			GattOperation operation = onOperationCallback(mSession, GattOperation.Type.REQUEST_MTU, null, status);
+			//packets of a suspended transfer use the new payload size
+			resumeBulkTransferOnConnect(mSession);
+			if (operation == null) {
+				return;
+			}
 			Message msg = Message.obtain();
 			msg.what = BleConstants.MSG_BLE_ID_MTU_CHANGED;
 			msg.arg1 = status;
 			msg.arg2 = mtu;
+			msg.setData(obtainData(mSession, null));
 			notifyAllBleClients(msg);
-			onNextWrite();
 		}
-	};
+	}
 
 
 	public BaseBleService() {
@@ -190,7 +379,64 @@ public abstract class BaseBleService extends Service implements SimpleScanCallba
 	@Override
 	public IBinder onBind(Intent intent) {
 		BleLog.i(TAG, "onBind");
-		return mMessenger.getBinder();
+		IBinder binder = mMessenger.getBinder();
+		synchronized (sLocalServices) {
+			sLocalServices.put(binder, this);
+		}
+		return binder;
+	}
+
+	/**
+	 * runs a direct call of a client in this process on the thread of the Messenger, behind the
+	 * messages it sent before, so direct calls and messages reach the gatt queue in the order
+	 * they were issued, e.g. a write after a notification enable
+	 */
+	boolean postLocalCall(Runnable call) {
+		return mHandler.post(call);
+	}
+
+	/**
+	 * a pooled copy of the payload of a direct call, taken before the call is posted:
+	 * the caller may reuse its array as soon as the call returns, like after a Messenger send
+	 */
+	byte[] snapshotPayload(byte[] values) {
+		return values == null ? null : mBufferPool.copyOf(values, 0, values.length);
+	}
+
+	List<CharacteristicWrite> snapshotPayloads(List<CharacteristicWrite> writes) {
+		if (writes == null) {
+			return null;
+		}
+		List<CharacteristicWrite> snapshot = new ArrayList<>(writes.size());
+		for (CharacteristicWrite write : writes) {
+			snapshot.add(new CharacteristicWrite(write.getServiceUuid(), write.getCharacteristicUuid(),
+					snapshotPayload(write.getValue())));
+		}
+		return snapshot;
+	}
+
+	//the queued operations made their own copies
+	void releasePayload(byte[] snapshot) {
+		if (snapshot != null) {
+			mBufferPool.release(snapshot);
+		}
+	}
+
+	void releasePayloads(List<CharacteristicWrite> snapshot) {
+		if (snapshot != null) {
+			for (CharacteristicWrite write : snapshot) {
+				releasePayload(write.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return the service if the binder comes from a service of this process, null for a remote one
+	 */
+	static BaseBleService getLocalService(IBinder binder) {
+		synchronized (sLocalServices) {
+			return sLocalServices.get(binder);
+		}
 	}
 
 	synchronized public void updateState(BleConnectState newState) {
@@ -204,6 +450,78 @@ public abstract class BaseBleService extends Service implements SimpleScanCallba
 		}
 	}
 
+	//state of one device, sent with its address
+	private synchronized void updateState(GattSession session, BleConnectState newState) {
+		if (session.mState != newState) {
+			session.mState = newState;
+			mState = newState;
+			Message msg = Message.obtain(null, BleConstants.BLE_MSG_ID_CONNECTION_STATE_CHANGED);
+			if (msg != null) {
+				msg.obj = newState;
+				msg.setData(obtainData(session, null));
+				notifyAllBleClients(msg);
+			}
+		}
+		if (newState == BleConnectState.SERVICE_IS_DISCOVERED || newState == BleConnectState.SERVICE_IS_NOT_DISCOVERED
+				|| newState == BleConnectState.DISCONNECTED) {
+			runDeferredRequests(session);
+		}
+	}
+
+	//requests which waited for the reconnect, they fail by themselves if it did not work
+	private synchronized void runDeferredRequests(GattSession session) {
+		if (session.mDeferred != null) {
+			for (Runnable request : session.mDeferred) {
+				mHandler.post(request);
+			}
+			session.mDeferred = null;
+		}
+	}
+
+	//success of the discovery of one device
+	void onServicesDiscovered(GattSession session, BluetoothGatt gatt) {
+		//the MTU exchange and what onDiscoverServices queues are the rest of the setup
+		beginSetupOperations(session);
+		if (!requestPreferredMtu(session)) {
+			resumeBulkTransferOnConnect(session);
+		}
+		//another device may be the latest connected, the calls without an address stay on this one
+		mDiscoveringSession.set(session);
+		try {
+			onDiscoverServices(gatt);
+		} finally {
+			mDiscoveringSession.remove();
+		}
+		updateState(session, BleConnectState.SERVICE_IS_DISCOVERED);
+		endSetupOperations(session);
+	}
+
+	/**
+	 * @param address null for the latest connected device
+	 * @return the connection to the device, null if it was never connected or is closed
+	 */
+	public synchronized GattSession getSession(String address) {
+		return address == null ? defaultSession() : mSessions.get(address);
+	}
+
+	//moves the calls without an address to the device
+	synchronized void setCurrentSession(GattSession session) {
+		mCurrentSession = session;
+	}
+
+	//the device of the calls without an address
+	private synchronized GattSession defaultSession() {
+		GattSession discovering = mDiscoveringSession.get();
+		return discovering != null ? discovering : mCurrentSession;
+	}
+
+	/**
+	 * the connections to every device
+	 */
+	public synchronized List<GattSession> getSessions() {
+		return new ArrayList<>(mSessions.values());
+	}
+
 	/**
 	 * start to scan bluetooth
 	 */
@@ -233,209 +551,1512 @@ public abstract class BaseBleService extends Service implements SimpleScanCallba
 		return directlyConnectDevice(deviceMac, false);
 	}
 	public boolean directlyConnectDevice(String deviceMac, boolean autoConnect) {
+		return connectDevice(getRemoteDevice(deviceMac), autoConnect);
+	}
+
+	private BluetoothDevice getRemoteDevice(String address) {
 		final BluetoothManager bluetoothManager = (BluetoothManager) getSystemService(Context.BLUETOOTH_SERVICE);
 		BluetoothAdapter mBluetoothAdapter = bluetoothManager.getAdapter();
-		BluetoothDevice device = mBluetoothAdapter.getRemoteDevice(deviceMac);
-		return connectDevice(device, autoConnect);
+		return mBluetoothAdapter.getRemoteDevice(address);
 	}
 
+	/**
+	 * connect one more device, the connections to other devices stay.
+	 * connecting a device again replaces its previous BluetoothGatt.
+	 * when the pool is full the least recently used idle device is closed first
+	 */
 	public boolean connectDevice(final BluetoothDevice device, boolean autoConnect) {
-		mGatt = device.connectGatt(this, autoConnect, mGattCallback);
+		return connectDevice(device, autoConnect, null);
+	}
 
-		if(mGatt != null){
-            mHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    mGatt.connect();
-                }
-            });
+	/**
+	 * @param request run once the services are discovered, null for a connect of the client
+	 */
+	private boolean connectDevice(final BluetoothDevice device, final boolean autoConnect, Runnable request) {
+		final GattSession session;
+		BluetoothGatt previous;
+		List<GattSession> victims = new ArrayList<>();
+		synchronized (this) {
+			List<String> evicted = mConnectionPool.admit(device.getAddress(), mIdleCheck);
+			if (evicted == null) {
+				BleLog.w(TAG, "every connection is busy, refuse " + device.getAddress());
+				updateState(new GattSession(device.getAddress()), BleConnectState.DISCONNECTED);
+				return false;
+			}
+			for (String address : evicted) {
+				GattSession victim = mSessions.get(address);
+				if (victim != null) {
+					victims.add(victim);
+				}
+			}
+			session = getOrCreateSession(device.getAddress());
+			previous = session.mGatt;
+			session.mGatt = null;
+			retireOperationQueue(session);
+			session.mMtu = BleConstants.DEFAULT_MTU;
+			//a new connection starts without notifications
+			session.mNotifying.clear();
+			if (request != null) {
+				if (session.mDeferred == null) {
+					session.mDeferred = new ArrayList<>();
+				}
+				session.mDeferred.add(request);
+			}
+			//a reconnect for a request does not move the address-less calls
+			if (request == null || mCurrentSession == null) {
+				setCurrentSession(session);
+			}
+		}
+		if (previous != null) {
+			previous.close();
+		}
+		for (GattSession victim : victims) {
+			BleLog.i(TAG, "pool is full, close " + victim);
+			closeSession(victim);
+		}
+		Runnable open = new Runnable() {
+			@Override
+			public void run() {
+				openGatt(session, device, autoConnect);
+			}
+		};
+		//after the evicted connections are closed, else the stack may refuse with 133
+		long delay = victims.isEmpty() ? 0 : SESSION_CLOSE_DELAY;
+		if (autoConnect) {
+			//waits for the device without a deadline, it would hold up the others
+			mHandler.postDelayed(open, delay);
+			return true;
+		}
+		boolean startNow;
+		synchronized (this) {
+			session.mSetupQueuedAt = SystemClock.elapsedRealtime();
+			session.mSetupStart = open;
+			startNow = mSetupScheduler.submit(session);
+		}
+		if (startNow) {
+			startSetup(session, delay);
 		} else {
-			BleLog.e(TAG, "serviceConnect mGatt==null");
+			BleLog.i(TAG, "setup of " + session + " waits, " + mSetupScheduler.getWaitingCount() + " waiting");
 		}
 		return true;
 	}
 
-	public boolean connectDevice(final BluetoothDevice device) {
-		return connectDevice(device, false);
+	private void startSetup(GattSession session, long delay) {
+		Runnable open;
+		synchronized (this) {
+			open = session.mSetupStart;
+			session.mSetupStart = null;
+			session.mSetupStartedAt = SystemClock.elapsedRealtime() + delay;
+			session.mSetupStatus = BluetoothGatt.GATT_SUCCESS;
+			session.mSetupOperations = null;
+			mHandler.removeCallbacks(mSetupTimeoutTask);
+			mHandler.postDelayed(mSetupTimeoutTask, delay + mSetupTimeout);
+		}
+		if (open != null) {
+			mHandler.postDelayed(open, delay);
+		}
 	}
 
-	private synchronized void  sendBleMessage(int msgId, int status, byte[] values,  UUID uuid){
-		Message msg = Message.obtain();
-		msg.what = msgId;
-		msg.arg1 = status;
-		msg.obj = values;
-		Bundle data = new Bundle();
-		data.putSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, uuid);
-		msg.setData(data);
-		notifyAllBleClients(msg);
-	}
-	private synchronized void  sendBleMessage(int msgId, int status,  UUID uuid){
-		Message msg = Message.obtain();
-		msg.what = msgId;
-		msg.arg1 = status;
-		Bundle data = new Bundle();
-		data.putSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, uuid);
-		msg.setData(data);
-		notifyAllBleClients(msg);
+	//operations queued until endSetupOperations belong to the setup
+	private synchronized void beginSetupOperations(GattSession session) {
+		if (session.mSetupStartedAt != 0) {
+			session.mSetupOperations = new HashSet<>();
+			session.mCollectingSetup = true;
+		}
 	}
 
-	//notify subscriber
-	public void notifyAllBleClients(Message msg) {
-		for (int i = mClients.size() - 1; i >= 0; i--) {
-			Messenger messenger = mClients.get(i);
-			if (!sendMessage(messenger, msg)) {
-				mClients.remove(messenger);
+	private void endSetupOperations(GattSession session) {
+		synchronized (this) {
+			session.mCollectingSetup = false;
+			if (session.mSetupOperations == null || !session.mSetupOperations.isEmpty()) {
+				return;
 			}
 		}
-	}
-	
-	private boolean sendMessage(Messenger messenger, Message msg) {
-		boolean success = true;
-		try {
-			messenger.send(msg);
-		} catch (RemoteException e) {
-			BleLog.w(TAG, "Lost connection to client" + e);
-			success = false;
-		}
-		return success;
+		finishSetup(session, BluetoothGatt.GATT_SUCCESS);
 	}
 
-	protected synchronized boolean writeToCharacteristic(UUID serviceUUID, UUID characteristicUUID, byte[] values) {
-		BluetoothGattService gattService = mGatt == null ? null : mGatt.getService(serviceUUID);
-		if(gattService != null) {
-			BluetoothGattCharacteristic gattCharacteristic = gattService.getCharacteristic(characteristicUUID);
-			if(gattCharacteristic != null) {
-				gattCharacteristic.setValue(values);
-				write(gattCharacteristic);
-				return true;
+	private void onSetupOperationFinished(GattSession session, GattOperation operation) {
+		int status;
+		synchronized (this) {
+			if (session.mSetupOperations == null || !operation.isFinished()
+					|| !session.mSetupOperations.remove(operation)) {
+				return;
+			}
+			if (operation.getStatus() != BluetoothGatt.GATT_SUCCESS
+					&& session.mSetupStatus == BluetoothGatt.GATT_SUCCESS) {
+				session.mSetupStatus = operation.getStatus();
+			}
+			if (session.mCollectingSetup || !session.mSetupOperations.isEmpty()) {
+				return;
 			}
+			status = session.mSetupStatus;
 		}
-		return false;
+		finishSetup(session, status);
 	}
 
-
-
 	/**
-	 * enable notify or disable notify
+	 * the setup of the device ended, the next waiting device starts its setup.
+	 * a waiting device only leaves the queue
 	 */
-	public void updateCharacteristicNotification(UUID serviceUUID, UUID CharacteristicUUID, UUID descriptorUUID, boolean enable) {
-
-		final BluetoothGattService service = mGatt == null ? null : mGatt.getService(serviceUUID);
-		if (service != null) {
-			final BluetoothGattCharacteristic readData = service.getCharacteristic(CharacteristicUUID);
-			mGatt.setCharacteristicNotification(readData, enable);
-			final BluetoothGattDescriptor config = readData.getDescriptor(descriptorUUID);
-			if(config != null) {
-				config.setValue(enable ? BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE
-						: BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE);
-				write(config);
+	private void finishSetup(GattSession session, int status) {
+		GattSession next;
+		long waitMillis;
+		long setupMillis;
+		synchronized (this) {
+			if (session.mSetupStartedAt == 0) {
+				mSetupScheduler.finish(session);
+				session.mSetupStart = null;
+				return;
 			}
+			long now = SystemClock.elapsedRealtime();
+			waitMillis = Math.max(0, session.mSetupStartedAt - session.mSetupQueuedAt);
+			setupMillis = Math.max(0, now - session.mSetupStartedAt);
+			session.mSetupStartedAt = 0;
+			session.mSetupOperations = null;
+			session.mCollectingSetup = false;
+			mHandler.removeCallbacks(mSetupTimeoutTask);
+			next = mSetupScheduler.finish(session);
+		}
+		BleLog.i(TAG, "setup of " + session + ": " + BleUtils.getGattStatus(status)
+				+ ", waited " + waitMillis + " ms, took " + setupMillis + " ms");
+		Message msg = Message.obtain();
+		msg.what = BleConstants.MSG_BLE_ID_SETUP_COMPLETED;
+		msg.arg1 = status;
+		Bundle data = obtainData(session, null);
+		data.putLong(BleConstants.BLE_MSG_SETUP_WAIT_KEY, waitMillis);
+		data.putLong(BleConstants.BLE_MSG_SETUP_TIME_KEY, setupMillis);
+		msg.setData(data);
+		notifyAllBleClients(msg);
+		if (next != null) {
+			startSetup(next, 0);
 		}
 	}
 
+	/**
+	 * max milliseconds of the setup of one device, then it is closed and the next device starts its setup
+	 */
+	public synchronized void setSetupTimeout(long timeoutMillis) {
+		this.mSetupTimeout = timeoutMillis;
+	}
 
-	public boolean readFromCharacteristic(UUID serviceUUID, UUID CharacteristicUUID){
-		BluetoothGattService gattService = mGatt.getService(serviceUUID);
-		if(gattService != null) {
-			BluetoothGattCharacteristic gattCharacteristic = gattService.getCharacteristic(CharacteristicUUID);
-			if(gattCharacteristic != null) {
-
-				mGatt.setCharacteristicNotification(gattCharacteristic, true);
-    			mGatt.readCharacteristic(gattCharacteristic);
-				return true;
+	private void openGatt(final GattSession session, BluetoothDevice device, boolean autoConnect) {
+		synchronized (this) {
+			if (mSessions.get(session.getAddress()) != session) {
+				//closed while the evicted connections were closing
+				return;
 			}
 		}
-
-		return false;
-	}
-
-
-	protected synchronized void write(Object o) {
-		if (sWriteQueue.isEmpty() && !sIsWriting) {
-			doWrite(o);
+		final BluetoothGatt gatt = device.connectGatt(this, autoConnect, new SessionCallback(session));
+
+		if(gatt != null){
+			synchronized (this) {
+				session.mGatt = gatt;
+				session.mOperationQueue = new GattOperationQueue(gatt, mHandler,
+						new GattOperationQueue.OperationListener() {
+							@Override
+							public void onOperationCompleted(GattOperation operation) {
+								BaseBleService.this.onOperationCompleted(session, operation);
+							}
+						});
+				session.mOperationQueue.setTimeouts(mOperationTimeouts);
+				session.mOperationQueue.setStarvationLimit(mStarvationLimit);
+				session.mWriteCoalescer = createWriteCoalescer(session.mOperationQueue);
+			}
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    gatt.connect();
+                }
+            });
 		} else {
-			sWriteQueue.add(o);
+			BleLog.e(TAG, "serviceConnect gatt==null " + device.getAddress());
+			runDeferredRequests(session);
+			finishSetup(session, BluetoothGatt.GATT_FAILURE);
 		}
 	}
 
-	private synchronized void onNextWrite() {
-		sIsWriting = false;
-		nextWrite();
-	}
-
-	private synchronized void nextWrite() {
-		//empty enable write
-		if(sIsWriting) {
-			sIsWriting = !sWriteQueue.isEmpty();
-		}
-		if (!sWriteQueue.isEmpty() && !sIsWriting) {
-			doWrite(sWriteQueue.poll());
+	private GattSession getOrCreateSession(String address) {
+		GattSession session = mSessions.get(address);
+		if (session == null) {
+			session = new GattSession(address);
+			mSessions.put(address, session);
 		}
+		return session;
 	}
 
-	private synchronized void doWrite(Object o) {
-		if (o instanceof BluetoothGattCharacteristic) {
-			sIsWriting = mGatt.writeCharacteristic((BluetoothGattCharacteristic) o);
-		} else if (o instanceof BluetoothGattDescriptor) {
-			sIsWriting = mGatt.writeDescriptor((BluetoothGattDescriptor) o);
-		} else {
-			nextWrite();
+	//drop the queue of the previous connection, its watchdog counters are kept
+	private void retireOperationQueue(GattSession session) {
+		clearOperationQueue(session);
+		if (session.mOperationQueue != null) {
+			mOperationTimeoutCount += session.mOperationQueue.getTimeoutCount();
+			mOperationStallCount += session.mOperationQueue.getStallCount();
+			session.mOperationQueue = null;
+			session.mWriteCoalescer = null;
 		}
 	}
 
-    public void addClient(Messenger messenger) {
-        mClients.add(messenger);
-    }
-    public void removeClient(Messenger messenger) {
-        mClients.remove(messenger);
-        // all clients disconnected release ? TODO: 16/4/19
-        if(mClients.size() == 0){
-            release();
-        }
-    }
-
-    public BluetoothGatt getGatt() {
-		return mGatt;
+	/**
+	 * disconnect and close one device, the others stay connected
+	 */
+	public boolean disconnectDevice(String address) {
+		GattSession session;
+		synchronized (this) {
+			//closed by the client, not reconnected by its next request
+			mConnectionPool.remove(address);
+			session = mSessions.get(address);
+			if (session == null) {
+				return false;
+			}
+		}
+		closeSession(session);
+		return true;
 	}
 
-	private synchronized Bundle obtainData(UUID uuid) {
-		Bundle data = new Bundle();
-		data.putSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, uuid);
-		return data;
+	//the session is detached at once, its gatt still reports the disconnect
+	private void closeSession(GattSession session) {
+		closeSession(session, BleConstants.GATT_REQUEST_CANCELLED);
 	}
 
-	//release about ble
-	public void release() {
-		BleLog.i(TAG, "release()");
-		sIsWriting = false;
-		sWriteQueue.clear();
+	/**
+	 * @param setupStatus reported if the session was in its setup
+	 */
+	private void closeSession(final GattSession session, int setupStatus) {
+		finishSetup(session, setupStatus);
+		final BluetoothGatt gatt;
+		synchronized (this) {
+			gatt = session.mGatt;
+			session.mGatt = null;
+			retireOperationQueue(session);
+			session.mNotifying.clear();
+			if (mSessions.get(session.getAddress()) == session) {
+				mSessions.remove(session.getAddress());
+			}
+			if (mCurrentSession == session) {
+				mCurrentSession = null;
+			}
+			if (mBulkSession == session) {
+				mBulkSession = null;
+			}
+			runDeferredRequests(session);
+		}
+		if (gatt == null) {
+			return;
+		}
         mHandler.post(new Runnable() {
             @Override
             public void run() {
-                if(mGatt != null) {
-                    mGatt.disconnect();
-                }
+                gatt.disconnect();
             }
         });
         mHandler.postDelayed(new Runnable() {
             @Override
             public void run() {
                 try {
-                    if (mGatt != null) {
-                        mGatt.close();
-                        mGatt = null;
-                    }
+                    gatt.close();
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
-
             }
-        }, 500);
-    }
+        }, SESSION_CLOSE_DELAY);
+	}
 
-	@Override
-	public void onDestroy() {
-		super.onDestroy();
+	/**
+	 * a request for a device which the pool closed reconnects it and runs once its
+	 * services are discovered, or fails then
+	 * @return false if the device was not evicted, the caller runs the request now
+	 */
+	boolean reconnectEvicted(String address, Runnable request) {
+		synchronized (this) {
+			GattSession session = mSessions.get(address);
+			if (session != null && session.mDeferred != null) {
+				//the reconnect is on its way
+				session.mDeferred.add(request);
+				return true;
+			}
+			if (!mConnectionPool.isEvicted(address)) {
+				return false;
+			}
+		}
+		BleLog.i(TAG, "reconnect evicted " + address);
+		return connectDevice(getRemoteDevice(address), false, request);
+	}
+
+	/**
+	 * max open connections, the stacks allow about 7 gatt clients and then fail with status 133
+	 */
+	public synchronized void setMaxConnections(int maxConnections) {
+		mConnectionPool.setMaxConnections(maxConnections);
+	}
+
+	public synchronized int getMaxConnections() {
+		return mConnectionPool.getMaxConnections();
+	}
+
+	//connections closed by the pool since the service was created
+	public synchronized long getEvictionCount() {
+		return mConnectionPool.getEvictions();
+	}
+
+	public boolean connectDevice(final BluetoothDevice device) {
+		return connectDevice(device, false);
+	}
+
+	private void  sendBleMessage(GattSession session, int msgId, int status, byte[] values,  UUID uuid){
+		sendBleMessage(session, msgId, status, values, uuid, null);
+	}
+
+	/**
+	 * @param operation the finished operation of the event, its requester also gets the request id
+	 */
+	private void  sendBleMessage(GattSession session, int msgId, int status, byte[] values,  UUID uuid,
+								 GattOperation operation){
+		if (operation == null) {
+			sendBleMessage(session, msgId, status, values, uuid, null, 0);
+		} else {
+			sendBleMessage(session, msgId, status, values, uuid, operation.getRequester(), operation.getRequestId());
+		}
+	}
+
+	/**
+	 * @param session   device of the event, null if there is no connection
+	 * @param requester Messenger or LocalBleClient of the request, only it sees requestId
+	 */
+	private synchronized void  sendBleMessage(GattSession session, int msgId, int status, byte[] values,  UUID uuid,
+											  Object requester, int requestId){
+		if (requestId == 0) {
+			requester = null;
+		}
+		String address = session == null ? null : session.getAddress();
+		for (LocalBleClient client : mLocalClients) {
+			client.onBleEvent(address, msgId, status, uuid, values, client == requester ? requestId : 0);
+		}
+		List<Messenger> recipients = collectRecipients(msgId, uuid);
+		if (requester instanceof Messenger) {
+			//the result of a request goes to its requester whatever it subscribed
+			Messenger messenger = (Messenger) requester;
+			recipients.remove(messenger);
+			if (mClients.contains(messenger)) {
+				Message reply = obtainEventMessage(session, msgId, status, values, uuid);
+				reply.arg2 = requestId;
+				deliver(messenger, reply, null);
+			}
+		}
+		if (recipients.isEmpty()) {
+			return;
+		}
+		boolean notification = msgId == BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION;
+		boolean inRing = notification && hasRingClient(recipients) && mNotificationRing.write(address, uuid, values);
+		if (inRing) {
+			scheduleRingWakeup();
+		}
+		long timestamp = 0;
+		Message msg = null;
+		for (int i = recipients.size() - 1; i >= 0; i--) {
+			Messenger messenger = recipients.get(i);
+			if (notification) {
+				if (inRing && mRingClients.contains(messenger)) {
+					continue;
+				}
+				//ring clients only get a batch for the values which did not fit into a slot
+				NotificationBatcher batcher = mNotificationBatchers.get(messenger);
+				if (batcher != null) {
+					if (timestamp == 0) {
+						timestamp = SystemClock.elapsedRealtimeNanos();
+					}
+					batcher.add(address, uuid, values, timestamp);
+					continue;
+				}
+			}
+			if (msg == null) {
+				msg = obtainEventMessage(session, msgId, status, values, uuid);
+			}
+			//the latest notification of a characteristic of a device replaces a queued one
+			deliver(messenger, msg, notification && session != null ? session.getNotificationKey(uuid) : null);
+		}
+		recipients.clear();
+	}
+	//arg2 is the request id, 0 for the clients which did not request it
+	private Message obtainEventMessage(GattSession session, int msgId, int status, byte[] values, UUID uuid) {
+		Message msg = Message.obtain();
+		msg.what = msgId;
+		msg.arg1 = status;
+		msg.obj = values;
+		msg.setData(obtainData(session, uuid));
+		return msg;
+	}
+
+	//notify subscriber
+	public void notifyAllBleClients(Message msg) {
+		for (LocalBleClient client : mLocalClients) {
+			client.onBleMessage(msg);
+		}
+		notifyRemoteClients(msg);
+	}
+
+	private synchronized void notifyRemoteClients(Message msg) {
+		UUID uuid = UuidCodec.getUuid(msg.peekData(), BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+		List<Messenger> recipients = collectRecipients(msg.what, uuid);
+		for (int i = recipients.size() - 1; i >= 0; i--) {
+			deliver(recipients.get(i), msg, null);
+		}
+		recipients.clear();
+	}
+
+	/**
+	 * the remote clients which subscribed the event, in a list which is reused by the next call
+	 */
+	private List<Messenger> collectRecipients(int msgId, UUID uuid) {
+		mRecipients.clear();
+		mSubscriptions.collect(msgId, uuid, mRecipients);
+		return mRecipients;
+	}
+
+	private boolean hasRingClient(List<Messenger> recipients) {
+		for (Messenger messenger : mRingClients) {
+			if (recipients.contains(messenger)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void dropClient(Messenger messenger) {
+		mClients.remove(messenger);
+		mSubscriptions.remove(messenger);
+		mLegacyClients.remove(messenger);
+		mRingClients.remove(messenger);
+		mOutboxes.remove(messenger);
+		NotificationBatcher batcher = mNotificationBatchers.remove(messenger);
+		if (batcher != null) {
+			batcher.clear();
+		}
+	}
+
+	/**
+	 * deliver the notifications of a client in one MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION_BATCH
+	 * per window instead of one message each, which wakes its main thread much less often.
+	 * @param window    milliseconds a notification may wait for others, 0 to stop batching
+	 * @param maxFrames frames which are sent without waiting for the window, 0 for no limit
+	 */
+	protected synchronized boolean setNotificationBatching(final Messenger client, long window, int maxFrames) {
+		if (!mClients.contains(client)) {
+			BleLog.w(TAG, "batch notifications: client is not registered");
+			return false;
+		}
+		NotificationBatcher batcher = mNotificationBatchers.remove(client);
+		if (batcher != null) {
+			batcher.flush();
+		}
+		if (window > 0) {
+			mNotificationBatchers.put(client, new NotificationBatcher(mHandler, window, maxFrames,
+					new NotificationBatcher.FlushListener() {
+						@Override
+						public void onFlush(List<NotificationBatch.Frames> frames) {
+							sendNotificationBatch(client, frames);
+						}
+					}));
+		}
+		return true;
+	}
+
+	private synchronized void sendNotificationBatch(Messenger client, List<NotificationBatch.Frames> frames) {
+		if (!mClients.contains(client)) {
+			return;
+		}
+		Message msg = Message.obtain();
+		msg.what = BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION_BATCH;
+		msg.setData(NotificationBatchCodec.toBundle(frames));
+		deliver(client, msg, null);
+	}
+
+	/**
+	 * notifications for a client in another process go through a shared memory ring,
+	 * the client only gets a wake-up message. it is answered with
+	 * MSG_BLE_ID_NOTIFICATION_RING_OPENED carrying a read-only descriptor of the ring and
+	 * the sequence of the first frame written for this client.
+	 */
+	protected synchronized boolean openNotificationRing(Messenger client) {
+		if (!mClients.contains(client)) {
+			BleLog.w(TAG, "open notification ring: client is not registered");
+			return false;
+		}
+		if (mNotificationRing == null && !createNotificationRing()) {
+			return false;
+		}
+		ParcelFileDescriptor fd = null;
+		try {
+			fd = ParcelFileDescriptor.open(mNotificationRingFile, ParcelFileDescriptor.MODE_READ_ONLY);
+			Message msg = Message.obtain();
+			msg.what = BleConstants.MSG_BLE_ID_NOTIFICATION_RING_OPENED;
+			msg.arg1 = NotificationRing.bufferSize(mRingSlots, mRingSlotSize);
+			Bundle data = new Bundle();
+			data.putParcelable(BleConstants.BLE_MSG_NOTIFICATION_RING_KEY, fd);
+			//frames from here on go to the ring instead of messages, the lock keeps it exact
+			data.putLong(BleConstants.BLE_MSG_NOTIFICATION_RING_START_KEY, mNotificationRing.getPublished());
+			msg.setData(data);
+			//the descriptor is duplicated into the client while sending
+			if (!sendMessage(client, msg)) {
+				dropClient(client);
+				return false;
+			}
+			if (!mRingClients.contains(client)) {
+				mRingClients.add(client);
+			}
+			return true;
+		} catch (IOException e) {
+			BleLog.w(TAG, "open notification ring: " + e);
+			return false;
+		} finally {
+			if (fd != null) {
+				try {
+					fd.close();
+				} catch (IOException e) {
+					//nothing to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * geometry of the notification ring, used when the first client opens it
+	 * @param slotSize max bytes of a notification, larger ones are sent as messages
+	 */
+	public synchronized void setNotificationRingSize(int slots, int slotSize) {
+		this.mRingSlots = slots;
+		this.mRingSlotSize = slotSize;
+	}
+
+	private boolean createNotificationRing() {
+		File file = new File(getCacheDir(), "ble_notification_ring");
+		int size = NotificationRing.bufferSize(mRingSlots, mRingSlotSize);
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(size);
+			//the mapping stays valid after the file is closed
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			mNotificationRing = new NotificationRingWriter(buffer, mRingSlots, mRingSlotSize);
+			mNotificationRingFile = file;
+			return true;
+		} catch (IOException e) {
+			BleLog.w(TAG, "can not create the notification ring: " + e);
+			return false;
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					//nothing to do
+				}
+			}
+		}
+	}
+
+	//one wake-up per turn of the service thread, however many frames were written meanwhile
+	private void scheduleRingWakeup() {
+		if (!mRingWakeupPending) {
+			mRingWakeupPending = true;
+			mHandler.post(mRingWakeup);
+		}
+	}
+
+	private synchronized void sendRingWakeup() {
+		mRingWakeupPending = false;
+		Message msg = Message.obtain();
+		msg.what = BleConstants.MSG_BLE_ID_NOTIFICATION_RING_WAKEUP;
+		for (int i = mRingClients.size() - 1; i >= 0; i--) {
+			//a stalled client needs one wake-up, not one per turn
+			deliver(mRingClients.get(i), msg, RING_WAKEUP_KEY);
+		}
+	}
+
+	/**
+	 * send an event to a remote client, through its outbound queue if it asked for flow control
+	 * @param key queued messages of the same key are coalesced, null for none
+	 * @return false if the client is gone
+	 */
+	private boolean deliver(Messenger messenger, Message msg, Object key) {
+		OutboundQueue<Message> outbox = mOutboxes.get(messenger);
+		if (outbox == null) {
+			if (sendMessage(messenger, msg)) {
+				return true;
+			}
+			dropClient(messenger);
+			return false;
+		}
+		if (!outbox.offer(msg, key, isDroppable(msg))) {
+			//tell the client, one notice with the latest count however often it happens
+			Message dropped = Message.obtain();
+			dropped.what = BleConstants.MSG_BLE_ID_MESSAGES_DROPPED;
+			dropped.arg1 = (int) Math.min(outbox.getDropped(), Integer.MAX_VALUE);
+			outbox.offer(dropped, DROPPED_KEY, false);
+		}
+		return flushOutbox(messenger, outbox);
+	}
+
+	private boolean flushOutbox(Messenger messenger, OutboundQueue<Message> outbox) {
+		Message msg;
+		while ((msg = outbox.poll()) != null) {
+			if (!sendMessage(messenger, msg)) {
+				dropClient(messenger);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//only notifications may be dropped or coalesced, every other event and every reply to a
+	//request (arg2 is its id) must reach the client whatever its queue policy
+	private static boolean isDroppable(Message msg) {
+		if (msg.arg2 != 0) {
+			return false;
+		}
+		return msg.what == BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION
+				|| msg.what == BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION_BATCH;
+	}
+
+	/**
+	 * give a remote client a bounded outbound queue: at most FLOW_CONTROL_WINDOW messages are
+	 * in its binder queue until it acknowledges them, at most capacity more wait here.
+	 * a stalled client then loses its own messages instead of costing memory and latency for all.
+	 * @param capacity 0 to send without flow control again
+	 */
+	protected synchronized boolean setFlowControl(Messenger client, int capacity, OverflowPolicy policy) {
+		if (!mClients.contains(client)) {
+			BleLog.w(TAG, "flow control: client is not registered");
+			return false;
+		}
+		OutboundQueue<Message> outbox = mOutboxes.remove(client);
+		if (outbox != null) {
+			//whatever waits goes out without a window
+			Message msg;
+			outbox.ack(Integer.MAX_VALUE);
+			while ((msg = outbox.poll()) != null) {
+				if (!sendMessage(client, msg)) {
+					dropClient(client);
+					return false;
+				}
+				outbox.ack(1);
+			}
+		}
+		if (capacity > 0) {
+			mOutboxes.put(client, new OutboundQueue<Message>(capacity, BleConstants.FLOW_CONTROL_WINDOW, policy));
+		}
+		return true;
+	}
+
+	/**
+	 * the client handled count messages, the next ones may go
+	 */
+	protected synchronized void onClientAck(Messenger client, int count) {
+		OutboundQueue<Message> outbox = mOutboxes.get(client);
+		if (outbox != null) {
+			outbox.ack(count);
+			flushOutbox(client, outbox);
+		}
+	}
+
+	/**
+	 * @return messages dropped from the outbound queue of the client, 0 without flow control
+	 */
+	public synchronized long getDroppedMessages(Messenger client) {
+		OutboundQueue<Message> outbox = mOutboxes.get(client);
+		return outbox != null ? outbox.getDropped() : 0;
+	}
+
+	/**
+	 * @return messages dropped for all current clients
+	 */
+	public synchronized long getDroppedMessages() {
+		long dropped = 0;
+		for (OutboundQueue<Message> outbox : mOutboxes.values()) {
+			dropped += outbox.getDropped();
+		}
+		return dropped;
+	}
+	
+	private boolean sendMessage(Messenger messenger, Message msg) {
+		boolean success = true;
+		try {
+			messenger.send(msg);
+		} catch (RemoteException e) {
+			BleLog.w(TAG, "Lost connection to client" + e);
+			success = false;
+		}
+		return success;
+	}
+
+	protected synchronized boolean writeToCharacteristic(UUID serviceUUID, UUID characteristicUUID, byte[] values) {
+		return writeToCharacteristic(serviceUUID, characteristicUUID, values, OperationPriority.BULK);
+	}
+
+	/**
+	 * @param priority CONTROL writes go before every queued BULK write
+	 */
+	protected synchronized boolean writeToCharacteristic(UUID serviceUUID, UUID characteristicUUID, byte[] values,
+														 OperationPriority priority) {
+		return writeToCharacteristic(serviceUUID, characteristicUUID, values, priority, null, 0);
+	}
+
+	/**
+	 * a write whose result is sent to requester with requestId, it is never merged by the coalescer.
+	 * a write which cannot be queued fails with GATT_REQUEST_NOT_SENT at once
+	 * @param requester Messenger or LocalBleClient of the request
+	 * @param requestId 0 for no request
+	 */
+	protected synchronized boolean writeToCharacteristic(UUID serviceUUID, UUID characteristicUUID, byte[] values,
+														 OperationPriority priority, Object requester, int requestId) {
+		return writeToCharacteristic(defaultSession(), serviceUUID, characteristicUUID, values, priority,
+				requester, requestId);
+	}
+
+	/**
+	 * @param session device to write, see getSession
+	 */
+	protected synchronized boolean writeToCharacteristic(GattSession session, UUID serviceUUID, UUID characteristicUUID,
+														 byte[] values, OperationPriority priority,
+														 Object requester, int requestId) {
+		BluetoothGattService gattService = getService(session, serviceUUID);
+		if(gattService != null) {
+			BluetoothGattCharacteristic gattCharacteristic = gattService.getCharacteristic(characteristicUUID);
+			if(gattCharacteristic != null && session.mOperationQueue != null) {
+				return queueSplitWrite(session, gattCharacteristic, values, priority, requester, requestId);
+			}
+		}
+		failRequest(session, BleConstants.MSG_BLE_ID_CHARACTERISTIC_WRITE, characteristicUUID, requester, requestId);
+		return false;
+	}
+
+	private void failRequest(GattSession session, int msgId, UUID uuid, Object requester, int requestId) {
+		if (requestId != 0) {
+			sendBleMessage(session, msgId, BleConstants.GATT_REQUEST_NOT_SENT, null, uuid, requester, requestId);
+		}
+	}
+
+	private static BluetoothGattService getService(GattSession session, UUID serviceUUID) {
+		BluetoothGatt gatt = session == null ? null : session.mGatt;
+		return gatt == null ? null : gatt.getService(serviceUUID);
+	}
+
+	/**
+	 * a batch of writes from one message, queued back to back in its order.
+	 * nothing is queued if one of the characteristics is missing
+	 */
+	protected synchronized boolean writeToCharacteristics(List<CharacteristicWrite> writes, OperationPriority priority) {
+		return writeToCharacteristics(defaultSession(), writes, priority);
+	}
+
+	protected synchronized boolean writeToCharacteristics(GattSession session, List<CharacteristicWrite> writes,
+														  OperationPriority priority) {
+		if (session == null || session.mOperationQueue == null || writes == null || writes.isEmpty()) {
+			return false;
+		}
+		BluetoothGattCharacteristic[] characteristics = new BluetoothGattCharacteristic[writes.size()];
+		for (int i = 0; i < characteristics.length; i++) {
+			CharacteristicWrite write = writes.get(i);
+			BluetoothGattService gattService = getService(session, write.getServiceUuid());
+			characteristics[i] = gattService == null ? null
+					: gattService.getCharacteristic(write.getCharacteristicUuid());
+			if (characteristics[i] == null) {
+				BleLog.w(TAG, "write batch: no characteristic " + write.getCharacteristicUuid());
+				return false;
+			}
+		}
+		for (int i = 0; i < characteristics.length; i++) {
+			queueSplitWrite(session, characteristics[i], writes.get(i).getValue(), priority, null, 0);
+		}
+		return true;
+	}
+
+	//only the last packet of a split write carries the request, it completes after every packet
+	//with the first failure of any of them
+	private boolean queueSplitWrite(GattSession session, BluetoothGattCharacteristic characteristic, byte[] values,
+									OperationPriority priority, Object requester, int requestId) {
+		int payloadSize = session.getMaxPayloadSize();
+		if (values == null) {
+			return enqueue(session, new CharacteristicWriteOperation(characteristic, null).setPriority(priority)
+					.setRequest(requester, requestId));
+		}
+		if (values.length <= payloadSize) {
+			return queueWrite(session, characteristic, values, 0, values.length, priority, payloadSize,
+					requester, requestId, null);
+		}
+		//larger than one packet, split to MTU-3 (at most 512) and queue the packets back to back
+		CharacteristicWriteOperation.SplitStatus splitStatus = requestId != 0
+				? new CharacteristicWriteOperation.SplitStatus() : null;
+		for (int offset = 0; offset < values.length; offset += payloadSize) {
+			int length = Math.min(payloadSize, values.length - offset);
+			boolean last = offset + length == values.length;
+			queueWrite(session, characteristic, values, offset, length, priority, payloadSize,
+					last ? requester : null, last ? requestId : 0, splitStatus);
+		}
+		return true;
+	}
+
+
+	//the operation or the coalescer copies the bytes, the caller's array is never queued.
+	//packets of a request never go through the coalescer, they stay in order with the last one
+	private boolean queueWrite(GattSession session, BluetoothGattCharacteristic characteristic, byte[] value,
+							   int offset, int length, OperationPriority priority, int payloadSize,
+							   Object requester, int requestId, CharacteristicWriteOperation.SplitStatus splitStatus) {
+		if (session.mWriteCoalescer != null && priority == OperationPriority.BULK && requestId == 0
+				&& splitStatus == null) {
+			session.mWriteCoalescer.write(characteristic, value, offset, length, payloadSize);
+			return true;
+		}
+		return enqueue(session, new CharacteristicWriteOperation(characteristic, value, offset, length, mBufferPool)
+				.setSplitStatus(splitStatus).setPriority(priority).setRequest(requester, requestId));
+	}
+
+	/**
+	 * all writes as one reliable write: the batch is executed if every prepared write succeeded,
+	 * or aborted as a whole. the result is sent as MSG_BLE_ID_RELIABLE_WRITE_COMPLETED
+	 */
+	protected synchronized boolean reliableWriteToCharacteristics(List<CharacteristicWrite> writes) {
+		return reliableWriteToCharacteristics(defaultSession(), writes);
+	}
+
+	protected synchronized boolean reliableWriteToCharacteristics(GattSession session, List<CharacteristicWrite> writes) {
+		if (session == null || session.mGatt == null || writes == null || writes.isEmpty()) {
+			return false;
+		}
+		ReliableWriteOperation operation = new ReliableWriteOperation();
+		for (CharacteristicWrite write : writes) {
+			BluetoothGattService gattService = getService(session, write.getServiceUuid());
+			BluetoothGattCharacteristic gattCharacteristic = gattService == null ? null
+					: gattService.getCharacteristic(write.getCharacteristicUuid());
+			if (gattCharacteristic == null) {
+				BleLog.w(TAG, "reliable write: no characteristic " + write.getCharacteristicUuid());
+				return false;
+			}
+			operation.add(gattCharacteristic, write.getValue());
+		}
+		return enqueue(session, operation);
+	}
+
+	/**
+	 * write a large payload with WRITE_TYPE_NO_RESPONSE, each packet sent from the callback of the previous one.
+	 * the result and the achieved bytes/second are sent as MSG_BLE_ID_CHARACTERISTIC_STREAM_WRITE
+	 */
+	protected synchronized boolean writeStreamToCharacteristic(UUID serviceUUID, UUID characteristicUUID, byte[] values) {
+		return writeStreamToCharacteristic(defaultSession(), serviceUUID, characteristicUUID, values);
+	}
+
+	protected synchronized boolean writeStreamToCharacteristic(GattSession session, UUID serviceUUID,
+															   UUID characteristicUUID, byte[] values) {
+		BluetoothGattService gattService = getService(session, serviceUUID);
+		if(gattService != null) {
+			BluetoothGattCharacteristic gattCharacteristic = gattService.getCharacteristic(characteristicUUID);
+			if(gattCharacteristic != null) {
+				return enqueue(session, new StreamWriteOperation(gattCharacteristic, values,
+						session.getMaxPayloadSize()));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * push a large payload with a sliding window of write-without-response packets.
+	 * when the link drops the transfer is suspended and resumed from its checkpoint
+	 * after the next connection negotiated its MTU. one transfer at a time.
+	 */
+	protected synchronized boolean startBulkTransfer(UUID serviceUUID, UUID characteristicUUID, BulkTransfer transfer) {
+		return startBulkTransfer(defaultSession(), serviceUUID, characteristicUUID, transfer);
+	}
+
+	protected synchronized boolean startBulkTransfer(GattSession session, UUID serviceUUID, UUID characteristicUUID,
+													 BulkTransfer transfer) {
+		if (session == null) {
+			return false;
+		}
+		if (mBulkTransfer != null && mBulkTransfer != transfer && !mBulkTransfer.isCompleted()) {
+			BleLog.w(TAG, "a bulk transfer is already running");
+			return false;
+		}
+		if (transfer.getCallbackExecutor() == null) {
+			//the listener must not run inside the gatt callback, it holds the queue
+			transfer.setCallbackExecutor(mServiceExecutor);
+		}
+		mBulkTransfer = transfer;
+		mBulkSession = session;
+		mBulkOperation = null;
+		mBulkServiceUuid = serviceUUID;
+		mBulkCharacteristicUuid = characteristicUUID;
+		mBulkResumeOnConnect = false;
+		return queueBulkTransfer();
+	}
+
+	/**
+	 * bulk transfer of a file opened by the client, progress is sent to all clients.
+	 * the client passes the descriptor instead of a path, so the service never opens files
+	 * with its own permissions on behalf of another app. the descriptor is closed with the transfer
+	 */
+	protected boolean transferFile(UUID serviceUUID, UUID characteristicUUID, ParcelFileDescriptor file,
+								   long checkpoint) {
+		return transferFile(defaultSession(), serviceUUID, characteristicUUID, file, checkpoint);
+	}
+
+	protected boolean transferFile(GattSession session, UUID serviceUUID, UUID characteristicUUID,
+								   ParcelFileDescriptor file, long checkpoint) {
+		if (file == null) {
+			sendTransferMessage(session, BleConstants.MSG_BLE_ID_TRANSFER_COMPLETED,
+					BleConstants.GATT_TRANSFER_SOURCE_ERROR, characteristicUUID, checkpoint, 0, 0);
+			return false;
+		}
+		BulkTransfer transfer = new BulkTransfer(TransferSource.fromStream(
+				new ParcelFileDescriptor.AutoCloseInputStream(file), file.getStatSize()), checkpoint);
+		transfer.setListener(new ClientTransferListener(session, characteristicUUID));
+		if (!startBulkTransfer(session, serviceUUID, characteristicUUID, transfer)) {
+			//closes the file, the clients get the transfer completed as cancelled
+			transfer.cancel();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * resume a transfer suspended by a failed write or a timeout
+	 */
+	public synchronized boolean resumeBulkTransfer() {
+		if (mBulkTransfer == null || mBulkTransfer.isRunning() || mBulkTransfer.isCompleted()
+				|| (mBulkOperation != null && !mBulkOperation.isFinished())) {
+			return false;
+		}
+		return queueBulkTransfer();
+	}
+
+	public synchronized void cancelBulkTransfer() {
+		mBulkResumeOnConnect = false;
+		if (mBulkTransfer != null) {
+			mBulkTransfer.cancel();
+		}
+	}
+
+	private boolean queueBulkTransfer() {
+		BluetoothGattService gattService = getService(mBulkSession, mBulkServiceUuid);
+		BluetoothGattCharacteristic gattCharacteristic = gattService == null ? null
+				: gattService.getCharacteristic(mBulkCharacteristicUuid);
+		if (gattCharacteristic == null) {
+			return false;
+		}
+		mBulkOperation = new BulkTransferOperation(gattCharacteristic, mBulkTransfer, mBulkSession.getMaxPayloadSize());
+		return enqueue(mBulkSession, mBulkOperation);
+	}
+
+	private synchronized void suspendBulkTransfer(GattSession session, int status) {
+		//the transfer stays with its device
+		if (session != mBulkSession) {
+			return;
+		}
+		//the queue is cleared, the operation will never get its callback
+		mBulkOperation = null;
+		if (mBulkTransfer != null && !mBulkTransfer.isCompleted()) {
+			mBulkTransfer.suspend(status);
+			mBulkResumeOnConnect = true;
+		}
+	}
+
+	private synchronized void resumeBulkTransferOnConnect(GattSession session) {
+		if (mBulkResumeOnConnect && session == mBulkSession) {
+			mBulkResumeOnConnect = false;
+			resumeBulkTransfer();
+		}
+	}
+
+	private void sendTransferMessage(GattSession session, int msgId, int status, UUID uuid,
+									 long bytes, long total, long bytesPerSecond) {
+		Message msg = Message.obtain();
+		msg.what = msgId;
+		msg.arg1 = status;
+		Bundle data = obtainData(session, uuid);
+		data.putLong(BleConstants.BLE_MSG_TRANSFER_BYTES_KEY, bytes);
+		data.putLong(BleConstants.BLE_MSG_TRANSFER_TOTAL_KEY, total);
+		data.putLong(BleConstants.BLE_MSG_STREAM_BYTES_PER_SECOND_KEY, bytesPerSecond);
+		msg.setData(data);
+		notifyAllBleClients(msg);
+	}
+
+	//forwards a transfer started by a client to all clients
+	private class ClientTransferListener implements TransferListener {
+		private final GattSession mSession;
+		private final UUID mUuid;
+
+		ClientTransferListener(GattSession session, UUID uuid) {
+			this.mSession = session;
+			this.mUuid = uuid;
+		}
+
+		@Override
+		public void onProgress(long bytes, long total, long bytesPerSecond) {
+			sendTransferMessage(mSession, BleConstants.MSG_BLE_ID_TRANSFER_PROGRESS, BluetoothGatt.GATT_SUCCESS,
+					mUuid, bytes, total, bytesPerSecond);
+		}
+
+		@Override
+		public void onSuspended(int status, long checkpoint) {
+			BleLog.i(TAG, "transfer suspended at " + checkpoint + ": " + BleUtils.getGattStatus(status));
+			sendTransferMessage(mSession, BleConstants.MSG_BLE_ID_TRANSFER_SUSPENDED, status, mUuid, checkpoint, 0, 0);
+		}
+
+		@Override
+		public void onCompleted(int status, long bytes) {
+			BleLog.i(TAG, "transfer completed: " + BleUtils.getGattStatus(status) + " " + bytes + " bytes");
+			sendTransferMessage(mSession, BleConstants.MSG_BLE_ID_TRANSFER_COMPLETED, status, mUuid, bytes, 0, 0);
+		}
+	}
+
+	private void onStreamWriteCompleted(GattSession session, StreamWriteOperation stream) {
+		BleLog.i(TAG, "stream write finished: " + BleUtils.getGattStatus(stream.getStatus())
+				+ " " + stream.getBytesSent() + " bytes, " + stream.getBytesPerSecond() + " B/s");
+
+		Message msg = Message.obtain();
+		msg.what = BleConstants.MSG_BLE_ID_CHARACTERISTIC_STREAM_WRITE;
+		msg.arg1 = stream.getStatus();
+		Bundle data = obtainData(session, stream.getUuid());
+		data.putInt(BleConstants.BLE_MSG_STREAM_BYTES_KEY, stream.getBytesSent());
+		data.putLong(BleConstants.BLE_MSG_STREAM_BYTES_PER_SECOND_KEY, stream.getBytesPerSecond());
+		msg.setData(data);
+		notifyAllBleClients(msg);
+	}
+
+	/**
+	 * enable notify or disable notify
+	 */
+	public void updateCharacteristicNotification(UUID serviceUUID, UUID CharacteristicUUID, UUID descriptorUUID, boolean enable) {
+		updateCharacteristicNotification(defaultSession(), serviceUUID, CharacteristicUUID, descriptorUUID, enable);
+	}
+
+	public void updateCharacteristicNotification(GattSession session, UUID serviceUUID, UUID CharacteristicUUID,
+												 UUID descriptorUUID, boolean enable) {
+
+		final BluetoothGattService service = getService(session, serviceUUID);
+		if (service != null) {
+			final BluetoothGattCharacteristic readData = service.getCharacteristic(CharacteristicUUID);
+			session.mGatt.setCharacteristicNotification(readData, enable);
+			synchronized (this) {
+				//the connection pool does not evict a device with notifications on
+				if (enable) {
+					session.mNotifying.add(CharacteristicUUID);
+				} else {
+					session.mNotifying.remove(CharacteristicUUID);
+				}
+			}
+			final BluetoothGattDescriptor config = readData.getDescriptor(descriptorUUID);
+			if(config != null) {
+				enqueue(session, new DescriptorWriteOperation(config, enable ? BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE
+						: BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE));
+			}
+		}
+	}
+
+
+	public boolean readFromCharacteristic(UUID serviceUUID, UUID CharacteristicUUID){
+		return readFromCharacteristic(serviceUUID, CharacteristicUUID, null, 0);
+	}
+
+	/**
+	 * @param requester Messenger or LocalBleClient which gets the value with requestId
+	 * @param requestId 0 for no request
+	 */
+	public boolean readFromCharacteristic(UUID serviceUUID, UUID CharacteristicUUID, Object requester, int requestId){
+		return readFromCharacteristic(defaultSession(), serviceUUID, CharacteristicUUID, requester, requestId);
+	}
+
+	public boolean readFromCharacteristic(GattSession session, UUID serviceUUID, UUID CharacteristicUUID,
+										  Object requester, int requestId){
+		BluetoothGattService gattService = getService(session, serviceUUID);
+		if(gattService != null) {
+			BluetoothGattCharacteristic gattCharacteristic = gattService.getCharacteristic(CharacteristicUUID);
+			if(gattCharacteristic != null) {
+
+				session.mGatt.setCharacteristicNotification(gattCharacteristic, true);
+				if (enqueue(session, new CharacteristicReadOperation(gattCharacteristic).setRequest(requester, requestId))) {
+					return true;
+				}
+			}
+		}
+
+		failRequest(session, BleConstants.MSG_BLE_ID_CHARACTERISTIC_READ, CharacteristicUUID, requester, requestId);
+		return false;
+	}
+
+	public boolean readFromDescriptor(UUID serviceUUID, UUID characteristicUUID, UUID descriptorUUID){
+		return readFromDescriptor(serviceUUID, characteristicUUID, descriptorUUID, null, 0);
+	}
+
+	public boolean readFromDescriptor(UUID serviceUUID, UUID characteristicUUID, UUID descriptorUUID,
+									  Object requester, int requestId){
+		return readFromDescriptor(defaultSession(), serviceUUID, characteristicUUID, descriptorUUID, requester, requestId);
+	}
+
+	public boolean readFromDescriptor(GattSession session, UUID serviceUUID, UUID characteristicUUID,
+									  UUID descriptorUUID, Object requester, int requestId){
+		BluetoothGattService gattService = getService(session, serviceUUID);
+		if(gattService != null) {
+			BluetoothGattCharacteristic gattCharacteristic = gattService.getCharacteristic(characteristicUUID);
+			BluetoothGattDescriptor descriptor = gattCharacteristic == null ? null
+					: gattCharacteristic.getDescriptor(descriptorUUID);
+			if(descriptor != null && enqueue(session, new DescriptorReadOperation(descriptor).setRequest(requester, requestId))) {
+				return true;
+			}
+		}
+
+		failRequest(session, BleConstants.MSG_BLE_ID_DESCRIPTOR_READ, descriptorUUID, requester, requestId);
+		return false;
+	}
+
+	public boolean readRemoteRssi() {
+		return readRemoteRssi(defaultSession());
+	}
+
+	public boolean readRemoteRssi(GattSession session) {
+		return enqueue(session, new ReadRssiOperation());
+	}
+
+	/**
+	 * only supported since LOLLIPOP, older stacks fail with MSG_BLE_ID_MTU_CHANGED
+	 */
+	public boolean requestMtu(int mtu) {
+		return requestMtu(defaultSession(), mtu);
+	}
+
+	public boolean requestMtu(GattSession session, int mtu) {
+		return enqueue(session, new RequestMtuOperation(mtu));
+	}
+
+
+	/**
+	 * queue a characteristic or descriptor with the value which is set on it now,
+	 * or any GattOperation
+	 */
+	protected synchronized void write(Object o) {
+		if (o instanceof BluetoothGattCharacteristic) {
+			BluetoothGattCharacteristic characteristic = (BluetoothGattCharacteristic) o;
+			byte[] value = characteristic.getValue();
+			//snapshot now, the caller may set another value before this one is sent
+			enqueue(value == null ? new CharacteristicWriteOperation(characteristic, null)
+					: new CharacteristicWriteOperation(characteristic, value, 0, value.length, mBufferPool));
+		} else if (o instanceof BluetoothGattDescriptor) {
+			BluetoothGattDescriptor descriptor = (BluetoothGattDescriptor) o;
+			byte[] value = descriptor.getValue();
+			enqueue(new DescriptorWriteOperation(descriptor, value == null ? null : value.clone()));
+		} else if (o instanceof GattOperation) {
+			enqueue((GattOperation) o);
+		}
+	}
+
+	//queued to the device connected last, or to the one in onDiscoverServices
+	protected synchronized boolean enqueue(GattOperation operation) {
+		return enqueue(defaultSession(), operation);
+	}
+
+	//the device is in use, the pool evicts it after the others
+	private synchronized void touchSession(GattSession session) {
+		mConnectionPool.touch(session.getAddress());
+	}
+
+	protected synchronized boolean enqueue(GattSession session, GattOperation operation) {
+		if (session == null || session.mOperationQueue == null) {
+			BleLog.w(TAG, "no connection, drop " + operation);
+			return false;
+		}
+		touchSession(session);
+		if (session.mCollectingSetup) {
+			session.mSetupOperations.add(operation);
+		}
+		if (session.mWriteCoalescer != null) {
+			//merged writes were requested first
+			session.mWriteCoalescer.flush();
+		}
+		session.mOperationQueue.enqueue(operation);
+		return true;
+	}
+
+	/**
+	 * merge adjacent small writes to the same characteristic up to MTU-3 bytes,
+	 * for firmware which accepts concatenated frames. maxBytes <= 0 turns it off.
+	 *
+	 * @param maxDelayMillis max time a write waits for followers
+	 * @param maxBytes max bytes of a merged write
+	 */
+	public synchronized void setWriteCoalescing(long maxDelayMillis, int maxBytes) {
+		mCoalesceMaxDelay = maxDelayMillis;
+		mCoalesceMaxBytes = maxBytes;
+		for (GattSession session : mSessions.values()) {
+			if (session.mWriteCoalescer != null) {
+				session.mWriteCoalescer.flush();
+			}
+			session.mWriteCoalescer = createWriteCoalescer(session.mOperationQueue);
+		}
+	}
+
+	private WriteCoalescer createWriteCoalescer(final GattOperationQueue queue) {
+		if (queue == null || mCoalesceMaxBytes <= 0) {
+			return null;
+		}
+		return new WriteCoalescer(mHandler, this, mCoalesceMaxDelay, mCoalesceMaxBytes,
+				new WriteCoalescer.FlushListener() {
+					@Override
+					public void onFlush(BluetoothGattCharacteristic characteristic, byte[] value, int offset, int length) {
+						queue.enqueue(new CharacteristicWriteOperation(characteristic, value, offset, length, mBufferPool));
+					}
+				});
+	}
+
+	//max bytes of one write on the current connection
+	protected synchronized int getMaxPayloadSize() {
+		return getMaxPayloadSize(null);
+	}
+
+	//max bytes of one write on the connection to the device, null for the current one
+	protected synchronized int getMaxPayloadSize(String address) {
+		return Math.min(getMtu(address) - BleConstants.ATT_HEADER_SIZE, BleConstants.MAX_ATTRIBUTE_LENGTH);
+	}
+
+	public synchronized int getMtu() {
+		return getMtu(null);
+	}
+
+	/**
+	 * @param address null for the latest connected device
+	 * @return DEFAULT_MTU if the device is not connected
+	 */
+	public synchronized int getMtu(String address) {
+		GattSession session = getSession(address);
+		return session == null ? BleConstants.DEFAULT_MTU : session.mMtu;
+	}
+
+	/**
+	 * ATT_MTU requested after services are discovered, 0 or DEFAULT_MTU turns the exchange off
+	 */
+	public void setPreferredMtu(int mtu) {
+		this.mPreferredMtu = mtu;
+	}
+
+	/**
+	 * notifications are passed through it before they are sent to clients
+	 */
+	public void setNotificationAssembler(NotificationAssembler assembler) {
+		this.mNotificationAssembler = assembler;
+	}
+
+	//queued as CONTROL, so the exchange goes out before anything onDiscoverServices queues
+	private boolean requestPreferredMtu(GattSession session) {
+		if (mPreferredMtu > BleConstants.DEFAULT_MTU && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			return enqueue(session, new RequestMtuOperation(mPreferredMtu).setPriority(OperationPriority.CONTROL));
+		}
+		return false;
+	}
+
+	private GattOperation onOperationCallback(GattSession session, GattOperation.Type type, Object target, int status) {
+		GattOperation operation;
+		synchronized (this) {
+			operation = session.mOperationQueue == null ? null : session.mOperationQueue.onCallback(type, target, status);
+		}
+		if (operation != null) {
+			onSetupOperationFinished(session, operation);
+		}
+		return operation;
+	}
+
+	private synchronized void clearOperationQueue(GattSession session) {
+		if (session.mWriteCoalescer != null) {
+			session.mWriteCoalescer.clear();
+		}
+		if (session.mOperationQueue != null) {
+			session.mOperationQueue.clear();
+		}
+	}
+
+	/**
+	 * deadline of every operation of this type, when it expires the operation fails
+	 * with BleConstants.GATT_OPERATION_TIMEOUT and the queue moves on
+	 */
+	public synchronized void setOperationTimeout(GattOperation.Type type, long timeoutMillis) {
+		mOperationTimeouts.put(type, timeoutMillis);
+		for (GattSession session : mSessions.values()) {
+			if (session.mOperationQueue != null) {
+				session.mOperationQueue.setTimeout(type, timeoutMillis);
+			}
+		}
+	}
+
+	/**
+	 * max CONTROL operations dispatched in a row while BULK operations are waiting
+	 */
+	public synchronized void setStarvationLimit(int starvationLimit) {
+		mStarvationLimit = starvationLimit;
+		for (GattSession session : mSessions.values()) {
+			if (session.mOperationQueue != null) {
+				session.mOperationQueue.setStarvationLimit(starvationLimit);
+			}
+		}
+	}
+
+	//operations failed by the watchdog since the service was created
+	public synchronized int getOperationTimeoutCount() {
+		int count = mOperationTimeoutCount;
+		for (GattSession session : mSessions.values()) {
+			count += session.mOperationQueue == null ? 0 : session.mOperationQueue.getTimeoutCount();
+		}
+		return count;
+	}
+
+	//operations which never got any callback before their deadline
+	public synchronized int getOperationStallCount() {
+		int count = mOperationStallCount;
+		for (GattSession session : mSessions.values()) {
+			count += session.mOperationQueue == null ? 0 : session.mOperationQueue.getStallCount();
+		}
+		return count;
+	}
+
+	/**
+	 * the operation finished without a gatt callback, report the failure to clients
+	 */
+	private void onOperationCompleted(GattSession session, GattOperation operation) {
+		onSetupOperationFinished(session, operation);
+		int status = operation.getStatus();
+		switch (operation.getType()) {
+			case CHARACTERISTIC_WRITE:
+				sendBleMessage(session, BleConstants.MSG_BLE_ID_CHARACTERISTIC_WRITE,
+						((CharacteristicWriteOperation) operation).getResultStatus(), null, operation.getUuid(), operation);
+				((CharacteristicWriteOperation) operation).release();
+				break;
+			case CHARACTERISTIC_READ:
+				sendBleMessage(session, BleConstants.MSG_BLE_ID_CHARACTERISTIC_READ, status, null, operation.getUuid(), operation);
+				break;
+			case DESCRIPTOR_WRITE:
+				sendBleMessage(session, BleConstants.MSG_BLE_ID_DESCRIPTOR_WRITE, status, null, operation.getUuid(), operation);
+				break;
+			case DESCRIPTOR_READ:
+				sendBleMessage(session, BleConstants.MSG_BLE_ID_DESCRIPTOR_READ, status, null, operation.getUuid(), operation);
+				break;
+			case STREAM_WRITE:
+				onStreamWriteCompleted(session, (StreamWriteOperation) operation);
+				break;
+			case BULK_TRANSFER:
+				//reported by the TransferListener
+				break;
+			case REQUEST_MTU: {
+				Message msg = Message.obtain();
+				msg.what = BleConstants.MSG_BLE_ID_MTU_CHANGED;
+				msg.arg1 = status;
+				msg.arg2 = session.mMtu;
+				msg.setData(obtainData(session, null));
+				notifyAllBleClients(msg);
+				resumeBulkTransferOnConnect(session);
+				break;
+			}
+			default: {
+				Message msg = Message.obtain();
+				msg.what = operation.getType() == GattOperation.Type.READ_REMOTE_RSSI
+						? BleConstants.MSG_BLE_ID_READ_REMOTE_RSSI
+						: BleConstants.MSG_BLE_ID_RELIABLE_WRITE_COMPLETED;
+				msg.arg1 = status;
+				msg.setData(obtainData(session, null));
+				notifyAllBleClients(msg);
+				break;
+			}
+		}
+	}
+
+    public void addClient(Messenger messenger) {
+        addClient(messenger, BleConstants.PROTOCOL_VERSION_SERIALIZABLE_UUID);
+    }
+    public void addClient(Messenger messenger, int version) {
+        addClient(messenger, version, SubscriptionFilter.ALL);
+    }
+
+    /**
+     * register a client, or replace the filter of a registered one
+     * @param filter the events the client gets, ALL for every event
+     */
+    public synchronized void addClient(Messenger messenger, int version, SubscriptionFilter filter) {
+        if (!mClients.contains(messenger)) {
+            mClients.add(messenger);
+        }
+        mSubscriptions.put(messenger, filter);
+        mLegacyClients.remove(messenger);
+        if (version < BleConstants.PROTOCOL_VERSION) {
+            mLegacyClients.add(messenger);
+        }
+        Message msg = Message.obtain();
+        msg.what = BleConstants.BLE_MSG_ID_PROTOCOL_VERSION;
+        msg.arg1 = BleConstants.PROTOCOL_VERSION;
+        sendMessage(messenger, msg);
+    }
+    public synchronized void removeClient(Messenger messenger) {
+        dropClient(messenger);
+        releaseWithoutClients();
+    }
+
+    void addLocalClient(LocalBleClient client) {
+        mLocalClients.add(client);
+    }
+    void removeLocalClient(LocalBleClient client) {
+        mLocalClients.remove(client);
+        releaseWithoutClients();
+    }
+
+    //nobody gets the events of the connections any more, close them instead of keeping the devices busy
+    private synchronized void releaseWithoutClients() {
+        if(mClients.size() == 0 && mLocalClients.isEmpty()){
+            release();
+        }
+    }
+
+    //gatt of the device connected last
+    public synchronized BluetoothGatt getGatt() {
+		GattSession session = defaultSession();
+		return session == null ? null : session.mGatt;
+	}
+
+	public synchronized BluetoothGatt getGatt(String address) {
+		GattSession session = mSessions.get(address);
+		return session == null ? null : session.mGatt;
+	}
+
+	/**
+	 * @param session the device of the event, its address is added when not null
+	 */
+	private synchronized Bundle obtainData(GattSession session, UUID uuid) {
+		Bundle data = new Bundle();
+		UuidCodec.putUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, uuid, !mLegacyClients.isEmpty());
+		if (session != null) {
+			data.putString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY, session.getAddress());
+		}
+		return data;
+	}
+
+	//release about ble, every device is disconnected
+	public void release() {
+		BleLog.i(TAG, "release()");
+		List<GattSession> sessions;
+		synchronized (this) {
+			sessions = new ArrayList<>(mSessions.values());
+			mConnectionPool.clear();
+		}
+		for (GattSession session : sessions) {
+			closeSession(session);
+		}
+    }
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		synchronized (sLocalServices) {
+			sLocalServices.remove(mMessenger.getBinder());
+		}
+		if (mNotificationRingFile != null) {
+			mNotificationRingFile.delete();
+		}
+		synchronized (this) {
+			for (NotificationBatcher batcher : mNotificationBatchers.values()) {
+				batcher.clear();
+			}
+			mNotificationBatchers.clear();
+		}
 		release();
 		BleLog.i(TAG, "onDestroy()");
 	}
@@ -2,6 +2,8 @@ package com.github.captain_miao.android.ble;
 
 import android.bluetooth.BluetoothGatt;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 /**
@@ -10,10 +12,16 @@ import java.util.UUID;
  */
 public abstract class BleCallback {
     public UUID uuid;
+    //device whose events this callback gets, null for every device
+    public String address;
 
     protected BleCallback(UUID uuid) {
         this.uuid = uuid;
     }
+    protected BleCallback(String address, UUID uuid) {
+        this.address = address == null ? null : address.toUpperCase(Locale.US);
+        this.uuid = uuid;
+    }
     protected BleCallback() {
     }
 
@@ -25,6 +33,11 @@ public abstract class BleCallback {
 
     }
 
+    //The same with the address of the device, e.g. the device of this callback disconnected.
+    public void onFailed(String address, String msg){
+        onFailed(msg);
+    }
+
 
     //Callback triggered as a result of a remote characteristic notification.
     //BluetoothGattCallback#onCharacteristicChanged --> onCharacteristicNotification
@@ -32,54 +45,146 @@ public abstract class BleCallback {
 
     }
 
+    //The same with the address of the device, for a service connected to several devices.
+    //By default the address is dropped, the same goes for the other address overloads.
+    public void onCharacteristicNotification(String address, UUID uuid, byte[] data) {
+        onCharacteristicNotification(uuid, data);
+    }
+
+    //Notifications of one characteristic collected during a batching window, oldest first.
+    //timestamps are SystemClock#elapsedRealtimeNanos, by default every value goes to onCharacteristicNotification.
+    //BluetoothHelper#setNotificationBatching
+    public void onCharacteristicNotificationBatch(UUID uuid, List<byte[]> values, long[] timestamps) {
+        for (byte[] value : values) {
+            onCharacteristicNotification(uuid, value);
+        }
+    }
+
+    public void onCharacteristicNotificationBatch(String address, UUID uuid, List<byte[]> values, long[] timestamps) {
+        onCharacteristicNotificationBatch(uuid, values, timestamps);
+    }
+
     //Callback reporting the result of a characteristic read operation.
     //BluetoothGattCallback#onCharacteristicChanged
     public void onCharacteristicRead(UUID uuid, byte[] data) {
 
     }
 
+    public void onCharacteristicRead(String address, UUID uuid, byte[] data) {
+        onCharacteristicRead(uuid, data);
+    }
+
     //Callback indicating the result of a characteristic write operation.
     //BluetoothGattCallback#onCharacteristicWrite
     public void onCharacteristicWrite(UUID uuid, int status) {
 
     }
 
+    public void onCharacteristicWrite(String address, UUID uuid, int status) {
+        onCharacteristicWrite(uuid, status);
+    }
+
+    //Callback indicating the result of a write-without-response stream.
+    //BluetoothHelper#writeCharacteristicStream
+    public void onCharacteristicStreamWrite(UUID uuid, int status, int bytes, long bytesPerSecond) {
+
+    }
+
+    //Progress of a bulk transfer, bytes is the checkpoint to resume from.
+    //BluetoothHelper#transferFile
+    public void onTransferProgress(UUID uuid, long bytes, long total, long bytesPerSecond) {
+
+    }
+
+    //A bulk transfer stopped on a lost link or a failed write, it resumes after reconnecting.
+    public void onTransferSuspended(UUID uuid, int status, long checkpoint) {
+
+    }
+
+    //Notifications of the shared memory ring were overwritten before this client read them.
+    //BluetoothHelper#openNotificationRing
+    public void onNotificationOverrun(long lost) {
+
+    }
+
+    //The outbound queue of this client in the service was full, dropped is the total so far.
+    //BluetoothHelper#setFlowControl
+    public void onMessagesDropped(long dropped) {
+
+    }
+
+    //A bulk transfer finished, was cancelled or its file could not be read.
+    public void onTransferCompleted(UUID uuid, int status, long bytes) {
+
+    }
+
     //Callback indicating when GATT client has connected/disconnected to/from a remote GATT server.
     //BluetoothGattCallback#onConnectionStateChange
     public void onConnectionStateChange(int status, int newStatus) {
 
     }
 
+    //status is the previous state of this device
+    public void onConnectionStateChange(String address, int status, int newStatus) {
+        onConnectionStateChange(status, newStatus);
+    }
+
     //Callback reporting the result of a descriptor read operation.
     //BluetoothGattCallback#onDescriptorRead
     public void onDescriptorRead(UUID uuid, byte[] data) {
 
     }
 
+    public void onDescriptorRead(String address, UUID uuid, byte[] data) {
+        onDescriptorRead(uuid, data);
+    }
+
     //Callback indicating the result of a descriptor write operation.
     //BluetoothGattCallback#onDescriptorWrite
     public void onDescriptorWrite(UUID uuid, int status) {
 
     }
 
+    public void onDescriptorWrite(String address, UUID uuid, int status) {
+        onDescriptorWrite(uuid, status);
+    }
+
+    //The setup of a device (connect, discover services, MTU, CCCD writes) ended, setups run one at a time.
+    //waitMillis is the time it waited for the setups of other devices.
+    public void onSetupCompleted(String address, int status, long waitMillis, long setupMillis) {
+
+    }
+
     //Callback indicating the MTU for a given device connection has changed.
     //BluetoothGattCallback#onConnectionStateChange
     public void onMtuChanged(int mtu, int status) {
 
     }
 
+    public void onMtuChanged(String address, int mtu, int status) {
+        onMtuChanged(mtu, status);
+    }
+
     //Callback reporting the RSSI for a remote device connection.
     //BluetoothGattCallback#onReadRemoteRssi
     public void onReadRemoteRssi(int rssi, int status) {
 
     }
 
+    public void onReadRemoteRssi(String address, int rssi, int status) {
+        onReadRemoteRssi(rssi, status);
+    }
+
     //Callback invoked when a reliable write transaction has been completed.
     //BluetoothGattCallback#onReliableWriteCompleted
     public void onReliableWriteCompleted(int status) {
 
     }
 
+    public void onReliableWriteCompleted(String address, int status) {
+        onReliableWriteCompleted(status);
+    }
+
     //Callback invoked when the list of remote services,
     // characteristics and descriptors for the remote device have been updated,
     // ie new services have been discovered.
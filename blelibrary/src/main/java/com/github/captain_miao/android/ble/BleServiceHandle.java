@@ -3,10 +3,16 @@ package com.github.captain_miao.android.ble;
 import android.bluetooth.BluetoothDevice;
 import android.os.Bundle;
 import android.os.Message;
+import android.os.ParcelFileDescriptor;
 
 import com.github.captain_miao.android.ble.constant.BleConstants;
+import com.github.captain_miao.android.ble.constant.OperationPriority;
+import com.github.captain_miao.android.ble.constant.OverflowPolicy;
+import com.github.captain_miao.android.ble.subscription.SubscriptionFilterCodec;
 import com.github.captain_miao.android.ble.utils.BleLog;
+import com.github.captain_miao.android.ble.utils.UuidCodec;
 
+import java.util.List;
 import java.util.UUID;
 
 
@@ -33,11 +39,20 @@ public class BleServiceHandle extends AppHandler<BaseBleService> {
 	public void onBleServiceMessage(BaseBleService reference, Message msg) {
 		if (msg != null) {
 			Bundle data = msg.getData();
+			//before the first read, a bundle unparcels all its values at once and
+			//the CharacteristicWrite lists of a remote client need the class loader of the library
+			data.setClassLoader(CharacteristicWrite.class.getClassLoader());
+			if (msg.what >= BleConstants.MSG_CONTROL_ID_WRITE_CHARACTERISTIC && deferIfEvicted(reference, msg)) {
+				return;
+			}
 			switch (msg.what) {
 				case BleConstants.MSG_CONTROL_ID_REGISTER:
 					BleLog.i(TAG, "BleService Registered");
+					//arg1: protocol version of the client, 0 for clients before versioning
+					//data: the events of the client, none for every event
 					if (msg.replyTo != null) {
-						reference.addClient(msg.replyTo);
+						reference.addClient(msg.replyTo, Math.max(msg.arg1, BleConstants.PROTOCOL_VERSION_SERIALIZABLE_UUID),
+								SubscriptionFilterCodec.fromBundle(data));
 					}
 
 					break;
@@ -49,6 +64,32 @@ public class BleServiceHandle extends AppHandler<BaseBleService> {
 					break;
 
 
+				case BleConstants.MSG_CONTROL_ID_OPEN_NOTIFICATION_RING: {
+					if (msg.replyTo != null) {
+						reference.openNotificationRing(msg.replyTo);
+					}
+					break;
+				}
+				case BleConstants.MSG_CONTROL_ID_FLOW_CONTROL: {
+					if (msg.replyTo != null) {
+						//arg1: capacity of the outbound queue, 0 for none; arg2: OverflowPolicy code
+						reference.setFlowControl(msg.replyTo, msg.arg1, OverflowPolicy.newInstance(msg.arg2));
+					}
+					break;
+				}
+				case BleConstants.MSG_CONTROL_ID_ACK: {
+					if (msg.replyTo != null) {
+						reference.onClientAck(msg.replyTo, msg.arg1);
+					}
+					break;
+				}
+				case BleConstants.MSG_CONTROL_ID_BATCH_NOTIFICATIONS: {
+					if (msg.replyTo != null) {
+						//arg1: window in milliseconds, 0 to stop batching; arg2: max frames
+						reference.setNotificationBatching(msg.replyTo, msg.arg1, msg.arg2);
+					}
+					break;
+				}
 				case BleConstants.MSG_CONTROL_ID_START_SCAN: {
 					BleLog.i(TAG, "start scan...");
 					reference.startScan();
@@ -69,41 +110,142 @@ public class BleServiceHandle extends AppHandler<BaseBleService> {
 					reference.directlyConnectDevice(mac);
 					break;
 				}
-				//write_characteristic
+				//address of the device in data, the other devices stay connected
+				case BleConstants.MSG_CONTROL_ID_DISCONNECT_DEVICE: {
+					if(data != null) {
+						reference.disconnectDevice(data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY));
+					}
+					break;
+				}
+				//write_characteristic, priority in arg1, request id of replyTo in arg2
 				case BleConstants.MSG_CONTROL_ID_WRITE_CHARACTERISTIC: {
 					if(data != null) {
-						UUID serviceUUID = (UUID) data.getSerializable(BleConstants.BLE_MSG_SERVICE_UUID_KEY);
-						UUID characteristicUUID = (UUID) data.getSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+						UUID serviceUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_SERVICE_UUID_KEY);
+						UUID characteristicUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+						byte[] values = (byte[]) msg.obj;
+						reference.writeToCharacteristic(getSession(reference, data), serviceUUID, characteristicUUID, values,
+								OperationPriority.newInstance(msg.arg1), msg.replyTo, requestId(msg));
+					}
+					break;
+				}
+				//write_characteristic without response, pipelined
+				case BleConstants.MSG_CONTROL_ID_STREAM_WRITE_CHARACTERISTIC: {
+					if(data != null) {
+						UUID serviceUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_SERVICE_UUID_KEY);
+						UUID characteristicUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
 						byte[] values = (byte[]) msg.obj;
-						reference.writeToCharacteristic(serviceUUID, characteristicUUID, values);
+						reference.writeStreamToCharacteristic(getSession(reference, data), serviceUUID, characteristicUUID, values);
+					}
+					break;
+				}
+				//many writes in one message
+				case BleConstants.MSG_CONTROL_ID_WRITE_BATCH: {
+					if(data != null) {
+						List<CharacteristicWrite> writes = data.getParcelableArrayList(BleConstants.BLE_MSG_WRITE_LIST_KEY);
+						reference.writeToCharacteristics(getSession(reference, data), writes, OperationPriority.newInstance(msg.arg1));
+					}
+					break;
+				}
+				//reliable write of a batch
+				case BleConstants.MSG_CONTROL_ID_RELIABLE_WRITE: {
+					if(data != null) {
+						List<CharacteristicWrite> writes = data.getParcelableArrayList(BleConstants.BLE_MSG_WRITE_LIST_KEY);
+						reference.reliableWriteToCharacteristics(getSession(reference, data), writes);
 					}
 					break;
 				}
+				//bulk transfer of a file
+				case BleConstants.MSG_CONTROL_ID_TRANSFER_FILE: {
+					if(data != null) {
+						UUID serviceUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_SERVICE_UUID_KEY);
+						UUID characteristicUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+						ParcelFileDescriptor file = data.getParcelable(BleConstants.BLE_MSG_TRANSFER_FILE_KEY);
+						long checkpoint = data.getLong(BleConstants.BLE_MSG_TRANSFER_BYTES_KEY);
+						reference.transferFile(getSession(reference, data), serviceUUID, characteristicUUID, file, checkpoint);
+					}
+					break;
+				}
+				case BleConstants.MSG_CONTROL_ID_CANCEL_TRANSFER: {
+					reference.cancelBulkTransfer();
+					break;
+				}
 				//setCharacteristicNotification
 				case BleConstants.MSG_CONTROL_ID_DESCRIPTOR_NOTIFICATION: {
 					if(data != null) {
-						UUID serviceUUID = (UUID) data.getSerializable(BleConstants.BLE_MSG_SERVICE_UUID_KEY);
-						UUID characteristicUUID = (UUID) data.getSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
-						UUID descriptorUUID = (UUID) data.getSerializable(BleConstants.BLE_MSG_DESCRIPTOR_UUID_KEY);
+						UUID serviceUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_SERVICE_UUID_KEY);
+						UUID characteristicUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+						UUID descriptorUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_DESCRIPTOR_UUID_KEY);
 						boolean enable = data.getBoolean(BleConstants.BLE_MSG_ENABLE_KEY);
-						reference.updateCharacteristicNotification(serviceUUID, characteristicUUID,
-								descriptorUUID, enable);
+						reference.updateCharacteristicNotification(getSession(reference, data), serviceUUID,
+								characteristicUUID, descriptorUUID, enable);
 					}
 					break;
 				}
-				//readCharacteristic
+				//readCharacteristic, request id of replyTo in arg2
 				case BleConstants.MSG_CONTROL_ID_READ_CHARACTERISTIC: {
 					if(data != null) {
-						UUID serviceUUID = (UUID) data.getSerializable(BleConstants.BLE_MSG_SERVICE_UUID_KEY);
-						UUID characteristicUUID = (UUID) data.getSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
-						reference.readFromCharacteristic(serviceUUID, characteristicUUID);
+						UUID serviceUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_SERVICE_UUID_KEY);
+						UUID characteristicUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+						reference.readFromCharacteristic(getSession(reference, data), serviceUUID, characteristicUUID,
+								msg.replyTo, requestId(msg));
+					}
+					break;
+				}
+				//readDescriptor, request id of replyTo in arg2
+				case BleConstants.MSG_CONTROL_ID_READ_DESCRIPTOR: {
+					if(data != null) {
+						UUID serviceUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_SERVICE_UUID_KEY);
+						UUID characteristicUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+						UUID descriptorUUID = UuidCodec.getUuid(data, BleConstants.BLE_MSG_DESCRIPTOR_UUID_KEY);
+						reference.readFromDescriptor(getSession(reference, data), serviceUUID, characteristicUUID,
+								descriptorUUID, msg.replyTo, requestId(msg));
 					}
 					break;
 				}
+				//readRemoteRssi
+				case BleConstants.MSG_CONTROL_ID_READ_REMOTE_RSSI: {
+					reference.readRemoteRssi(getSession(reference, data));
+					break;
+				}
+				//requestMtu, mtu in arg1
+				case BleConstants.MSG_CONTROL_ID_REQUEST_MTU: {
+					reference.requestMtu(getSession(reference, data), msg.arg1);
+					break;
+				}
 
 			}
 		} else {
 			BleLog.i(TAG, "onBleServiceMessage() msg is null");
 		}
 	}
+
+	//a request for a device the connection pool closed waits for its reconnect
+	private boolean deferIfEvicted(final BaseBleService reference, Message msg) {
+		String address = msg.getData().getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY);
+		if (address == null) {
+			return false;
+		}
+		final Message request = Message.obtain(msg);
+		if (reference.reconnectEvicted(address, new Runnable() {
+			@Override
+			public void run() {
+				onBleServiceMessage(reference, request);
+				request.recycle();
+			}
+		})) {
+			return true;
+		}
+		request.recycle();
+		return false;
+	}
+
+	//device of the address in data, the latest connected one without an address
+	private static GattSession getSession(BaseBleService reference, Bundle data) {
+		return reference.getSession(data == null ? null : data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY));
+	}
+
+	//a request id without replyTo has nobody to answer
+	private static int requestId(Message msg) {
+		return msg.replyTo == null ? 0 : msg.arg2;
+	}
 }
@@ -5,19 +5,51 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.ServiceConnection;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.Message;
 import android.os.Messenger;
+import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import android.os.SystemClock;
 
+import com.github.captain_miao.android.ble.batch.NotificationBatch;
+import com.github.captain_miao.android.ble.batch.NotificationBatchCodec;
+import com.github.captain_miao.android.ble.batch.NotificationBatcher;
 import com.github.captain_miao.android.ble.constant.BleConnectState;
 import com.github.captain_miao.android.ble.constant.BleConstants;
 import com.github.captain_miao.android.ble.constant.ConnectError;
+import com.github.captain_miao.android.ble.constant.OperationPriority;
+import com.github.captain_miao.android.ble.constant.OverflowPolicy;
+import com.github.captain_miao.android.ble.group.DeviceGroup;
+import com.github.captain_miao.android.ble.group.GroupResult;
+import com.github.captain_miao.android.ble.poll.PollScheduler;
+import com.github.captain_miao.android.ble.request.BleRequest;
+import com.github.captain_miao.android.ble.ring.NotificationRingReader;
+import com.github.captain_miao.android.ble.stream.NotificationStream;
+import com.github.captain_miao.android.ble.subscription.SubscriptionFilter;
+import com.github.captain_miao.android.ble.subscription.SubscriptionFilterCodec;
 import com.github.captain_miao.android.ble.utils.BleLog;
+import com.github.captain_miao.android.ble.utils.UuidCodec;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author YanLu
@@ -34,39 +66,292 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
     private long connectTimeout = 15000;
     protected Context context;
     protected BleCallback mBleCallback;
-    private static AppHandler<BluetoothHelper> appHandler;
-    public final Map<UUID, BleCallback> mCallbacks = new HashMap<>();
+    //the callback of setBleCallback, mBleCallback wraps it when it runs on an executor
+    private BleCallback mClientCallback;
+    private final AppHandler<BluetoothHelper> appHandler;
+    //runs the callbacks, null to call them on the looper of appHandler
+    private final Executor mCallbackExecutor;
+    //owned looper of appHandler when callbacks go to an executor
+    private final HandlerThread mCallbackThread;
+    private boolean mConnectionStateOnMain = false;
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+    private static final Executor MAIN_EXECUTOR = new Executor() {
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable runnable) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                runnable.run();
+            } else {
+                mMainHandler.post(runnable);
+            }
+        }
+    };
+    //callbacks by characteristic (or descriptor) uuid, see registerCallback
+    public final Map<UUID, List<BleCallback>> mCallbacks = new ConcurrentHashMap<>();
+    //mBleCallback as a list, for the events of uuids without a registered callback
+    private volatile List<BleCallback> mDefaultCallbacks = Collections.emptyList();
+    //pending reads/writes by request id, completed by the result with the same id
+    private final Map<Integer, BleRequest<?>> mRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger mNextRequestId = new AtomicInteger();
+    private long mRequestTimeout = 0;
+    //notification streams by characteristic uuid, see notifications
+    private final Map<UUID, CharacteristicStream> mStreams = new ConcurrentHashMap<>();
+    //streams of one device by its address, then by characteristic uuid
+    private final Map<String, Map<UUID, CharacteristicStream>> mDeviceStreams = new ConcurrentHashMap<>();
+    //state of every device the service reported, mState is the one of the latest event
+    private final Map<String, BleConnectState> mDeviceStates = new ConcurrentHashMap<>();
+    //connectDevice calls waiting for their device, by address
+    private final Map<String, PendingConnect> mPendingConnects = new ConcurrentHashMap<>();
+    //schedulers of newPollScheduler, stopped by release
+    private final List<PollScheduler> mPollSchedulers = new CopyOnWriteArrayList<>();
 
 	private Messenger mReceiveMessenger;//from BleService receive message
 	private Messenger mSendMessage = null;//send message to BleService
+	//set when the service runs in this process, events and the gatt requests skip the Messenger.
+	//scan, connect and the client registration still go as messages, they carry no payload
+	private BaseBleService mLocalService = null;
+	//message format of the service, the old one until it answers the register
+	private int mServiceVersion = BleConstants.PROTOCOL_VERSION_SERIALIZABLE_UUID;
+	//events this client wants, the service filters remote clients, a local service is filtered here
+	private volatile SubscriptionFilter mSubscription = SubscriptionFilter.ALL;
+	//the service bounds our outbound queue, handled messages are acknowledged (handler thread only)
+	private boolean mFlowControl = false;
+	private int mUnacked = 0;
+	//notifications of a service in another process, read on its wake-up message
+	private NotificationRingReader mRingReader = null;
+	private final NotificationRingReader.Listener mRingListener = new NotificationRingReader.Listener() {
+		@Override
+		public void onNotification(String address, UUID uuid, byte[] value) {
+			//the ring carries the notifications of every ring client
+			if (!mSubscription.accepts(BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION, uuid)) {
+				return;
+			}
+			dispatchBleEvent(address, BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION, 0, uuid, value, 0);
+		}
+
+		@Override
+		public void onOverrun(long lost) {
+			BleLog.w(TAG, lost + " notifications lost in the ring");
+			if (mBleCallback != null) {
+				mBleCallback.onNotificationOverrun(lost);
+			}
+		}
+	};
+	//batches notifications of a service in this process, a remote service batches them itself
+	private volatile NotificationBatcher mLocalBatcher = null;
+	private final NotificationBatcher.FlushListener mBatchListener = new NotificationBatcher.FlushListener() {
+		@Override
+		public void onFlush(List<NotificationBatch.Frames> frames) {
+			dispatchNotificationBatch(frames);
+		}
+	};
+	private final LocalBleClient mLocalClient = new LocalBleClient() {
+		@Override
+		public void onBleEvent(final String address, final int msgId, final int status, final UUID uuid,
+							   final byte[] value, final int requestId) {
+			if (requestId == 0 && !mSubscription.accepts(msgId, uuid)) {
+				return;
+			}
+			NotificationBatcher batcher = mLocalBatcher;
+			if (batcher != null && msgId == BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION) {
+				batcher.add(address, uuid, value, SystemClock.elapsedRealtimeNanos());
+				return;
+			}
+			appHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					dispatchBleEvent(address, msgId, status, uuid, value, requestId);
+				}
+			});
+		}
+
+		@Override
+		public void onBleMessage(Message msg) {
+			UUID uuid = UuidCodec.getUuid(msg.peekData(), BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+			if (!mSubscription.accepts(msg.what, uuid)) {
+				return;
+			}
+			appHandler.sendMessage(Message.obtain(msg));
+		}
+	};
 	public BleConnectState mState = BleConnectState.INITIALED;
 
+    //callback of the latest connectDevice
     public ConnectCallback mConnCallback;
 
-   	public TimeoutCallback  mConnectTimeout;
    	protected OnBindListener   mBindListener;
    	protected BluetoothGatt    mGatt;
 
     public BluetoothHelper(Context context) {
-        this.context = context;
-        appHandler = new AppHandler<>(this, this);
-        mReceiveMessenger = new Messenger(appHandler);
+        this(context, Looper.myLooper());
     }
     public BluetoothHelper(Context context, BleCallback bleCallback) {
         this(context);
-        this.mBleCallback = bleCallback;
+        setBleCallback(bleCallback);
+    }
+
+    /**
+     * @param callbackLooper looper of the service messages and of every callback,
+     *                       e.g. of a HandlerThread to keep decoding off the main thread
+     */
+    public BluetoothHelper(Context context, Looper callbackLooper) {
+        this.context = context;
+        this.mCallbackExecutor = null;
+        this.mCallbackThread = null;
+        appHandler = new AppHandler<>(callbackLooper, this, this);
+        mReceiveMessenger = new Messenger(appHandler);
+    }
+
+    /**
+     * service messages are handled on a thread of the helper, the BleCallback methods run on the executor
+     */
+    public BluetoothHelper(Context context, Executor callbackExecutor) {
+        this.context = context;
+        this.mCallbackExecutor = callbackExecutor;
+        this.mCallbackThread = new HandlerThread(TAG);
+        mCallbackThread.start();
+        appHandler = new AppHandler<>(mCallbackThread.getLooper(), this, this);
+        mReceiveMessenger = new Messenger(appHandler);
     }
 
     public void setBleCallback(BleCallback bleCallback) {
-        this.mBleCallback = bleCallback;
+        this.mClientCallback = bleCallback;
+        updateBleCallback();
+    }
+
+    /**
+     * deliver onConnectionStateChange and the ConnectCallback on the main thread,
+     * whatever the looper or executor of the other callbacks
+     */
+    public void setConnectionStateOnMainThread(boolean onMain) {
+        this.mConnectionStateOnMain = onMain;
+        updateBleCallback();
+    }
+
+    private void updateBleCallback() {
+        if (mClientCallback == null || (mCallbackExecutor == null && !mConnectionStateOnMain)) {
+            mBleCallback = mClientCallback;
+        } else {
+            Executor executor = mCallbackExecutor != null ? mCallbackExecutor : DIRECT_EXECUTOR;
+            mBleCallback = new ExecutorBleCallback(mClientCallback, executor, getStateExecutor());
+        }
+        mDefaultCallbacks = mBleCallback != null
+                ? Collections.singletonList(mBleCallback) : Collections.<BleCallback>emptyList();
+    }
+
+    /**
+     * route the events of one characteristic (or descriptor) to this callback instead of the
+     * one of setBleCallback, which still gets the events of every other uuid.
+     * a uuid may have several callbacks, they are called in the order of registration.
+     * a callback created with an address only gets the events of that device.
+     */
+    public void registerCallback(UUID uuid, BleCallback callback) {
+        BleCallback wrapped = mCallbackExecutor != null
+                ? new ExecutorBleCallback(callback, mCallbackExecutor, mCallbackExecutor) : callback;
+        synchronized (mCallbacks) {
+            List<BleCallback> callbacks = mCallbacks.get(uuid);
+            if (callbacks == null) {
+                callbacks = new CopyOnWriteArrayList<>();
+                mCallbacks.put(uuid, callbacks);
+            } else if (indexOf(callbacks, callback) >= 0) {
+                return;
+            }
+            callbacks.add(wrapped);
+        }
+    }
+
+    /**
+     * register for the uuid the callback was created with
+     */
+    public void registerCallback(BleCallback callback) {
+        registerCallback(callback.uuid, callback);
+    }
+
+    public void unregisterCallback(UUID uuid, BleCallback callback) {
+        synchronized (mCallbacks) {
+            List<BleCallback> callbacks = mCallbacks.get(uuid);
+            if (callbacks == null) {
+                return;
+            }
+            int index = indexOf(callbacks, callback);
+            if (index >= 0) {
+                callbacks.remove(index);
+            }
+            if (callbacks.isEmpty()) {
+                mCallbacks.remove(uuid);
+            }
+        }
+    }
+
+    public void unregisterCallback(BleCallback callback) {
+        unregisterCallback(callback.uuid, callback);
+    }
+
+    private static int indexOf(List<BleCallback> callbacks, BleCallback callback) {
+        for (int i = 0; i < callbacks.size(); i++) {
+            BleCallback registered = callbacks.get(i);
+            if (registered == callback || (registered instanceof ExecutorBleCallback
+                    && ((ExecutorBleCallback) registered).getCallback() == callback)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //a callback without address gets the events of every device, so does an event without address
+    private static boolean isFor(BleCallback callback, String address) {
+        return address == null || callback.address == null || callback.address.equals(address);
+    }
+
+    //the registered callbacks of the uuid, else the one of setBleCallback
+    private List<BleCallback> getCallbacks(UUID uuid) {
+        if (uuid != null) {
+            List<BleCallback> callbacks = mCallbacks.get(uuid);
+            if (callbacks != null) {
+                return callbacks;
+            }
+        }
+        return mDefaultCallbacks;
+    }
+
+    private Executor getStateExecutor() {
+        if (mConnectionStateOnMain) {
+            return MAIN_EXECUTOR;
+        }
+        return mCallbackExecutor != null ? mCallbackExecutor : DIRECT_EXECUTOR;
+    }
+
+    //null error for success
+    private void deliverConnectResult(final ConnectCallback callback, final ConnectError error) {
+        getStateExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (error == null) {
+                    callback.onConnectSuccess();
+                } else {
+                    callback.onConnectFailed(error);
+                }
+            }
+        });
     }
 
     public abstract boolean bindService(OnBindListener bindListener);
     public abstract void unbindService();
 
 
+    /**
+     * connect one more device, the devices connected before stay connected
+     */
     public boolean connectDevice(String mac, final ConnectCallback connectCallback) {
-        if(mState.isServiceDiscovered()){
+        //the service reports upper case addresses
+        final String address = mac.toUpperCase(Locale.US);
+        if(getState(address).isServiceDiscovered()){
             connectCallback.onConnectSuccess();
             return true;
         } else {
@@ -75,7 +360,12 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
             this.mConnCallback = connectCallback;
             if (mSendMessage != null) {
                 try {
-                    appHandler.postDelayed(mConnectTimeout, connectTimeout);
+                    PendingConnect pending = new PendingConnect(address, connectCallback);
+                    PendingConnect previous = mPendingConnects.put(address, pending);
+                    if (previous != null) {
+                        appHandler.removeCallbacks(previous);
+                    }
+                    appHandler.postDelayed(pending, connectTimeout);
                     mSendMessage.send(msg);
                     return true;
                 } catch (RemoteException e) {
@@ -86,6 +376,33 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
         }
     }
 
+    //fails the connect of one device when it does not get its services in time
+    private class PendingConnect extends TimeoutCallback {
+        private final String mAddress;
+        private final ConnectCallback mCallback;
+
+        PendingConnect(String address, ConnectCallback callback) {
+            this.mAddress = address;
+            this.mCallback = callback;
+        }
+
+        @Override
+        public void onTimeout() {
+            if (mPendingConnects.remove(mAddress) == this) {
+                deliverConnectResult(mCallback, ConnectError.ConnectTimeout);
+            }
+            stopScanDevice();
+        }
+    }
+
+    /**
+     * @return the last state the service reported for the device, INITIALED for none
+     */
+    public BleConnectState getState(String address) {
+        BleConnectState state = address == null ? null : mDeviceStates.get(address.toUpperCase(Locale.US));
+        return state == null ? BleConnectState.INITIALED : state;
+    }
+
     public boolean startScanDevice() {
    		return sendMsgWithoutSubscribe(BleConstants.MSG_CONTROL_ID_START_SCAN);
    	}
@@ -97,20 +414,388 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
    		return sendMsgWithoutSubscribe(BleConstants.MSG_CONTROL_ID_UNREGISTER);
    	}
 
+    /**
+     * disconnect one device, the other devices stay connected
+     */
+    public boolean disconnectDevice(String mac) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            return localService.postLocalCall(new Runnable() {
+                @Override
+                public void run() {
+                    localService.disconnectDevice(address);
+                }
+            });
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_DISCONNECT_DEVICE);
+        if (msg != null && mSendMessage != null) {
+            Bundle bundle = new Bundle();
+            bundle.putString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY, address);
+            msg.setData(bundle);
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
 
 
 
     public boolean writeCharacteristic(UUID serviceUUID, UUID CharacteristicUUID, byte[] values) {
+        return writeCharacteristic(serviceUUID, CharacteristicUUID, values, OperationPriority.BULK);
+    }
+
+    /**
+     * @param priority CONTROL writes (stop, config, ack) skip the queued BULK writes
+     */
+    public boolean writeCharacteristic(UUID serviceUUID, UUID CharacteristicUUID, byte[] values,
+                                       OperationPriority priority) {
+        return writeCharacteristic(null, serviceUUID, CharacteristicUUID, values, priority, 0);
+    }
+
+    /**
+     * the address overloads go to one device, the others to the device connected last
+     */
+    public boolean writeCharacteristic(String address, UUID serviceUUID, UUID CharacteristicUUID, byte[] values,
+                                       OperationPriority priority) {
+        return writeCharacteristic(address, serviceUUID, CharacteristicUUID, values, priority, 0);
+    }
+
+    public BleRequest<Void> requestWriteCharacteristic(UUID serviceUUID, UUID characteristicUUID, byte[] values) {
+        return requestWriteCharacteristic(serviceUUID, characteristicUUID, values, OperationPriority.BULK);
+    }
+
+    /**
+     * a write whose result completes the returned request instead of only calling onCharacteristicWrite,
+     * e.g. to chain a read after it with then(). the callbacks still get the event.
+     */
+    public BleRequest<Void> requestWriteCharacteristic(UUID serviceUUID, UUID characteristicUUID, byte[] values,
+                                                       OperationPriority priority) {
+        return requestWriteCharacteristic(null, serviceUUID, characteristicUUID, values, priority);
+    }
+
+    public BleRequest<Void> requestWriteCharacteristic(String address, UUID serviceUUID, UUID characteristicUUID,
+                                                       byte[] values, OperationPriority priority) {
+        BleRequest<Void> request = newRequest();
+        if (!writeCharacteristic(address, serviceUUID, characteristicUUID, values, priority, request.getId())) {
+            failRequest(request, BleConstants.GATT_REQUEST_NOT_SENT);
+        }
+        return request;
+    }
+
+    public BleRequest<GroupResult> requestGroupWrite(DeviceGroup group, UUID serviceUUID,
+                                                     UUID characteristicUUID, byte[] values) {
+        return requestGroupWrite(group, serviceUUID, characteristicUUID, values, OperationPriority.BULK);
+    }
+
+    /**
+     * the same write to every device of the group, queued on all of their sessions at once
+     * instead of one device after the other. the result has the status and latency per device
+     */
+    public BleRequest<GroupResult> requestGroupWrite(DeviceGroup group, final UUID serviceUUID,
+                                                     final UUID characteristicUUID, final byte[] values,
+                                                     final OperationPriority priority) {
+        return group.fanOut(new DeviceGroup.Issuer() {
+            @Override
+            public BleRequest<?> issue(String address) {
+                return requestWriteCharacteristic(address, serviceUUID, characteristicUUID, values, priority);
+            }
+        });
+    }
+
+    private boolean writeCharacteristic(String mac, final UUID serviceUUID, final UUID CharacteristicUUID,
+                                        final byte[] values, final OperationPriority priority, final int requestId) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            //taken now, the caller may reuse its array as soon as this returns
+            final byte[] snapshot = localService.snapshotPayload(values);
+            return postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    //a missing characteristic fails the request in the service
+                    localService.writeToCharacteristic(localService.getSession(address), serviceUUID,
+                            CharacteristicUUID, snapshot, priority, mLocalClient, requestId);
+                    localService.releasePayload(snapshot);
+                }
+            });
+        }
 
         Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_WRITE_CHARACTERISTIC);
         if (msg != null && mSendMessage != null) {
             msg.obj = values;
+            msg.arg1 = priority.getCode();
             Bundle bundle = new Bundle();
-            bundle.putSerializable(BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
-            bundle.putSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, CharacteristicUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, CharacteristicUUID);
+            putAddress(bundle, address);
+            msg.setData(bundle);
+            setRequest(msg, requestId);
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * run a direct call on the service thread behind the messages sent before,
+     * a call for a device the connection pool closed waits for its reconnect like a message does
+     */
+    private static boolean postLocalCall(final BaseBleService localService, final String address, final Runnable call) {
+        return localService.postLocalCall(new Runnable() {
+            @Override
+            public void run() {
+                if (address == null || !localService.reconnectEvicted(address, call)) {
+                    call.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * many writes in one message instead of one message per write,
+     * the service queues them back to back, or none if a characteristic is missing.
+     * every write is still answered by BleCallback#onCharacteristicWrite
+     */
+    public boolean writeCharacteristics(List<CharacteristicWrite> writes) {
+        return writeCharacteristics(writes, OperationPriority.BULK);
+    }
+
+    public boolean writeCharacteristics(List<CharacteristicWrite> writes, final OperationPriority priority) {
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            final List<CharacteristicWrite> snapshot = localService.snapshotPayloads(writes);
+            return localService.postLocalCall(new Runnable() {
+                @Override
+                public void run() {
+                    localService.writeToCharacteristics(snapshot, priority);
+                    localService.releasePayloads(snapshot);
+                }
+            });
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_WRITE_BATCH);
+        if (msg != null && mSendMessage != null) {
+            msg.arg1 = priority.getCode();
+            Bundle bundle = new Bundle();
+            bundle.putParcelableArrayList(BleConstants.BLE_MSG_WRITE_LIST_KEY,
+                    writes instanceof ArrayList ? (ArrayList<CharacteristicWrite>) writes
+                            : new ArrayList<>(writes));
+            msg.setData(bundle);
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * write a large payload with WRITE_TYPE_NO_RESPONSE, one packet after the other without queue round-trips,
+     * the result and the achieved bytes/second come back in BleCallback#onCharacteristicStreamWrite
+     */
+    public boolean writeCharacteristicStream(UUID serviceUUID, UUID characteristicUUID, byte[] values) {
+        return writeCharacteristicStream(null, serviceUUID, characteristicUUID, values);
+    }
+
+    public boolean writeCharacteristicStream(String mac, final UUID serviceUUID, final UUID characteristicUUID,
+                                             byte[] values) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            //the stream sends from its payload until it finishes, it gets its own copy
+            final byte[] payload = values == null ? null : values.clone();
+            return postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    localService.writeStreamToCharacteristic(localService.getSession(address), serviceUUID,
+                            characteristicUUID, payload);
+                }
+            });
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_STREAM_WRITE_CHARACTERISTIC);
+        if (msg != null && mSendMessage != null) {
+            msg.obj = values;
+            Bundle bundle = new Bundle();
+            putUuid(bundle, BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, characteristicUUID);
+            putAddress(bundle, address);
+            msg.setData(bundle);
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * push a file with a sliding window of write-without-response packets,
+     * progress comes in BleCallback#onTransferProgress.
+     * the file is opened here with the permissions of the caller, the service only gets the descriptor
+     * @param checkpoint bytes the device already has from an earlier transfer of this file
+     */
+    public boolean transferFile(UUID serviceUUID, UUID characteristicUUID, String path, long checkpoint) {
+        return transferFile(null, serviceUUID, characteristicUUID, path, checkpoint);
+    }
+
+    public boolean transferFile(UUID serviceUUID, UUID characteristicUUID, String path) {
+        return transferFile(null, serviceUUID, characteristicUUID, path, 0);
+    }
+
+    /**
+     * @param mac the device to send the file to, null for the device connected last
+     */
+    public boolean transferFile(String mac, UUID serviceUUID, UUID characteristicUUID, String path, long checkpoint) {
+        ParcelFileDescriptor file;
+        try {
+            file = ParcelFileDescriptor.open(new File(path), ParcelFileDescriptor.MODE_READ_ONLY);
+        } catch (FileNotFoundException e) {
+            BleLog.w(TAG, "can not read " + path + ": " + e);
+            return false;
+        }
+        return transferFile(mac, serviceUUID, characteristicUUID, file, checkpoint);
+    }
+
+    /**
+     * e.g. a descriptor of ContentResolver#openFileDescriptor, it belongs to the helper after the call
+     */
+    public boolean transferFile(UUID serviceUUID, UUID characteristicUUID, ParcelFileDescriptor file,
+                                long checkpoint) {
+        return transferFile(null, serviceUUID, characteristicUUID, file, checkpoint);
+    }
+
+    public boolean transferFile(String mac, final UUID serviceUUID, final UUID characteristicUUID,
+                                ParcelFileDescriptor file, final long checkpoint) {
+        if (file == null) {
+            return false;
+        }
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            final ParcelFileDescriptor descriptor = file;
+            //the service owns the descriptor, it closes it with the transfer
+            if (postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    localService.transferFile(localService.getSession(address), serviceUUID, characteristicUUID,
+                            descriptor, checkpoint);
+                }
+            })) {
+                return true;
+            }
+            closeQuietly(file);
+            return false;
+        }
+
+        boolean sent = false;
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_TRANSFER_FILE);
+        if (msg != null && mSendMessage != null) {
+            Bundle bundle = new Bundle();
+            putUuid(bundle, BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, characteristicUUID);
+            bundle.putParcelable(BleConstants.BLE_MSG_TRANSFER_FILE_KEY, file);
+            bundle.putLong(BleConstants.BLE_MSG_TRANSFER_BYTES_KEY, checkpoint);
+            putAddress(bundle, address);
+            msg.setData(bundle);
+            try {
+                mSendMessage.send(msg);
+                sent = true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        //the remote service got its own copy of the descriptor
+        closeQuietly(file);
+        return sent;
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            //nothing to do
+        }
+    }
+
+    public boolean cancelTransfer() {
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            return localService.postLocalCall(new Runnable() {
+                @Override
+                public void run() {
+                    localService.cancelBulkTransfer();
+                }
+            });
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_CANCEL_TRANSFER);
+        if (msg != null && mSendMessage != null) {
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * begin a reliable write: queue the writes on the transaction, then execute or abort it
+     */
+    public ReliableWriteTransaction beginReliableWrite() {
+        return beginReliableWrite(null);
+    }
+
+    /**
+     * @param mac the device of the writes, null for the device connected last
+     */
+    public ReliableWriteTransaction beginReliableWrite(String mac) {
+        return new ReliableWriteTransaction(this, mac);
+    }
+
+    boolean executeReliableWrite(String mac, ArrayList<CharacteristicWrite> writes) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            //the operation keeps the values until the batch is executed
+            final List<CharacteristicWrite> copy = new ArrayList<>(writes.size());
+            for (CharacteristicWrite write : writes) {
+                byte[] value = write.getValue();
+                copy.add(new CharacteristicWrite(write.getServiceUuid(), write.getCharacteristicUuid(),
+                        value == null ? null : value.clone()));
+            }
+            return postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    localService.reliableWriteToCharacteristics(localService.getSession(address), copy);
+                }
+            });
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_RELIABLE_WRITE);
+        if (msg != null && mSendMessage != null) {
+            Bundle bundle = new Bundle();
+            bundle.putParcelableArrayList(BleConstants.BLE_MSG_WRITE_LIST_KEY, writes);
+            putAddress(bundle, address);
             msg.setData(bundle);
             try {
-                //msg.replyTo = mReceiveMessenger;
                 mSendMessage.send(msg);
                 return true;
             } catch (RemoteException e) {
@@ -121,14 +806,31 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
     }
 
     public boolean updateCharacteristicNotification(UUID serviceUUID, UUID characteristicUUID, UUID descriptorUUID, boolean enable) {
+        return updateCharacteristicNotification(null, serviceUUID, characteristicUUID, descriptorUUID, enable);
+    }
+
+    public boolean updateCharacteristicNotification(String mac, final UUID serviceUUID, final UUID characteristicUUID,
+                                                    final UUID descriptorUUID, final boolean enable) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            return postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    localService.updateCharacteristicNotification(localService.getSession(address), serviceUUID,
+                            characteristicUUID, descriptorUUID, enable);
+                }
+            });
+        }
 
         Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_DESCRIPTOR_NOTIFICATION);
         if (msg != null && mSendMessage != null) {
             Bundle bundle = new Bundle();
-            bundle.putSerializable(BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
-            bundle.putSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, characteristicUUID);
-            bundle.putSerializable(BleConstants.BLE_MSG_DESCRIPTOR_UUID_KEY, descriptorUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, characteristicUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_DESCRIPTOR_UUID_KEY, descriptorUUID);
             bundle.putBoolean(BleConstants.BLE_MSG_ENABLE_KEY, enable);
+            putAddress(bundle, address);
             msg.setData(bundle);
             try {
                 //msg.replyTo = mReceiveMessenger;
@@ -142,15 +844,367 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
     }
 
     public boolean readFromCharacteristic(UUID serviceUUID, UUID CharacteristicUUID) {
+        return readFromCharacteristic(null, serviceUUID, CharacteristicUUID, 0);
+    }
+
+    public boolean readFromCharacteristic(String address, UUID serviceUUID, UUID CharacteristicUUID) {
+        return readFromCharacteristic(address, serviceUUID, CharacteristicUUID, 0);
+    }
+
+    /**
+     * the read value completes the returned request, the callbacks still get onCharacteristicRead
+     */
+    public BleRequest<byte[]> requestReadCharacteristic(UUID serviceUUID, UUID characteristicUUID) {
+        return requestReadCharacteristic(null, serviceUUID, characteristicUUID);
+    }
+
+    public BleRequest<byte[]> requestReadCharacteristic(String address, UUID serviceUUID, UUID characteristicUUID) {
+        BleRequest<byte[]> request = newRequest();
+        if (!readFromCharacteristic(address, serviceUUID, characteristicUUID, request.getId())) {
+            failRequest(request, BleConstants.GATT_REQUEST_NOT_SENT);
+        }
+        return request;
+    }
+
+    private boolean readFromCharacteristic(String mac, final UUID serviceUUID,
+                                           final UUID CharacteristicUUID, final int requestId) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            return postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    localService.readFromCharacteristic(localService.getSession(address), serviceUUID,
+                            CharacteristicUUID, mLocalClient, requestId);
+                }
+            });
+        }
 
         Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_READ_CHARACTERISTIC);
         if (msg != null && mSendMessage != null) {
             Bundle bundle = new Bundle();
-            bundle.putSerializable(BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
-            bundle.putSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, CharacteristicUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, CharacteristicUUID);
+            putAddress(bundle, address);
             msg.setData(bundle);
+            setRequest(msg, requestId);
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+
+    public boolean readFromDescriptor(UUID serviceUUID, UUID characteristicUUID, UUID descriptorUUID) {
+        return readFromDescriptor(null, serviceUUID, characteristicUUID, descriptorUUID, 0);
+    }
+
+    public boolean readFromDescriptor(String address, UUID serviceUUID, UUID characteristicUUID, UUID descriptorUUID) {
+        return readFromDescriptor(address, serviceUUID, characteristicUUID, descriptorUUID, 0);
+    }
+
+    public BleRequest<byte[]> requestReadDescriptor(UUID serviceUUID, UUID characteristicUUID, UUID descriptorUUID) {
+        return requestReadDescriptor(null, serviceUUID, characteristicUUID, descriptorUUID);
+    }
+
+    public BleRequest<byte[]> requestReadDescriptor(String address, UUID serviceUUID, UUID characteristicUUID,
+                                                    UUID descriptorUUID) {
+        BleRequest<byte[]> request = newRequest();
+        if (!readFromDescriptor(address, serviceUUID, characteristicUUID, descriptorUUID, request.getId())) {
+            failRequest(request, BleConstants.GATT_REQUEST_NOT_SENT);
+        }
+        return request;
+    }
+
+    private boolean readFromDescriptor(String mac, final UUID serviceUUID, final UUID characteristicUUID,
+                                       final UUID descriptorUUID, final int requestId) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            return postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    localService.readFromDescriptor(localService.getSession(address), serviceUUID,
+                            characteristicUUID, descriptorUUID, mLocalClient, requestId);
+                }
+            });
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_READ_DESCRIPTOR);
+        if (msg != null && mSendMessage != null) {
+            Bundle bundle = new Bundle();
+            putUuid(bundle, BleConstants.BLE_MSG_SERVICE_UUID_KEY, serviceUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY, characteristicUUID);
+            putUuid(bundle, BleConstants.BLE_MSG_DESCRIPTOR_UUID_KEY, descriptorUUID);
+            putAddress(bundle, address);
+            msg.setData(bundle);
+            setRequest(msg, requestId);
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * fail requests without a result after millis with GATT_OPERATION_TIMEOUT, 0 (default) to only
+     * rely on the operation timeout of the service. a request can also set its own with getRequestScheduler()
+     */
+    public void setRequestTimeout(long millis) {
+        this.mRequestTimeout = millis;
+    }
+
+    /**
+     * runs BleRequest timeouts on the message thread of this helper
+     */
+    public BleRequest.Scheduler getRequestScheduler() {
+        return mRequestScheduler;
+    }
+
+    /**
+     * periodic reads of characteristics without notifications, use it instead of app timers
+     * calling readFromCharacteristic. it runs on the message thread of this helper,
+     * removeAll() or release() stops it
+     */
+    public PollScheduler newPollScheduler() {
+        PollScheduler scheduler = new PollScheduler(mRequestScheduler, new PollScheduler.Reader() {
+            @Override
+            public BleRequest<byte[]> read(String address, UUID serviceUUID, UUID characteristicUUID) {
+                return requestReadCharacteristic(address, serviceUUID, characteristicUUID);
+            }
+        });
+        mPollSchedulers.add(scheduler);
+        return scheduler;
+    }
+
+    private final BleRequest.Scheduler mRequestScheduler = new BleRequest.Scheduler() {
+        @Override
+        public boolean postDelayed(Runnable runnable, long delayMillis) {
+            return appHandler.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            appHandler.removeCallbacks(runnable);
+        }
+    };
+
+    private <T> BleRequest<T> newRequest() {
+        int id = mNextRequestId.incrementAndGet();
+        if (id == 0) {
+            //0 is no request
+            id = mNextRequestId.incrementAndGet();
+        }
+        final BleRequest<T> request = new BleRequest<>(id);
+        mRequests.put(id, request);
+        //timeouts and cancels finish it here too
+        request.addCallback(new BleRequest.Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                mRequests.remove(request.getId());
+            }
+
+            @Override
+            public void onFailure(int status) {
+                mRequests.remove(request.getId());
+            }
+        });
+        if (mRequestTimeout > 0) {
+            request.timeout(mRequestScheduler, mRequestTimeout);
+        }
+        return request;
+    }
+
+    private void failRequest(BleRequest<?> request, int status) {
+        mRequests.remove(request.getId());
+        request.fail(status);
+    }
+
+    private void setRequest(Message msg, int requestId) {
+        if (requestId != 0) {
+            msg.arg2 = requestId;
+            msg.replyTo = mReceiveMessenger;
+        }
+    }
+
+    //results of requests which never arrive, e.g. the service is gone
+    private void cancelRequests() {
+        for (BleRequest<?> request : mRequests.values()) {
+            request.cancel(false);
+        }
+        mRequests.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void completeRequest(int requestId, int status, byte[] value) {
+        BleRequest<Object> request = (BleRequest<Object>) mRequests.remove(requestId);
+        if (request == null) {
+            //timed out or cancelled
+            return;
+        }
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            request.fail(status);
+        } else {
+            request.complete(value);
+        }
+    }
+
+    /**
+     * the notifications of a characteristic as a stream with demand and operators.
+     * every call for the characteristic returns the same stream, its first subscriber turns the
+     * notifications on (CLIENT_CHARACTERISTIC_CONFIG) and its last cancel turns them off.
+     * the BleCallback still gets every notification
+     */
+    public NotificationStream<byte[]> notifications(UUID serviceUUID, UUID characteristicUUID) {
+        return getStream(mStreams, null, serviceUUID, characteristicUUID);
+    }
+
+    /**
+     * the notifications of the characteristic of one device, the stream without an address gets
+     * the ones of every device and turns them on for the device connected last
+     * @param address null for the stream without an address
+     */
+    public NotificationStream<byte[]> notifications(String address, UUID serviceUUID, UUID characteristicUUID) {
+        if (address == null) {
+            return notifications(serviceUUID, characteristicUUID);
+        }
+        address = toDeviceAddress(address);
+        Map<UUID, CharacteristicStream> streams;
+        synchronized (mDeviceStreams) {
+            streams = mDeviceStreams.get(address);
+            if (streams == null) {
+                streams = new ConcurrentHashMap<>();
+                mDeviceStreams.put(address, streams);
+            }
+        }
+        return getStream(streams, address, serviceUUID, characteristicUUID);
+    }
+
+    private CharacteristicStream getStream(Map<UUID, CharacteristicStream> streams, String address,
+                                           UUID serviceUUID, UUID characteristicUUID) {
+        synchronized (streams) {
+            CharacteristicStream stream = streams.get(characteristicUUID);
+            if (stream == null) {
+                stream = new CharacteristicStream(address, serviceUUID, characteristicUUID);
+                streams.put(characteristicUUID, stream);
+            }
+            return stream;
+        }
+    }
+
+    private void publish(String address, UUID uuid, byte[] value) {
+        if (uuid == null) {
+            return;
+        }
+        CharacteristicStream stream = mStreams.get(uuid);
+        if (stream != null) {
+            stream.publish(value);
+        }
+        Map<UUID, CharacteristicStream> streams = address == null ? null : mDeviceStreams.get(address);
+        stream = streams == null ? null : streams.get(uuid);
+        if (stream != null) {
+            stream.publish(value);
+        }
+    }
+
+    private class CharacteristicStream extends NotificationStream<byte[]> {
+        private final String mAddress;
+        private final UUID mServiceUuid;
+        private final UUID mCharacteristicUuid;
+
+        CharacteristicStream(String address, UUID serviceUuid, UUID characteristicUuid) {
+            super(mRequestScheduler);
+            this.mAddress = address;
+            this.mServiceUuid = serviceUuid;
+            this.mCharacteristicUuid = characteristicUuid;
+        }
+
+        @Override
+        protected void onActive() {
+            updateCharacteristicNotification(mAddress, mServiceUuid, mCharacteristicUuid,
+                    BleConstants.CLIENT_CHARACTERISTIC_CONFIG, true);
+        }
+
+        @Override
+        protected void onInactive() {
+            updateCharacteristicNotification(mAddress, mServiceUuid, mCharacteristicUuid,
+                    BleConstants.CLIENT_CHARACTERISTIC_CONFIG, false);
+        }
+
+        void publish(byte[] value) {
+            emit(value);
+        }
+
+        void finish() {
+            complete();
+        }
+    }
+
+    public boolean readRemoteRssi() {
+        return readRemoteRssi(null);
+    }
+
+    public boolean readRemoteRssi(String mac) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            return postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    localService.readRemoteRssi(localService.getSession(address));
+                }
+            });
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_READ_REMOTE_RSSI);
+        if (msg != null && mSendMessage != null) {
+            if (address != null) {
+                Bundle bundle = new Bundle();
+                putAddress(bundle, address);
+                msg.setData(bundle);
+            }
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    public boolean requestMtu(int mtu) {
+        return requestMtu(null, mtu);
+    }
+
+    public boolean requestMtu(String mac, final int mtu) {
+        final String address = toDeviceAddress(mac);
+        final BaseBleService localService = mLocalService;
+        if (localService != null) {
+            return postLocalCall(localService, address, new Runnable() {
+                @Override
+                public void run() {
+                    localService.requestMtu(localService.getSession(address), mtu);
+                }
+            });
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_REQUEST_MTU);
+        if (msg != null && mSendMessage != null) {
+            msg.arg1 = mtu;
+            if (address != null) {
+                Bundle bundle = new Bundle();
+                putAddress(bundle, address);
+                msg.setData(bundle);
+            }
             try {
-                //msg.replyTo = mReceiveMessenger;
                 mSendMessage.send(msg);
                 return true;
             } catch (RemoteException e) {
@@ -167,6 +1221,84 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
         if (msg != null && mSendMessage != null) {
             try {
                 msg.replyTo = mReceiveMessenger;
+                msg.arg1 = BleConstants.PROTOCOL_VERSION;
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * bound what the service queues for this client: it sends at most FLOW_CONTROL_WINDOW
+     * messages ahead of the ones handled here and keeps at most capacity more, the policy
+     * decides what is dropped beyond that. drops come in BleCallback#onMessagesDropped.
+     * nothing to do for a service in this process, its events are direct calls.
+     * @param capacity 0 to turn flow control off
+     */
+    public boolean setFlowControl(int capacity, OverflowPolicy policy) {
+        if (mLocalService != null) {
+            return false;
+        }
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_FLOW_CONTROL);
+        if (msg != null && mSendMessage != null) {
+            msg.replyTo = mReceiveMessenger;
+            msg.arg1 = capacity;
+            msg.arg2 = policy.getCode();
+            try {
+                mSendMessage.send(msg);
+                //the handler thread counts and acknowledges
+                appHandler.post(new FlowControlSwitch(capacity > 0));
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    private class FlowControlSwitch implements Runnable {
+        private final boolean mOn;
+
+        FlowControlSwitch(boolean on) {
+            this.mOn = on;
+        }
+
+        @Override
+        public void run() {
+            mFlowControl = mOn;
+            mUnacked = 0;
+        }
+    }
+
+    /**
+     * only get the events of the filter, e.g. a logger which only wants notifications
+     * of one characteristic. a service in another process does not send the others at all.
+     * connection state changes always come.
+     */
+    public boolean setSubscription(SubscriptionFilter filter) {
+        mSubscription = filter;
+        if (mLocalService != null || mSendMessage == null) {
+            //applied when the service connects
+            return true;
+        }
+        return register();
+    }
+
+    //register, or update the filter of a registered client
+    private boolean register() {
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_REGISTER);
+        if (msg != null && mSendMessage != null) {
+            msg.replyTo = mReceiveMessenger;
+            msg.arg1 = BleConstants.PROTOCOL_VERSION;
+            if (mSubscription != SubscriptionFilter.ALL) {
+                Bundle bundle = new Bundle();
+                SubscriptionFilterCodec.writeToBundle(mSubscription, bundle);
+                msg.setData(bundle);
+            }
+            try {
                 mSendMessage.send(msg);
                 return true;
             } catch (RemoteException e) {
@@ -176,6 +1308,76 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
         return false;
     }
 
+    /**
+     * read notifications of a service in another process from shared memory instead of
+     * one binder transaction each. notifications larger than a ring slot still come as messages.
+     * nothing to do for a service in this process, its events are direct calls anyway.
+     */
+    public boolean openNotificationRing() {
+        if (mLocalService != null) {
+            return false;
+        }
+        return sendMsgAndSubscribe(BleConstants.MSG_CONTROL_ID_OPEN_NOTIFICATION_RING);
+    }
+
+    /**
+     * get notifications in BleCallback#onCharacteristicNotificationBatch, at most one delivery
+     * per window instead of one per notification. for UI clients which do not need every packet
+     * the moment it arrives.
+     * @param windowMillis max milliseconds a notification waits for the others, 0 to stop batching
+     * @param maxFrames    notifications which are delivered without waiting for the window, 0 for no limit
+     */
+    public boolean setNotificationBatching(long windowMillis, int maxFrames) {
+        if (mLocalService != null) {
+            NotificationBatcher batcher = mLocalBatcher;
+            mLocalBatcher = windowMillis > 0
+                    ? new NotificationBatcher(appHandler, windowMillis, maxFrames, mBatchListener) : null;
+            if (batcher != null) {
+                batcher.flush();
+            }
+            return true;
+        }
+
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_BATCH_NOTIFICATIONS);
+        if (msg != null && mSendMessage != null) {
+            msg.replyTo = mReceiveMessenger;
+            msg.arg1 = (int) Math.min(windowMillis, Integer.MAX_VALUE);
+            msg.arg2 = maxFrames;
+            try {
+                mSendMessage.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+        return false;
+    }
+
+    private void mapNotificationRing(Bundle data, int size) {
+        data.setClassLoader(ParcelFileDescriptor.class.getClassLoader());
+        ParcelFileDescriptor fd = data.getParcelable(BleConstants.BLE_MSG_NOTIFICATION_RING_KEY);
+        if (fd == null) {
+            return;
+        }
+        FileInputStream in = new FileInputStream(fd.getFileDescriptor());
+        try {
+            //the mapping stays valid after the descriptor is closed
+            MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            //frames written before it was mapped are read too, or counted as overrun
+            mRingReader = NotificationRingReader.open(buffer,
+                    data.getLong(BleConstants.BLE_MSG_NOTIFICATION_RING_START_KEY));
+        } catch (IOException e) {
+            BleLog.w(TAG, "can not map the notification ring: " + e);
+        } finally {
+            try {
+                in.close();
+                fd.close();
+            } catch (IOException e) {
+                //nothing to do
+            }
+        }
+    }
+
     public boolean sendMsgWithoutSubscribe(int msgId) {
 
         Message msg = Message.obtain(null, msgId);
@@ -193,93 +1395,154 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
 
     @Override
     public void onHandleMessage(BluetoothHelper reference, Message msg) {
+        try {
+            handleServiceMessage(msg);
+        } finally {
+            //acknowledged once handled, so a slow client slows down its own queue
+            if (mFlowControl && isFlowControlled(msg.what)
+                    && ++mUnacked >= BleConstants.FLOW_CONTROL_WINDOW / 2) {
+                sendAck();
+            }
+        }
+    }
+
+    private void handleServiceMessage(Message msg) {
         Bundle data = msg.getData();
         switch (msg.what) {
             case BleConstants.BLE_MSG_ID_CONNECTION_STATE_CHANGED: {
                 BleConnectState newStatus = (BleConnectState) msg.obj;
+                //null for a scan state, or a service before multi device support
+                String address = getAddress(data);
+                onConnectionStateChanged(address, newStatus);
+                break;
+            }
+            case BleConstants.BLE_MSG_ID_PROTOCOL_VERSION: {
+                mServiceVersion = msg.arg1;
+                break;
+            }
+            case BleConstants.MSG_BLE_ID_NOTIFICATION_RING_OPENED: {
+                if (data != null) {
+                    mapNotificationRing(data, msg.arg1);
+                }
+                break;
+            }
+            case BleConstants.MSG_BLE_ID_NOTIFICATION_RING_WAKEUP: {
+                if (mRingReader != null) {
+                    mRingReader.poll(mRingListener);
+                }
+                break;
+            }
+            case BleConstants.MSG_BLE_ID_MESSAGES_DROPPED: {
                 if (mBleCallback != null) {
-                    mBleCallback.onConnectionStateChange(mState.getCode(), newStatus.getCode());
+                    mBleCallback.onMessagesDropped(msg.arg1);
                 }
-                mState = newStatus;
-                if (mConnCallback != null) {
-                    if (mState == BleConnectState.SERVICE_IS_DISCOVERED) {
-                        appHandler.removeCallbacks(mConnectTimeout);
-                        mConnCallback.onConnectSuccess();
-                    } else if (mState == BleConnectState.SERVICE_IS_NOT_DISCOVERED) {
-                        appHandler.removeCallbacks(mConnectTimeout);
-                        mConnCallback.onConnectFailed(ConnectError.InvalidStatus);
-                    } else if (mState == BleConnectState.DISCONNECTED) {
-                        appHandler.removeCallbacks(mConnectTimeout);
-                        mConnCallback.onConnectFailed(ConnectError.ConnectTimeout);
-                        for (BleCallback callback : mCallbacks.values()) {
-                            if (callback != null) {
-                                callback.onFailed("ble disconnected...");
-                            }
-                        }
-                    }
+                break;
+            }
+            case BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION_BATCH: {
+                if (data != null) {
+                    dispatchNotificationBatch(NotificationBatchCodec.fromBundle(data));
                 }
                 break;
             }
-            case BleConstants.MSG_BLE_ID_CHARACTERISTIC_WRITE: {
-                //onCharacteristicWrite
-                BleLog.i(TAG, "MSG_BLE_ID_CHARACTERISTIC_WRITE");
-                if (data != null && mBleCallback != null) {
-                    UUID uuid = (UUID) data.getSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
-                    mBleCallback.onCharacteristicWrite(uuid, msg.arg1);
+            case BleConstants.MSG_BLE_ID_CHARACTERISTIC_WRITE:
+            case BleConstants.MSG_BLE_ID_DESCRIPTOR_WRITE:
+            case BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION:
+            case BleConstants.MSG_BLE_ID_CHARACTERISTIC_READ:
+            case BleConstants.MSG_BLE_ID_DESCRIPTOR_READ: {
+                if (data != null) {
+                    UUID uuid = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+                    String address = data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY);
+                    //arg2: id of our request, 0 for the events of others
+                    dispatchBleEvent(address, msg.what, msg.arg1, uuid, (byte[]) msg.obj, msg.arg2);
                 }
                 break;
             }
-            case BleConstants.MSG_BLE_ID_DESCRIPTOR_WRITE: {
-                //onDescriptorWrite
-                BleLog.i(TAG, "MSG_BLE_ID_CHARACTERISTIC_WRITE");
-                if (data != null && mBleCallback != null) {
-                    UUID uuid = (UUID) data.getSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
-                    mBleCallback.onDescriptorWrite(uuid, msg.arg1);
+            case BleConstants.MSG_BLE_ID_CHARACTERISTIC_STREAM_WRITE: {
+                //writeCharacteristicStream finished
+                if (data != null) {
+                    UUID uuid = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+                    String address = data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY);
+                    for (BleCallback callback : getCallbacks(uuid)) {
+                        if (!isFor(callback, address)) {
+                            continue;
+                        }
+                        callback.onCharacteristicStreamWrite(uuid, msg.arg1,
+                                data.getInt(BleConstants.BLE_MSG_STREAM_BYTES_KEY),
+                                data.getLong(BleConstants.BLE_MSG_STREAM_BYTES_PER_SECOND_KEY));
+                    }
                 }
                 break;
             }
-            case BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION: {
-                //onCharacteristicChanged
-                if (data != null && mBleCallback != null) {
-                    UUID uuid = (UUID) data.getSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
-                    mBleCallback.onCharacteristicNotification(uuid, (byte[]) msg.obj);
+            case BleConstants.MSG_BLE_ID_TRANSFER_PROGRESS: {
+                if (data != null) {
+                    UUID uuid = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+                    String address = data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY);
+                    for (BleCallback callback : getCallbacks(uuid)) {
+                        if (!isFor(callback, address)) {
+                            continue;
+                        }
+                        callback.onTransferProgress(uuid,
+                                data.getLong(BleConstants.BLE_MSG_TRANSFER_BYTES_KEY),
+                                data.getLong(BleConstants.BLE_MSG_TRANSFER_TOTAL_KEY),
+                                data.getLong(BleConstants.BLE_MSG_STREAM_BYTES_PER_SECOND_KEY));
+                    }
                 }
                 break;
             }
-            case BleConstants.MSG_BLE_ID_CHARACTERISTIC_READ: {
-                //onCharacteristicRead
-                if (data != null && mBleCallback != null) {
-                    UUID uuid = (UUID) data.getSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
-                    mBleCallback.onCharacteristicRead(uuid, (byte[]) msg.obj);
+            case BleConstants.MSG_BLE_ID_TRANSFER_SUSPENDED: {
+                if (data != null) {
+                    UUID uuid = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+                    String address = data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY);
+                    for (BleCallback callback : getCallbacks(uuid)) {
+                        if (!isFor(callback, address)) {
+                            continue;
+                        }
+                        callback.onTransferSuspended(uuid, msg.arg1,
+                                data.getLong(BleConstants.BLE_MSG_TRANSFER_BYTES_KEY));
+                    }
                 }
                 break;
             }
-            case BleConstants.MSG_BLE_ID_DESCRIPTOR_READ: {
-                //onDescriptorRead
-                if (data != null && mBleCallback != null) {
-                    UUID uuid = (UUID) data.getSerializable(BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
-                    mBleCallback.onDescriptorRead(uuid, (byte[]) msg.obj);
+            case BleConstants.MSG_BLE_ID_TRANSFER_COMPLETED: {
+                if (data != null) {
+                    UUID uuid = UuidCodec.getUuid(data, BleConstants.BLE_MSG_CHARACTERISTIC_UUID_KEY);
+                    String address = data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY);
+                    for (BleCallback callback : getCallbacks(uuid)) {
+                        if (!isFor(callback, address)) {
+                            continue;
+                        }
+                        callback.onTransferCompleted(uuid, msg.arg1,
+                                data.getLong(BleConstants.BLE_MSG_TRANSFER_BYTES_KEY));
+                    }
                 }
                 break;
             }
             case BleConstants.MSG_BLE_ID_RELIABLE_WRITE_COMPLETED: {
                 //onReliableWriteCompleted
                 if(mBleCallback != null){
-                    mBleCallback.onReliableWriteCompleted(msg.arg1);
+                    mBleCallback.onReliableWriteCompleted(getAddress(data), msg.arg1);
                 }
                 break;
             }
             case BleConstants.MSG_BLE_ID_READ_REMOTE_RSSI: {
                 //onReadRemoteRssi
                 if(mBleCallback != null){
-                    mBleCallback.onReadRemoteRssi(msg.arg2, msg.arg1);
+                    mBleCallback.onReadRemoteRssi(getAddress(data), msg.arg2, msg.arg1);
+                }
+                break;
+            }
+            case BleConstants.MSG_BLE_ID_SETUP_COMPLETED: {
+                if (mBleCallback != null && data != null) {
+                    mBleCallback.onSetupCompleted(data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY), msg.arg1,
+                            data.getLong(BleConstants.BLE_MSG_SETUP_WAIT_KEY),
+                            data.getLong(BleConstants.BLE_MSG_SETUP_TIME_KEY));
                 }
                 break;
             }
             case BleConstants.MSG_BLE_ID_MTU_CHANGED: {
                 //onMtuChanged
                 if(mBleCallback != null){
-                    mBleCallback.onMtuChanged(msg.arg2, msg.arg1);
+                    mBleCallback.onMtuChanged(getAddress(data), msg.arg2, msg.arg1);
                 }
                 break;
             }
@@ -294,22 +1557,170 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
         }
     }
 
+    private void onConnectionStateChanged(String address, BleConnectState newStatus) {
+        BleConnectState oldStatus = address == null ? mState : getState(address);
+        if (mBleCallback != null) {
+            mBleCallback.onConnectionStateChange(address, oldStatus.getCode(), newStatus.getCode());
+        }
+        mState = newStatus;
+        if (address != null) {
+            mDeviceStates.put(address, newStatus);
+        }
+        if (newStatus != BleConnectState.SERVICE_IS_DISCOVERED
+                && newStatus != BleConnectState.SERVICE_IS_NOT_DISCOVERED
+                && newStatus != BleConnectState.DISCONNECTED) {
+            return;
+        }
+        PendingConnect pending = takePendingConnect(address);
+        if (pending != null) {
+            appHandler.removeCallbacks(pending);
+            if (newStatus == BleConnectState.SERVICE_IS_DISCOVERED) {
+                deliverConnectResult(pending.mCallback, null);
+            } else if (newStatus == BleConnectState.SERVICE_IS_NOT_DISCOVERED) {
+                deliverConnectResult(pending.mCallback, ConnectError.InvalidStatus);
+            } else {
+                deliverConnectResult(pending.mCallback, ConnectError.ConnectTimeout);
+            }
+        }
+        if (newStatus == BleConnectState.DISCONNECTED && mConnCallback != null) {
+            for (List<BleCallback> callbacks : mCallbacks.values()) {
+                for (BleCallback callback : callbacks) {
+                    if (address == null) {
+                        //a service without multi device support has only one link
+                        callback.onFailed("ble disconnected...");
+                    } else if (isFor(callback, address)) {
+                        callback.onFailed(address, "ble disconnected...");
+                    }
+                }
+            }
+        }
+    }
+
+    //an event without address finishes the latest connect
+    private PendingConnect takePendingConnect(String address) {
+        if (address != null) {
+            return mPendingConnects.remove(address);
+        }
+        for (PendingConnect pending : mPendingConnects.values()) {
+            if (pending.mCallback == mConnCallback) {
+                mPendingConnects.remove(pending.mAddress);
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    //the replies which the service sends around the outbound queue
+    private static boolean isFlowControlled(int msgId) {
+        return msgId != BleConstants.BLE_MSG_ID_PROTOCOL_VERSION
+                && msgId != BleConstants.MSG_BLE_ID_NOTIFICATION_RING_OPENED;
+    }
+
+    private void sendAck() {
+        Message msg = Message.obtain(null, BleConstants.MSG_CONTROL_ID_ACK);
+        if (msg != null && mSendMessage != null) {
+            msg.replyTo = mReceiveMessenger;
+            msg.arg1 = mUnacked;
+            try {
+                mSendMessage.send(msg);
+                mUnacked = 0;
+            } catch (RemoteException e) {
+                BleLog.w(TAG, "Lost connection to service" + e.toString());
+            }
+        }
+    }
+
+    //no address for the device connected last
+    private static void putAddress(Bundle bundle, String address) {
+        if (address != null) {
+            bundle.putString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY, toDeviceAddress(address));
+        }
+    }
+
+    //null from a service before multi device support
+    private static String getAddress(Bundle data) {
+        return data == null ? null : data.getString(BleConstants.BLE_MSG_DEVICE_ADDRESS_KEY);
+    }
+
+    //the service keys its sessions by upper case address
+    private static String toDeviceAddress(String address) {
+        return address == null ? null : address.toUpperCase(Locale.US);
+    }
+
+    //a service of protocol version 1 only reads Serializable UUIDs
+    private void putUuid(Bundle bundle, String key, UUID uuid) {
+        UuidCodec.putUuid(bundle, key, uuid, mServiceVersion < BleConstants.PROTOCOL_VERSION);
+    }
+
+    /**
+     * the events sent by BaseBleService#sendBleMessage, from a Message or from the local service
+     * @param address   device of the event, null from a service without multi device support
+     * @param requestId our request finished by this event, 0 for none
+     */
+    private void dispatchBleEvent(String address, int msgId, int status, UUID uuid, byte[] value, int requestId) {
+        if (requestId != 0) {
+            completeRequest(requestId, status, value);
+        }
+        if (msgId == BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION) {
+            publish(address, uuid, value);
+        }
+        //one map lookup, no branching on the uuid in the callbacks
+        for (BleCallback callback : getCallbacks(uuid)) {
+            if (!isFor(callback, address)) {
+                continue;
+            }
+            switch (msgId) {
+                case BleConstants.MSG_BLE_ID_CHARACTERISTIC_WRITE:
+                    //onCharacteristicWrite
+                    callback.onCharacteristicWrite(address, uuid, status);
+                    break;
+                case BleConstants.MSG_BLE_ID_DESCRIPTOR_WRITE:
+                    //onDescriptorWrite
+                    callback.onDescriptorWrite(address, uuid, status);
+                    break;
+                case BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION:
+                    //onCharacteristicChanged
+                    callback.onCharacteristicNotification(address, uuid, value);
+                    break;
+                case BleConstants.MSG_BLE_ID_CHARACTERISTIC_READ:
+                    //onCharacteristicRead
+                    callback.onCharacteristicRead(address, uuid, value);
+                    break;
+                case BleConstants.MSG_BLE_ID_DESCRIPTOR_READ:
+                    //onDescriptorRead
+                    callback.onDescriptorRead(address, uuid, value);
+                    break;
+            }
+        }
+    }
+
+    private void dispatchNotificationBatch(List<NotificationBatch.Frames> batch) {
+        for (NotificationBatch.Frames frames : batch) {
+            for (byte[] value : frames.getValues()) {
+                publish(frames.getAddress(), frames.getUuid(), value);
+            }
+            for (BleCallback callback : getCallbacks(frames.getUuid())) {
+                if (!isFor(callback, frames.getAddress())) {
+                    continue;
+                }
+                callback.onCharacteristicNotificationBatch(frames.getAddress(), frames.getUuid(), frames.getValues(),
+                        frames.getTimestamps());
+            }
+        }
+    }
+
     @Override
     public void onServiceConnected(ComponentName name, IBinder service) {
         BleLog.i(TAG, "mConnection onServiceConnected");
         mSendMessage = new Messenger(service);
-        sendMsgAndSubscribe(BleConstants.MSG_CONTROL_ID_REGISTER);
-
-
-        mConnectTimeout = new TimeoutCallback() {
-   			@Override
-   			public void onTimeout() {
-                if(mConnCallback != null) {
-                    mConnCallback.onConnectFailed(ConnectError.ConnectTimeout);
-                }
-   				stopScanDevice();
-   			}
-   		};
+        mLocalService = BaseBleService.getLocalService(service);
+        if (mLocalService != null) {
+            BleLog.i(TAG, "service is in this process, using direct calls");
+            mServiceVersion = BleConstants.PROTOCOL_VERSION;
+            mLocalService.addLocalClient(mLocalClient);
+        } else {
+            register();
+        }
 
 
         if(mBindListener != null){
@@ -321,6 +1732,16 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
     public void onServiceDisconnected(ComponentName name) {
         BleLog.i(TAG, "mConnection onServiceDisconnected");
         mSendMessage = null;
+        mLocalService = null;
+        mServiceVersion = BleConstants.PROTOCOL_VERSION_SERIALIZABLE_UUID;
+        mRingReader = null;
+        appHandler.post(new FlowControlSwitch(false));
+        cancelRequests();
+        NotificationBatcher batcher = mLocalBatcher;
+        mLocalBatcher = null;
+        if (batcher != null) {
+            batcher.clear();
+        }
     }
 
 
@@ -330,7 +1751,12 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
 
 
     public void release(){
-        sendMsgAndSubscribe(BleConstants.MSG_CONTROL_ID_UNREGISTER);
+        if (mLocalService != null) {
+            mLocalService.removeLocalClient(mLocalClient);
+            mLocalService = null;
+        } else {
+            sendMsgAndSubscribe(BleConstants.MSG_CONTROL_ID_UNREGISTER);
+        }
         if(isBinded()) {
             try {
                 unbindService();
@@ -338,6 +1764,28 @@ public abstract class BluetoothHelper implements ServiceConnection, AppHandler.H
                 e.printStackTrace();
             }
         }
+        for (PollScheduler scheduler : mPollSchedulers) {
+            scheduler.removeAll();
+        }
+        mPollSchedulers.clear();
+        cancelRequests();
+        for (CharacteristicStream stream : mStreams.values()) {
+            stream.finish();
+        }
+        mStreams.clear();
+        for (Map<UUID, CharacteristicStream> streams : mDeviceStreams.values()) {
+            for (CharacteristicStream stream : streams.values()) {
+                stream.finish();
+            }
+        }
+        mDeviceStreams.clear();
+        for (PendingConnect pending : mPendingConnects.values()) {
+            appHandler.removeCallbacks(pending);
+        }
+        mPendingConnects.clear();
+        if (mCallbackThread != null) {
+            mCallbackThread.quitSafely();
+        }
    	}
 
     public interface OnBindListener {
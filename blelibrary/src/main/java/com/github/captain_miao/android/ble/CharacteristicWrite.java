@@ -0,0 +1,68 @@
+package com.github.captain_miao.android.ble;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * (service, characteristic, value) of one write, sent to the service in batches
+ */
+public class CharacteristicWrite implements Parcelable {
+    private final UUID serviceUuid;
+    private final UUID characteristicUuid;
+    private final byte[] value;
+
+    public CharacteristicWrite(UUID serviceUuid, UUID characteristicUuid, byte[] value) {
+        this.serviceUuid = serviceUuid;
+        this.characteristicUuid = characteristicUuid;
+        this.value = value;
+    }
+
+    protected CharacteristicWrite(Parcel in) {
+        this.serviceUuid = new UUID(in.readLong(), in.readLong());
+        this.characteristicUuid = new UUID(in.readLong(), in.readLong());
+        this.value = in.createByteArray();
+    }
+
+    public UUID getServiceUuid() {
+        return serviceUuid;
+    }
+
+    public UUID getCharacteristicUuid() {
+        return characteristicUuid;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(serviceUuid.getMostSignificantBits());
+        dest.writeLong(serviceUuid.getLeastSignificantBits());
+        dest.writeLong(characteristicUuid.getMostSignificantBits());
+        dest.writeLong(characteristicUuid.getLeastSignificantBits());
+        dest.writeByteArray(value);
+    }
+
+    public static final Creator<CharacteristicWrite> CREATOR = new Creator<CharacteristicWrite>() {
+        @Override
+        public CharacteristicWrite createFromParcel(Parcel source) {
+            return new CharacteristicWrite(source);
+        }
+
+        @Override
+        public CharacteristicWrite[] newArray(int size) {
+            return new CharacteristicWrite[size];
+        }
+    };
+}
@@ -0,0 +1,343 @@
+package com.github.captain_miao.android.ble;
+
+import android.bluetooth.BluetoothGatt;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * runs every method of the wrapped callback on an executor,
+ * connection state changes may go to another one (e.g. the main thread).
+ */
+class ExecutorBleCallback extends BleCallback {
+    private final BleCallback mCallback;
+    private final Executor mExecutor;
+    private final Executor mStateExecutor;
+
+    ExecutorBleCallback(BleCallback callback, Executor executor, Executor stateExecutor) {
+        super(callback.address, callback.uuid);
+        this.mCallback = callback;
+        this.mExecutor = executor;
+        this.mStateExecutor = stateExecutor;
+    }
+
+    BleCallback getCallback() {
+        return mCallback;
+    }
+
+    @Override
+    public void onFailed(final UUID uuid, final String msg) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onFailed(uuid, msg);
+            }
+        });
+    }
+
+    @Override
+    public void onFailed(final String msg) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onFailed(msg);
+            }
+        });
+    }
+
+    @Override
+    public void onFailed(final String address, final String msg) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onFailed(address, msg);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicNotification(final UUID uuid, final byte[] data) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicNotification(uuid, data);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicNotification(final String address, final UUID uuid, final byte[] data) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicNotification(address, uuid, data);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicNotificationBatch(final UUID uuid, final List<byte[]> values, final long[] timestamps) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicNotificationBatch(uuid, values, timestamps);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicNotificationBatch(final String address, final UUID uuid, final List<byte[]> values,
+                                                  final long[] timestamps) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicNotificationBatch(address, uuid, values, timestamps);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicRead(final UUID uuid, final byte[] data) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicRead(uuid, data);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicRead(final String address, final UUID uuid, final byte[] data) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicRead(address, uuid, data);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicWrite(final UUID uuid, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicWrite(uuid, status);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicWrite(final String address, final UUID uuid, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicWrite(address, uuid, status);
+            }
+        });
+    }
+
+    @Override
+    public void onCharacteristicStreamWrite(final UUID uuid, final int status, final int bytes, final long bytesPerSecond) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onCharacteristicStreamWrite(uuid, status, bytes, bytesPerSecond);
+            }
+        });
+    }
+
+    @Override
+    public void onTransferProgress(final UUID uuid, final long bytes, final long total, final long bytesPerSecond) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onTransferProgress(uuid, bytes, total, bytesPerSecond);
+            }
+        });
+    }
+
+    @Override
+    public void onTransferSuspended(final UUID uuid, final int status, final long checkpoint) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onTransferSuspended(uuid, status, checkpoint);
+            }
+        });
+    }
+
+    @Override
+    public void onNotificationOverrun(final long lost) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onNotificationOverrun(lost);
+            }
+        });
+    }
+
+    @Override
+    public void onMessagesDropped(final long dropped) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onMessagesDropped(dropped);
+            }
+        });
+    }
+
+    @Override
+    public void onTransferCompleted(final UUID uuid, final int status, final long bytes) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onTransferCompleted(uuid, status, bytes);
+            }
+        });
+    }
+
+    @Override
+    public void onConnectionStateChange(final int status, final int newStatus) {
+        mStateExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onConnectionStateChange(status, newStatus);
+            }
+        });
+    }
+
+    @Override
+    public void onConnectionStateChange(final String address, final int status, final int newStatus) {
+        mStateExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onConnectionStateChange(address, status, newStatus);
+            }
+        });
+    }
+
+    @Override
+    public void onDescriptorRead(final UUID uuid, final byte[] data) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onDescriptorRead(uuid, data);
+            }
+        });
+    }
+
+    @Override
+    public void onDescriptorRead(final String address, final UUID uuid, final byte[] data) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onDescriptorRead(address, uuid, data);
+            }
+        });
+    }
+
+    @Override
+    public void onDescriptorWrite(final UUID uuid, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onDescriptorWrite(uuid, status);
+            }
+        });
+    }
+
+    @Override
+    public void onDescriptorWrite(final String address, final UUID uuid, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onDescriptorWrite(address, uuid, status);
+            }
+        });
+    }
+
+    @Override
+    public void onSetupCompleted(final String address, final int status, final long waitMillis,
+                                 final long setupMillis) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onSetupCompleted(address, status, waitMillis, setupMillis);
+            }
+        });
+    }
+
+    @Override
+    public void onMtuChanged(final int mtu, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onMtuChanged(mtu, status);
+            }
+        });
+    }
+
+    @Override
+    public void onMtuChanged(final String address, final int mtu, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onMtuChanged(address, mtu, status);
+            }
+        });
+    }
+
+    @Override
+    public void onReadRemoteRssi(final int rssi, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onReadRemoteRssi(rssi, status);
+            }
+        });
+    }
+
+    @Override
+    public void onReadRemoteRssi(final String address, final int rssi, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onReadRemoteRssi(address, rssi, status);
+            }
+        });
+    }
+
+    @Override
+    public void onReliableWriteCompleted(final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onReliableWriteCompleted(status);
+            }
+        });
+    }
+
+    @Override
+    public void onReliableWriteCompleted(final String address, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onReliableWriteCompleted(address, status);
+            }
+        });
+    }
+
+    @Override
+    public void onServicesDiscovered(final BluetoothGatt gatt, final int status) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onServicesDiscovered(gatt, status);
+            }
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.captain_miao.android.ble;
+
+import android.bluetooth.BluetoothGatt;
+
+import com.github.captain_miao.android.ble.constant.BleConnectState;
+import com.github.captain_miao.android.ble.constant.BleConstants;
+import com.github.captain_miao.android.ble.operation.GattOperation;
+import com.github.captain_miao.android.ble.operation.GattOperationQueue;
+import com.github.captain_miao.android.ble.operation.WriteCoalescer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * the connection of BaseBleService to one device: its BluetoothGatt, state,
+ * operation queue and MTU. the fields are guarded by the lock of the service.
+ */
+public class GattSession {
+    private final String mAddress;
+    BluetoothGatt mGatt = null;
+    BleConnectState mState = BleConnectState.INITIALED;
+    GattOperationQueue mOperationQueue = null;
+    WriteCoalescer mWriteCoalescer = null;
+    int mMtu = BleConstants.DEFAULT_MTU;
+    //setup times of SystemClock#elapsedRealtime, started is 0 out of the setup
+    long mSetupQueuedAt = 0;
+    long mSetupStartedAt = 0;
+    //opens the gatt when the setup scheduler gives its turn
+    Runnable mSetupStart = null;
+    //operations of the setup which did not finish yet, collected while mCollectingSetup
+    Set<GattOperation> mSetupOperations = null;
+    boolean mCollectingSetup = false;
+    int mSetupStatus = BluetoothGatt.GATT_SUCCESS;
+    //requests waiting for the reconnect of an evicted device, null when there is none
+    List<Runnable> mDeferred = null;
+    //characteristics whose notifications this service turned on, they arrive without any request
+    final Set<UUID> mNotifying = new HashSet<>();
+    //coalescing keys of the notifications in the outbound queues, one per characteristic
+    private final Map<UUID, Object> mNotificationKeys = new HashMap<>();
+
+    GattSession(String address) {
+        this.mAddress = address;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public BluetoothGatt getGatt() {
+        return mGatt;
+    }
+
+    public BleConnectState getState() {
+        return mState;
+    }
+
+    public int getMtu() {
+        return mMtu;
+    }
+
+    //nothing queued, no notifications on and not in the middle of a connect, it may be closed
+    boolean isIdle() {
+        return !mState.isConnecting() && mDeferred == null && mNotifying.isEmpty()
+                && (mOperationQueue == null || mOperationQueue.isIdle());
+    }
+
+    //max bytes of one write on this connection
+    int getMaxPayloadSize() {
+        return Math.min(mMtu - BleConstants.ATT_HEADER_SIZE, BleConstants.MAX_ATTRIBUTE_LENGTH);
+    }
+
+    Object getNotificationKey(UUID uuid) {
+        Object key = mNotificationKeys.get(uuid);
+        if (key == null) {
+            key = new Object();
+            mNotificationKeys.put(uuid, key);
+        }
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return mAddress + " " + mState;
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.captain_miao.android.ble;
+
+import android.os.Message;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * a client in the process of the BaseBleService, registered by BluetoothHelper
+ * when the binder it gets is the local one. events are plain method calls,
+ * called on the thread of the gatt callback, implementations hop to their own thread.
+ */
+interface LocalBleClient {
+
+    /**
+     * write/read/notification events, without Message and Bundle
+     * @param address device of the event, null if there is no connection
+     * @param value null for write events
+     * @param requestId id of the request of this client which finished, 0 for none
+     */
+    void onBleEvent(String address, int msgId, int status, UUID uuid, byte[] value, int requestId);
+
+    /**
+     * every other event, the Message is shared with the other clients and must be copied
+     */
+    void onBleMessage(Message msg);
+}
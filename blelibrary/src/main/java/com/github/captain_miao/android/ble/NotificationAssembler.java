@@ -0,0 +1,38 @@
+package com.github.captain_miao.android.ble;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * reassembly hook for notifications: a peripheral which sends frames larger than MTU-3
+ * splits them the same way writeToCharacteristic does, the framing is up to the firmware.
+ */
+public abstract class NotificationAssembler {
+
+    /**
+     * @param uuid     characteristic of the notification
+     * @param fragment value of one notification
+     * @return the complete frame, or null to wait for more fragments
+     */
+    public abstract byte[] onFragment(UUID uuid, byte[] fragment);
+
+    /**
+     * one assembler serves every device, override this to keep the frames of each apart
+     * @param address device of the notification
+     */
+    public byte[] onFragment(String address, UUID uuid, byte[] fragment) {
+        return onFragment(uuid, fragment);
+    }
+
+    //connection lost, drop partial frames
+    public void reset() {
+
+    }
+
+    //connection of one device lost
+    public void reset(String address) {
+        reset();
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.captain_miao.android.ble;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * writes collected on the client and sent to the service as one reliable (prepared) write.
+ * the service executes the batch if every prepared write succeeded or aborts it as a whole,
+ * the result comes back in BleCallback#onReliableWriteCompleted.
+ */
+public class ReliableWriteTransaction {
+    private final BluetoothHelper mHelper;
+    //null for the device connected last
+    private final String mAddress;
+    private final ArrayList<CharacteristicWrite> mWrites = new ArrayList<>();
+    private boolean mClosed = false;
+
+    ReliableWriteTransaction(BluetoothHelper helper, String address) {
+        this.mHelper = helper;
+        this.mAddress = address;
+    }
+
+    public ReliableWriteTransaction write(UUID serviceUUID, UUID characteristicUUID, byte[] values) {
+        if (mClosed) {
+            throw new IllegalStateException("transaction is already executed or aborted");
+        }
+        mWrites.add(new CharacteristicWrite(serviceUUID, characteristicUUID, values));
+        return this;
+    }
+
+    /**
+     * @return false if nothing to write or the service is not bound
+     */
+    public boolean execute() {
+        if (mClosed || mWrites.isEmpty()) {
+            return false;
+        }
+        mClosed = true;
+        return mHelper.executeReliableWrite(mAddress, mWrites);
+    }
+
+    /**
+     * nothing was sent yet, just drop the writes
+     */
+    public void abort() {
+        mClosed = true;
+        mWrites.clear();
+    }
+
+    public int size() {
+        return mWrites.size();
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.captain_miao.android.ble.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * notifications of one batching window, grouped by characteristic in the order
+ * of their first frame. the order across characteristics is kept by the timestamps only.
+ */
+public class NotificationBatch {
+    private final int mMaxFrames;
+    //by device and characteristic in the order of their first frame, a batch holds a few of them
+    private final List<Frames> mFrames = new ArrayList<>();
+    private int mSize = 0;
+
+    /**
+     * @param maxFrames frames after which the batch is full, 0 for no limit
+     */
+    public NotificationBatch(int maxFrames) {
+        this.mMaxFrames = maxFrames;
+    }
+
+    /**
+     * @param timestamp SystemClock#elapsedRealtimeNanos of the notification
+     * @return true if the batch is full and should be delivered now
+     */
+    public boolean add(UUID uuid, byte[] value, long timestamp) {
+        return add(null, uuid, value, timestamp);
+    }
+
+    /**
+     * @param address device of the notification, null for none
+     */
+    public boolean add(String address, UUID uuid, byte[] value, long timestamp) {
+        Frames frames = find(address, uuid);
+        if (frames == null) {
+            frames = new Frames(address, uuid);
+            mFrames.add(frames);
+        }
+        frames.add(value, timestamp);
+        mSize++;
+        return mMaxFrames > 0 && mSize >= mMaxFrames;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * take the frames out, the batch is empty afterwards
+     */
+    public List<Frames> drain() {
+        List<Frames> frames = new ArrayList<>(mFrames);
+        mFrames.clear();
+        mSize = 0;
+        return frames;
+    }
+
+    private Frames find(String address, UUID uuid) {
+        for (int i = 0; i < mFrames.size(); i++) {
+            Frames frames = mFrames.get(i);
+            if (frames.mUuid.equals(uuid)
+                    && (address == null ? frames.mAddress == null : address.equals(frames.mAddress))) {
+                return frames;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * notifications of one characteristic of one device, oldest first
+     */
+    public static class Frames {
+        private final String mAddress;
+        private final UUID mUuid;
+        private final List<byte[]> mValues;
+        private long[] mTimestamps;
+
+        Frames(String address, UUID uuid) {
+            this.mAddress = address;
+            this.mUuid = uuid;
+            this.mValues = new ArrayList<>();
+            this.mTimestamps = new long[8];
+        }
+
+        public Frames(UUID uuid, List<byte[]> values, long[] timestamps) {
+            this(null, uuid, values, timestamps);
+        }
+
+        public Frames(String address, UUID uuid, List<byte[]> values, long[] timestamps) {
+            this.mAddress = address;
+            this.mUuid = uuid;
+            this.mValues = values;
+            this.mTimestamps = timestamps;
+        }
+
+        void add(byte[] value, long timestamp) {
+            int count = mValues.size();
+            if (count == mTimestamps.length) {
+                mTimestamps = Arrays.copyOf(mTimestamps, count * 2);
+            }
+            mValues.add(value);
+            mTimestamps[count] = timestamp;
+        }
+
+        //null if the notifications came without a device
+        public String getAddress() {
+            return mAddress;
+        }
+
+        public UUID getUuid() {
+            return mUuid;
+        }
+
+        public List<byte[]> getValues() {
+            return mValues;
+        }
+
+        public int size() {
+            return mValues.size();
+        }
+
+        /**
+         * SystemClock#elapsedRealtimeNanos of every value, same clock in every process
+         */
+        public long[] getTimestamps() {
+            if (mTimestamps.length != mValues.size()) {
+                mTimestamps = Arrays.copyOf(mTimestamps, mValues.size());
+            }
+            return mTimestamps;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.captain_miao.android.ble.batch;
+
+import android.os.Bundle;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+import com.github.captain_miao.android.ble.utils.MacAddressCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * a batch in a Bundle as a few primitive arrays, whatever the number of frames:
+ * devices, uuids and frame counts per characteristic, then length, timestamp and bytes of every frame.
+ */
+public class NotificationBatchCodec {
+
+    public static Bundle toBundle(List<NotificationBatch.Frames> batch) {
+        int groups = batch.size();
+        int frames = 0;
+        int bytes = 0;
+        for (NotificationBatch.Frames group : batch) {
+            frames += group.size();
+            for (byte[] value : group.getValues()) {
+                bytes += value != null ? value.length : 0;
+            }
+        }
+        long[] addresses = new long[groups];
+        long[] msbs = new long[groups];
+        long[] lsbs = new long[groups];
+        int[] counts = new int[groups];
+        int[] lengths = new int[frames];
+        long[] timestamps = new long[frames];
+        byte[] values = new byte[bytes];
+        int frame = 0;
+        int offset = 0;
+        for (int i = 0; i < groups; i++) {
+            NotificationBatch.Frames group = batch.get(i);
+            addresses[i] = MacAddressCodec.toLong(group.getAddress());
+            msbs[i] = group.getUuid().getMostSignificantBits();
+            lsbs[i] = group.getUuid().getLeastSignificantBits();
+            counts[i] = group.size();
+            System.arraycopy(group.getTimestamps(), 0, timestamps, frame, group.size());
+            for (byte[] value : group.getValues()) {
+                int length = value != null ? value.length : 0;
+                if (length > 0) {
+                    System.arraycopy(value, 0, values, offset, length);
+                }
+                lengths[frame++] = length;
+                offset += length;
+            }
+        }
+        Bundle bundle = new Bundle();
+        bundle.putLongArray(BleConstants.BLE_MSG_BATCH_ADDRESS_KEY, addresses);
+        bundle.putLongArray(BleConstants.BLE_MSG_BATCH_UUID_MSB_KEY, msbs);
+        bundle.putLongArray(BleConstants.BLE_MSG_BATCH_UUID_LSB_KEY, lsbs);
+        bundle.putIntArray(BleConstants.BLE_MSG_BATCH_COUNT_KEY, counts);
+        bundle.putIntArray(BleConstants.BLE_MSG_BATCH_LENGTH_KEY, lengths);
+        bundle.putLongArray(BleConstants.BLE_MSG_BATCH_TIMESTAMP_KEY, timestamps);
+        bundle.putByteArray(BleConstants.BLE_MSG_BATCH_VALUE_KEY, values);
+        return bundle;
+    }
+
+    /**
+     * @return the frames by characteristic, empty if the bundle is not a batch
+     */
+    public static List<NotificationBatch.Frames> fromBundle(Bundle bundle) {
+        List<NotificationBatch.Frames> batch = new ArrayList<>();
+        long[] addresses = bundle.getLongArray(BleConstants.BLE_MSG_BATCH_ADDRESS_KEY);
+        long[] msbs = bundle.getLongArray(BleConstants.BLE_MSG_BATCH_UUID_MSB_KEY);
+        long[] lsbs = bundle.getLongArray(BleConstants.BLE_MSG_BATCH_UUID_LSB_KEY);
+        int[] counts = bundle.getIntArray(BleConstants.BLE_MSG_BATCH_COUNT_KEY);
+        int[] lengths = bundle.getIntArray(BleConstants.BLE_MSG_BATCH_LENGTH_KEY);
+        long[] timestamps = bundle.getLongArray(BleConstants.BLE_MSG_BATCH_TIMESTAMP_KEY);
+        byte[] values = bundle.getByteArray(BleConstants.BLE_MSG_BATCH_VALUE_KEY);
+        if (msbs == null || lsbs == null || counts == null || lengths == null
+                || timestamps == null || values == null) {
+            return batch;
+        }
+        int frame = 0;
+        int offset = 0;
+        for (int i = 0; i < counts.length; i++) {
+            List<byte[]> groupValues = new ArrayList<>(counts[i]);
+            long[] groupTimestamps = new long[counts[i]];
+            for (int j = 0; j < counts[i]; j++, frame++) {
+                byte[] value = new byte[lengths[frame]];
+                System.arraycopy(values, offset, value, 0, value.length);
+                offset += value.length;
+                groupValues.add(value);
+                groupTimestamps[j] = timestamps[frame];
+            }
+            String address = addresses != null && i < addresses.length
+                    ? MacAddressCodec.toString(addresses[i]) : null;
+            batch.add(new NotificationBatch.Frames(address, new UUID(msbs[i], lsbs[i]), groupValues, groupTimestamps));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.captain_miao.android.ble.batch;
+
+import android.os.Handler;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * collects notifications for one client and hands them over as one batch
+ * when the window ends or maxFrames arrived, whichever is first.
+ * the window starts with the first frame after a flush, so a quiet link costs nothing.
+ * the listener always runs on the handler, never inside add.
+ */
+public class NotificationBatcher {
+    private final Handler mHandler;
+    private final long mWindow;
+    private final NotificationBatch mBatch;
+    private final FlushListener mListener;
+    //a flush is posted for maxFrames
+    private boolean mFull = false;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param window    max milliseconds a notification waits for the others
+     * @param maxFrames frames which are delivered at once without waiting for the window, 0 for no limit
+     */
+    public NotificationBatcher(Handler handler, long window, int maxFrames, FlushListener listener) {
+        this.mHandler = handler;
+        this.mWindow = window;
+        this.mBatch = new NotificationBatch(maxFrames);
+        this.mListener = listener;
+    }
+
+    public void add(UUID uuid, byte[] value, long timestamp) {
+        add(null, uuid, value, timestamp);
+    }
+
+    public synchronized void add(String address, UUID uuid, byte[] value, long timestamp) {
+        boolean first = mBatch.isEmpty();
+        boolean full = mBatch.add(address, uuid, value, timestamp);
+        if (full && !mFull) {
+            //deliver on the next turn of the handler instead of the end of the window
+            mFull = true;
+            mHandler.removeCallbacks(mFlushTask);
+            mHandler.post(mFlushTask);
+        } else if (first) {
+            mHandler.postDelayed(mFlushTask, mWindow);
+        }
+    }
+
+    public void flush() {
+        List<NotificationBatch.Frames> frames;
+        synchronized (this) {
+            mHandler.removeCallbacks(mFlushTask);
+            if (mBatch.isEmpty()) {
+                return;
+            }
+            frames = mBatch.drain();
+            mFull = false;
+        }
+        mListener.onFlush(frames);
+    }
+
+    /**
+     * drop pending frames, e.g. when the client goes away
+     */
+    public synchronized void clear() {
+        mHandler.removeCallbacks(mFlushTask);
+        mBatch.drain();
+        mFull = false;
+    }
+
+    public long getWindow() {
+        return mWindow;
+    }
+
+    public interface FlushListener {
+        //called on the handler or by flush(), without the lock of the batcher
+        void onFlush(List<NotificationBatch.Frames> frames);
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.captain_miao.android.ble.constant;
 
+import java.util.UUID;
+
 /**
  * @author YanLu
  * @since  2015-09-14
@@ -17,6 +19,15 @@ public class BleConstants {
     public static final int MSG_BLE_ID_READ_REMOTE_RSSI				= 20006;
     public static final int MSG_BLE_ID_MTU_CHANGED					= 20007;
     public static final int MSG_BLE_ID_SERVICES_DISCOVERED			= 20008;
+    public static final int MSG_BLE_ID_CHARACTERISTIC_STREAM_WRITE	= 20009;
+    public static final int MSG_BLE_ID_TRANSFER_PROGRESS			= 20010;
+    public static final int MSG_BLE_ID_TRANSFER_SUSPENDED			= 20011;
+    public static final int MSG_BLE_ID_TRANSFER_COMPLETED			= 20012;
+    public static final int MSG_BLE_ID_NOTIFICATION_RING_OPENED		= 20013;
+    public static final int MSG_BLE_ID_NOTIFICATION_RING_WAKEUP		= 20014;
+    public static final int MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION_BATCH = 20015;
+    public static final int MSG_BLE_ID_MESSAGES_DROPPED				= 20016;//arg1: dropped so far
+    public static final int MSG_BLE_ID_SETUP_COMPLETED				= 20017;//arg1: status
 
 
     //ble control message id
@@ -26,27 +37,101 @@ public class BleConstants {
 	public static final int MSG_CONTROL_ID_CONNECT_MAC  			= 30003;
    	public static final int MSG_CONTROL_ID_START_SCAN               = 30004;
    	public static final int MSG_CONTROL_ID_STOP_SCAN                = 30005;
+   	public static final int MSG_CONTROL_ID_OPEN_NOTIFICATION_RING   = 30006;
+   	public static final int MSG_CONTROL_ID_BATCH_NOTIFICATIONS      = 30007;
+   	public static final int MSG_CONTROL_ID_FLOW_CONTROL             = 30008;
+   	public static final int MSG_CONTROL_ID_ACK                      = 30009;
+   	public static final int MSG_CONTROL_ID_DISCONNECT_DEVICE        = 30010;
 
 
     //ble read message id
 	public static final int MSG_CONTROL_ID_WRITE_CHARACTERISTIC		= 40000;
 	public static final int MSG_CONTROL_ID_DESCRIPTOR_NOTIFICATION  = 40001;
 	public static final int MSG_CONTROL_ID_READ_CHARACTERISTIC      = 40002;
+	public static final int MSG_CONTROL_ID_STREAM_WRITE_CHARACTERISTIC = 40003;
+	public static final int MSG_CONTROL_ID_READ_DESCRIPTOR          = 40004;
+	public static final int MSG_CONTROL_ID_READ_REMOTE_RSSI         = 40005;
+	public static final int MSG_CONTROL_ID_REQUEST_MTU              = 40006;
+	public static final int MSG_CONTROL_ID_RELIABLE_WRITE           = 40007;
+	public static final int MSG_CONTROL_ID_TRANSFER_FILE            = 40008;
+	public static final int MSG_CONTROL_ID_CANCEL_TRANSFER          = 40009;
+	public static final int MSG_CONTROL_ID_WRITE_BATCH              = 40010;
+
+
+
 
 
 
+    //status of an operation failed by the GattOperationQueue watchdog
+    public static final int GATT_OPERATION_TIMEOUT                  = -7;
+    //status of a BulkTransfer: the source could not be read, the transfer was cancelled,
+    //the sink refused every packet with nothing in flight
+    public static final int GATT_TRANSFER_SOURCE_ERROR              = -9;
+    public static final int GATT_TRANSFER_CANCELLED                 = -10;
+    public static final int GATT_TRANSFER_REFUSED                   = -11;
+    //status of a BleRequest: cancelled by the caller, its message could not be sent, no result yet
+    public static final int GATT_REQUEST_CANCELLED                  = -12;
+    public static final int GATT_REQUEST_NOT_SENT                   = -13;
+    public static final int GATT_REQUEST_PENDING                    = -14;
+    public static final long DEFAULT_OPERATION_TIMEOUT              = 5000;
+    //a late callback of a timed out operation is only expected for this long, then the stack is assumed to have dropped it
+    public static final long DEFAULT_STALE_CALLBACK_GRACE           = 1000;
+    //max time of connect, discovery, MTU and CCCD writes of one device before the next one starts
+    public static final long DEFAULT_SETUP_TIMEOUT                  = 20000;
 
+    //ATT_MTU before any exchange, a write carries at most MTU - ATT_HEADER_SIZE bytes
+    public static final int DEFAULT_MTU                             = 23;
+    public static final int ATT_HEADER_SIZE                         = 3;
+    //max length of an attribute value, a write is never longer whatever the MTU
+    public static final int MAX_ATTRIBUTE_LENGTH                    = 512;
+    //gatt clients most stacks allow at once, the next connectGatt fails with status 133
+    public static final int DEFAULT_MAX_CONNECTIONS                 = 7;
+    //largest ATT_MTU of the spec, requested after services are discovered
+    public static final int MAX_MTU                                 = 517;
+
+    //messages a flow controlled client may have unacknowledged, it acknowledges every half window
+    public static final int FLOW_CONTROL_WINDOW                     = 32;
 
 
 	//用来区分不同类型的消息
     public static final int BLE_MSG_ID_CONNECTION_STATE_CHANGED = 10000;//蓝牙连接状态变化
+    public static final int BLE_MSG_ID_PROTOCOL_VERSION         = 10001;//reply to register, arg1: version of the service
+
+    //version of the message format, sent in arg1 of MSG_CONTROL_ID_REGISTER
+    //1: UUIDs as Serializable, 2: UUIDs as msb/lsb longs (UuidCodec)
+    public static final int PROTOCOL_VERSION_SERIALIZABLE_UUID = 1;
+    public static final int PROTOCOL_VERSION                    = 2;
+
+    //descriptor which turns notifications of its characteristic on and off
+    public static final UUID CLIENT_CHARACTERISTIC_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
 
 
     public static final String BLE_MSG_SERVICE_UUID_KEY   		 = "service_uuid";
     public static final String BLE_MSG_CHARACTERISTIC_UUID_KEY   = "characteristic_uuid";
     public static final String BLE_MSG_DESCRIPTOR_UUID_KEY   	 = "descriptor_uuid";
+    public static final String BLE_MSG_DEVICE_ADDRESS_KEY   	 = "device_address";
     public static final String BLE_MSG_VALUE_KEY   	 			 = "ble_value";
     public static final String BLE_MSG_ENABLE_KEY   	 		 = "ble_enable";
     public static final String BLE_MSG_BLE_DEVICE_KEY			 = "ble_device";
     public static final String BLE_MSG_BLE_GATT_KEY			     = "ble_gatt";
+    public static final String BLE_MSG_WRITE_LIST_KEY			     = "write_list";
+    public static final String BLE_MSG_STREAM_BYTES_KEY		     = "stream_bytes";
+    public static final String BLE_MSG_STREAM_BYTES_PER_SECOND_KEY = "stream_bytes_per_second";
+    public static final String BLE_MSG_TRANSFER_FILE_KEY	     = "transfer_file";
+    public static final String BLE_MSG_TRANSFER_BYTES_KEY	     = "transfer_bytes";
+    public static final String BLE_MSG_TRANSFER_TOTAL_KEY	     = "transfer_total";
+    public static final String BLE_MSG_SETUP_WAIT_KEY	         = "setup_wait";
+    public static final String BLE_MSG_SETUP_TIME_KEY	         = "setup_time";
+    public static final String BLE_MSG_NOTIFICATION_RING_KEY	 = "notification_ring";
+    public static final String BLE_MSG_NOTIFICATION_RING_START_KEY = "notification_ring_start";
+    public static final String BLE_MSG_BATCH_ADDRESS_KEY	     = "batch_address";
+    public static final String BLE_MSG_BATCH_UUID_MSB_KEY	     = "batch_uuid_msb";
+    public static final String BLE_MSG_BATCH_UUID_LSB_KEY	     = "batch_uuid_lsb";
+    public static final String BLE_MSG_BATCH_COUNT_KEY	         = "batch_count";
+    public static final String BLE_MSG_BATCH_LENGTH_KEY	         = "batch_length";
+    public static final String BLE_MSG_BATCH_TIMESTAMP_KEY	     = "batch_timestamp";
+    public static final String BLE_MSG_BATCH_VALUE_KEY	         = "batch_value";
+    public static final String BLE_MSG_EVENT_FILTER_KEY	         = "event_filter";
+    public static final String BLE_MSG_UUID_FILTER_MSB_KEY	     = "uuid_filter_msb";
+    public static final String BLE_MSG_UUID_FILTER_LSB_KEY	     = "uuid_filter_lsb";
 }
@@ -0,0 +1,40 @@
+package com.github.captain_miao.android.ble.constant;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * lane of a GattOperation: CONTROL operations (stop, config, ack) go before queued BULK data.
+ */
+
+public enum OperationPriority {
+
+    BULK(0, "bulk data"),
+    CONTROL(1, "control command");
+
+
+    OperationPriority(int code, String message) {
+        this.code = code;
+        this.message = message;
+    }
+
+    private int code;
+    private String message;
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public static OperationPriority newInstance(int code) {
+        switch (code) {
+            case 1:
+                return OperationPriority.CONTROL;
+            default:
+                return OperationPriority.BULK;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.captain_miao.android.ble.constant;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * what the service drops when the outbound queue of a slow client is full.
+ */
+
+public enum OverflowPolicy {
+
+    DROP_OLDEST(0, "drop the oldest queued message"),
+    DROP_NEWEST(1, "drop the new message"),
+    COALESCE_LATEST(2, "keep the latest notification per characteristic");
+
+
+    OverflowPolicy(int code, String message) {
+        this.code = code;
+        this.message = message;
+    }
+
+    private int code;
+    private String message;
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public static OverflowPolicy newInstance(int code) {
+        switch (code) {
+            case 1:
+                return OverflowPolicy.DROP_NEWEST;
+            case 2:
+                return OverflowPolicy.COALESCE_LATEST;
+            default:
+                return OverflowPolicy.DROP_OLDEST;
+        }
+    }
+}
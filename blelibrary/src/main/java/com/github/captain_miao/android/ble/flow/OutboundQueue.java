@@ -0,0 +1,150 @@
+package com.github.captain_miao.android.ble.flow;
+
+import com.github.captain_miao.android.ble.constant.OverflowPolicy;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * bounded outbound queue of one client with credit based flow control:
+ * at most window items are in flight until the client acknowledges them,
+ * the rest waits here, at most capacity of them, and the policy decides what is dropped.
+ * items which are not droppable (e.g. connection state) are always queued.
+ * not thread safe, the owner locks.
+ */
+public class OutboundQueue<T> {
+    private final int mCapacity;
+    private final int mWindow;
+    private final OverflowPolicy mPolicy;
+
+    private final LinkedList<Entry<T>> mQueue = new LinkedList<>();
+    //queued entries with a key, for coalescing
+    private final Map<Object, Entry<T>> mKeyed = new HashMap<>();
+    private int mDroppable = 0;
+    private int mInFlight = 0;
+    private long mDropped = 0;
+    private long mCoalesced = 0;
+
+    /**
+     * @param capacity max queued droppable items
+     * @param window   max items sent and not acknowledged yet
+     */
+    public OutboundQueue(int capacity, int window, OverflowPolicy policy) {
+        this.mCapacity = Math.max(1, capacity);
+        this.mWindow = Math.max(1, window);
+        this.mPolicy = policy;
+    }
+
+    /**
+     * @param key       items of the same key replace each other under COALESCE_LATEST, may be null
+     * @param droppable false for items which must arrive, they are only coalesced
+     * @return false if the item or an older one was dropped
+     */
+    public boolean offer(T item, Object key, boolean droppable) {
+        if (key != null && (mPolicy == OverflowPolicy.COALESCE_LATEST || !droppable)) {
+            Entry<T> queued = mKeyed.get(key);
+            if (queued != null) {
+                //the client only needs the latest one
+                queued.item = item;
+                mCoalesced++;
+                return true;
+            }
+        }
+        boolean dropped = false;
+        if (droppable && mDroppable >= mCapacity) {
+            if (mPolicy == OverflowPolicy.DROP_NEWEST) {
+                mDropped++;
+                return false;
+            }
+            dropped = dropOldest();
+        }
+        Entry<T> entry = new Entry<>(item, key, droppable);
+        mQueue.add(entry);
+        if (key != null) {
+            mKeyed.put(key, entry);
+        }
+        if (droppable) {
+            mDroppable++;
+        }
+        return !dropped;
+    }
+
+    /**
+     * @return the next item to send, null if the queue is empty or the window is full
+     */
+    public T poll() {
+        if (mInFlight >= mWindow || mQueue.isEmpty()) {
+            return null;
+        }
+        Entry<T> entry = mQueue.poll();
+        if (entry.key != null) {
+            mKeyed.remove(entry.key);
+        }
+        if (entry.droppable) {
+            mDroppable--;
+        }
+        mInFlight++;
+        return entry.item;
+    }
+
+    /**
+     * the client handled count items
+     */
+    public void ack(int count) {
+        mInFlight = Math.max(0, mInFlight - count);
+    }
+
+    public int size() {
+        return mQueue.size();
+    }
+
+    public int getInFlight() {
+        return mInFlight;
+    }
+
+    public long getDropped() {
+        return mDropped;
+    }
+
+    public long getCoalesced() {
+        return mCoalesced;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return mPolicy;
+    }
+
+    private boolean dropOldest() {
+        Iterator<Entry<T>> iterator = mQueue.iterator();
+        while (iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entry.droppable) {
+                iterator.remove();
+                if (entry.key != null) {
+                    mKeyed.remove(entry.key);
+                }
+                mDroppable--;
+                mDropped++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Entry<T> {
+        T item;
+        final Object key;
+        final boolean droppable;
+
+        Entry(T item, Object key, boolean droppable) {
+            this.item = item;
+            this.key = key;
+            this.droppable = droppable;
+        }
+    }
+}
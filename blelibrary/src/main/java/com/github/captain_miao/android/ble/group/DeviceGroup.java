@@ -0,0 +1,107 @@
+package com.github.captain_miao.android.ble.group;
+
+import com.github.captain_miao.android.ble.request.BleRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * a fixed set of device addresses which get the same command, e.g. a time sync.
+ * defined once and passed to the group methods of BluetoothHelper as often as needed.
+ */
+public class DeviceGroup {
+    private final Set<String> mAddresses;
+
+    public DeviceGroup(Collection<String> addresses) {
+        this.mAddresses = Collections.unmodifiableSet(new LinkedHashSet<>(addresses));
+    }
+
+    public static DeviceGroup of(String... addresses) {
+        return new DeviceGroup(Arrays.asList(addresses));
+    }
+
+    public Set<String> getAddresses() {
+        return mAddresses;
+    }
+
+    public int size() {
+        return mAddresses.size();
+    }
+
+    public boolean contains(String address) {
+        return mAddresses.contains(address);
+    }
+
+    /**
+     * starts the request of every device without waiting for the others,
+     * the returned request completes with the result of all of them.
+     * it never fails by itself, cancelling it cancels the requests still running
+     */
+    public BleRequest<GroupResult> fanOut(Issuer issuer) {
+        final BleRequest<GroupResult> group = new BleRequest<>(0);
+        final GroupResult result = new GroupResult(mAddresses);
+        if (mAddresses.isEmpty()) {
+            group.complete(result);
+            return group;
+        }
+        final long startNanos = System.nanoTime();
+        final List<BleRequest<?>> requests = new ArrayList<>(mAddresses.size());
+        for (String address : mAddresses) {
+            BleRequest<?> request = issuer.issue(address);
+            requests.add(request);
+            collect(request, address, result, group, startNanos);
+        }
+        group.addCallback(new BleRequest.Callback<GroupResult>() {
+            @Override
+            public void onSuccess(GroupResult result) {
+            }
+
+            @Override
+            public void onFailure(int status) {
+                for (BleRequest<?> request : requests) {
+                    request.cancel(false);
+                }
+            }
+        });
+        return group;
+    }
+
+    private static <T> void collect(BleRequest<T> request, final String address, final GroupResult result,
+                                    final BleRequest<GroupResult> group, final long startNanos) {
+        request.addCallback(new BleRequest.Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                finish(0);
+            }
+
+            @Override
+            public void onFailure(int status) {
+                finish(status);
+            }
+
+            private void finish(int status) {
+                if (result.put(address, status, System.nanoTime() - startNanos)) {
+                    group.complete(result);
+                }
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "group " + mAddresses;
+    }
+
+    //starts the request of one device
+    public interface Issuer {
+        BleRequest<?> issue(String address);
+    }
+}
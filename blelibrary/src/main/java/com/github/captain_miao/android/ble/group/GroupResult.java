@@ -0,0 +1,92 @@
+package com.github.captain_miao.android.ble.group;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * the status and latency of every device of a DeviceGroup request,
+ * latency is the time from the start of the fan-out to the result of the device.
+ */
+public class GroupResult {
+    private final Map<String, long[]> mResults = new LinkedHashMap<>();
+    private int mPending;
+
+    GroupResult(Collection<String> addresses) {
+        for (String address : addresses) {
+            mResults.put(address, new long[]{BleConstants.GATT_REQUEST_PENDING, -1});
+        }
+        this.mPending = addresses.size();
+    }
+
+    /**
+     * @return true when it was the last device
+     */
+    synchronized boolean put(String address, int status, long latencyNanos) {
+        long[] result = mResults.get(address);
+        if (result == null || result[0] != BleConstants.GATT_REQUEST_PENDING) {
+            return false;
+        }
+        result[0] = status;
+        result[1] = latencyNanos;
+        return --mPending == 0;
+    }
+
+    public Set<String> getAddresses() {
+        return mResults.keySet();
+    }
+
+    /**
+     * GATT status of the device, GATT_REQUEST_PENDING if it is not in the group
+     */
+    public synchronized int getStatus(String address) {
+        long[] result = mResults.get(address);
+        return result == null ? BleConstants.GATT_REQUEST_PENDING : (int) result[0];
+    }
+
+    /**
+     * @return -1 if the device is not in the group
+     */
+    public synchronized long getLatencyMillis(String address) {
+        long[] result = mResults.get(address);
+        return result == null || result[1] < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(result[1]);
+    }
+
+    public synchronized boolean isAllSucceeded() {
+        for (long[] result : mResults.values()) {
+            if (result[0] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized List<String> getFailed() {
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : mResults.entrySet()) {
+            if (entry.getValue()[0] != 0) {
+                failed.add(entry.getKey());
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("group result");
+        for (Map.Entry<String, long[]> entry : mResults.entrySet()) {
+            builder.append(' ').append(entry.getKey()).append('=').append(entry.getValue()[0])
+                    .append('/').append(TimeUnit.NANOSECONDS.toMillis(entry.getValue()[1])).append("ms");
+        }
+        return builder.toString();
+    }
+}
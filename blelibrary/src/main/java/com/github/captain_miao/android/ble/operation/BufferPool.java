@@ -0,0 +1,84 @@
+package com.github.captain_miao.android.ble.operation;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import java.util.ArrayDeque;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * reusable payload buffers for queued writes.
+ * setValue() hands the whole array to the stack, so every length is its own size class
+ * and acquire() returns an array of exactly the requested length.
+ * lengths above maxLength are not pooled.
+ */
+public class BufferPool {
+    public static final int DEFAULT_MAX_LENGTH = BleConstants.MAX_ATTRIBUTE_LENGTH;
+    public static final int DEFAULT_BUFFERS_PER_SIZE = 8;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int mMaxLength;
+    private final int mBuffersPerSize;
+    //free buffers by length, created on first use
+    private final ArrayDeque<byte[]>[] mFree;
+    private int mAllocations = 0;
+
+    public BufferPool() {
+        this(DEFAULT_MAX_LENGTH, DEFAULT_BUFFERS_PER_SIZE);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool(int maxLength, int buffersPerSize) {
+        this.mMaxLength = maxLength;
+        this.mBuffersPerSize = buffersPerSize;
+        this.mFree = new ArrayDeque[maxLength + 1];
+    }
+
+    public synchronized byte[] acquire(int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        if (length <= mMaxLength && mFree[length] != null) {
+            byte[] buffer = mFree[length].poll();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        mAllocations++;
+        return new byte[length];
+    }
+
+    /**
+     * a pooled copy of value[offset, offset + length)
+     */
+    public byte[] copyOf(byte[] value, int offset, int length) {
+        byte[] buffer = acquire(length);
+        System.arraycopy(value, offset, buffer, 0, length);
+        return buffer;
+    }
+
+    /**
+     * give a buffer back, the caller must not touch it afterwards
+     */
+    public synchronized void release(byte[] buffer) {
+        int length = buffer == null ? 0 : buffer.length;
+        if (length == 0 || length > mMaxLength) {
+            return;
+        }
+        if (mFree[length] == null) {
+            mFree[length] = new ArrayDeque<>(mBuffersPerSize);
+        }
+        if (mFree[length].size() < mBuffersPerSize) {
+            mFree[length].push(buffer);
+        }
+    }
+
+    /**
+     * arrays created because no free one was at hand
+     */
+    public synchronized int getAllocations() {
+        return mAllocations;
+    }
+}
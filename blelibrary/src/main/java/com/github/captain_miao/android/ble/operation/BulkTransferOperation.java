@@ -0,0 +1,94 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import com.github.captain_miao.android.ble.transfer.BulkTransfer;
+import com.github.captain_miao.android.ble.transfer.PacketSink;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * runs a BulkTransfer on one characteristic with WRITE_TYPE_NO_RESPONSE,
+ * every onCharacteristicWrite acknowledges the oldest packet in flight.
+ * it holds the queue until the transfer completes or is suspended,
+ * a suspended transfer is resumed by queueing a new operation for it.
+ */
+public class BulkTransferOperation extends GattOperation implements PacketSink {
+    private final BluetoothGattCharacteristic mCharacteristic;
+    private final BulkTransfer mTransfer;
+    private final int mPacketSize;
+
+    private BluetoothGatt mGatt = null;
+    private boolean mStarted = false;
+    private int mOriginalWriteType;
+
+    public BulkTransferOperation(BluetoothGattCharacteristic characteristic, BulkTransfer transfer, int packetSize) {
+        super(Type.BULK_TRANSFER);
+        this.mCharacteristic = characteristic;
+        this.mTransfer = transfer;
+        this.mPacketSize = packetSize;
+    }
+
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        mGatt = gatt;
+        mStarted = true;
+        mOriginalWriteType = mCharacteristic.getWriteType();
+        mCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+        boolean started = mTransfer.start(this, mPacketSize);
+        if (!mTransfer.isRunning()) {
+            finish(mTransfer.getStatus());
+        }
+        return started || mFinished;
+    }
+
+    @Override
+    public boolean send(byte[] packet) {
+        mCharacteristic.setValue(packet);
+        return mGatt.writeCharacteristic(mCharacteristic);
+    }
+
+    @Override
+    public boolean matches(Type type, Object target) {
+        return type == Type.CHARACTERISTIC_WRITE
+                && CharacteristicWriteOperation.isSameCharacteristic(mCharacteristic, target);
+    }
+
+    @Override
+    public void onCallback(BluetoothGatt gatt, Type type, Object target, int status) {
+        mTransfer.onPacketSent(status);
+        if (!mTransfer.isRunning()) {
+            finish(mTransfer.getStatus());
+        }
+    }
+
+    /**
+     * timeout or refused: keep the checkpoint, the transfer can be resumed
+     */
+    @Override
+    public void fail(int status) {
+        mTransfer.suspend(status);
+        finish(status);
+    }
+
+    private void finish(int status) {
+        if (mStarted) {
+            mCharacteristic.setWriteType(mOriginalWriteType);
+        }
+        mStatus = status;
+        mFinished = true;
+    }
+
+    public BulkTransfer getTransfer() {
+        return mTransfer;
+    }
+
+    @Override
+    public UUID getUuid() {
+        return mCharacteristic.getUuid();
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class CharacteristicReadOperation extends GattOperation {
+    private final BluetoothGattCharacteristic mCharacteristic;
+
+    public CharacteristicReadOperation(BluetoothGattCharacteristic characteristic) {
+        super(Type.CHARACTERISTIC_READ);
+        this.mCharacteristic = characteristic;
+    }
+
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        return gatt.readCharacteristic(mCharacteristic);
+    }
+
+    @Override
+    public boolean matches(Type type, Object target) {
+        return type == getType() && CharacteristicWriteOperation.isSameCharacteristic(mCharacteristic, target);
+    }
+
+    @Override
+    public UUID getUuid() {
+        return mCharacteristic.getUuid();
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * with a BufferPool the operation owns a snapshot of its payload,
+ * the buffer goes back to the pool by release() after the result was dispatched.
+ * the packets of one split write share a SplitStatus, the last one reports the result of the whole value.
+ */
+public class CharacteristicWriteOperation extends GattOperation {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final BluetoothGattCharacteristic mCharacteristic;
+    private final byte[] mValue;
+    private final BufferPool mPool;
+    private boolean mReleased = false;
+    private SplitStatus mSplitStatus = null;
+
+    public CharacteristicWriteOperation(BluetoothGattCharacteristic characteristic, byte[] value) {
+        super(Type.CHARACTERISTIC_WRITE);
+        this.mCharacteristic = characteristic;
+        this.mValue = value;
+        this.mPool = null;
+    }
+
+    /**
+     * snapshot value[offset, offset + length), the caller may reuse value right away
+     */
+    public CharacteristicWriteOperation(BluetoothGattCharacteristic characteristic, byte[] value,
+                                        int offset, int length, BufferPool pool) {
+        super(Type.CHARACTERISTIC_WRITE);
+        this.mCharacteristic = characteristic;
+        this.mValue = pool.copyOf(value, offset, length);
+        this.mPool = pool;
+    }
+
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        //the value is only applied now, so queued writes to one characteristic do not overwrite each other
+        mCharacteristic.setValue(mValue);
+        return gatt.writeCharacteristic(mCharacteristic);
+    }
+
+    @Override
+    public boolean matches(Type type, Object target) {
+        return type == getType() && isSameCharacteristic(mCharacteristic, target);
+    }
+
+    @Override
+    public void onCallback(BluetoothGatt gatt, Type type, Object target, int status) {
+        super.onCallback(gatt, type, target, status);
+        if (mSplitStatus != null) {
+            mSplitStatus.record(status);
+        }
+    }
+
+    @Override
+    public void fail(int status) {
+        super.fail(status);
+        if (mSplitStatus != null) {
+            mSplitStatus.record(status);
+        }
+    }
+
+    /**
+     * packet of a split write, status is shared with the other packets of the value
+     */
+    public CharacteristicWriteOperation setSplitStatus(SplitStatus status) {
+        this.mSplitStatus = status;
+        return this;
+    }
+
+    /**
+     * status reported for this operation: the first failure of the whole split write for the packet
+     * which carries the request, the status of this packet otherwise
+     */
+    public int getResultStatus() {
+        if (mSplitStatus != null && getRequestId() != 0) {
+            return mSplitStatus.getStatus();
+        }
+        return getStatus();
+    }
+
+    /**
+     * give the pooled buffer back once the result was dispatched to the clients.
+     * the characteristic stops referencing it, so its getValue() is never overwritten by a later copy
+     */
+    public void release() {
+        if (mPool != null && !mReleased) {
+            mReleased = true;
+            if (mCharacteristic.getValue() == mValue) {
+                mCharacteristic.setValue(EMPTY);
+            }
+            mPool.release(mValue);
+        }
+    }
+
+    @Override
+    public UUID getUuid() {
+        return mCharacteristic.getUuid();
+    }
+
+    public BluetoothGattCharacteristic getCharacteristic() {
+        return mCharacteristic;
+    }
+
+    public byte[] getValue() {
+        return mValue;
+    }
+
+    static boolean isSameCharacteristic(BluetoothGattCharacteristic characteristic, Object target) {
+        return characteristic == target || (target instanceof BluetoothGattCharacteristic
+                && characteristic.getUuid().equals(((BluetoothGattCharacteristic) target).getUuid()));
+    }
+
+    /**
+     * first non-success status of the packets of one split write
+     */
+    public static class SplitStatus {
+        private int mStatus = BluetoothGatt.GATT_SUCCESS;
+
+        void record(int status) {
+            if (mStatus == BluetoothGatt.GATT_SUCCESS) {
+                mStatus = status;
+            }
+        }
+
+        public int getStatus() {
+            return mStatus;
+        }
+    }
+}
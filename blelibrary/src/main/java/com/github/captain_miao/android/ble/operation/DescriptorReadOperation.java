@@ -0,0 +1,34 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattDescriptor;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class DescriptorReadOperation extends GattOperation {
+    private final BluetoothGattDescriptor mDescriptor;
+
+    public DescriptorReadOperation(BluetoothGattDescriptor descriptor) {
+        super(Type.DESCRIPTOR_READ);
+        this.mDescriptor = descriptor;
+    }
+
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        return gatt.readDescriptor(mDescriptor);
+    }
+
+    @Override
+    public boolean matches(Type type, Object target) {
+        return type == getType() && DescriptorWriteOperation.isSameDescriptor(mDescriptor, target);
+    }
+
+    @Override
+    public UUID getUuid() {
+        return mDescriptor.getUuid();
+    }
+}
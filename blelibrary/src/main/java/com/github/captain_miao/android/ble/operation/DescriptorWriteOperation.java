@@ -0,0 +1,42 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattDescriptor;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class DescriptorWriteOperation extends GattOperation {
+    private final BluetoothGattDescriptor mDescriptor;
+    private final byte[] mValue;
+
+    public DescriptorWriteOperation(BluetoothGattDescriptor descriptor, byte[] value) {
+        super(Type.DESCRIPTOR_WRITE);
+        this.mDescriptor = descriptor;
+        this.mValue = value;
+    }
+
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        mDescriptor.setValue(mValue);
+        return gatt.writeDescriptor(mDescriptor);
+    }
+
+    @Override
+    public boolean matches(Type type, Object target) {
+        return type == getType() && isSameDescriptor(mDescriptor, target);
+    }
+
+    @Override
+    public UUID getUuid() {
+        return mDescriptor.getUuid();
+    }
+
+    static boolean isSameDescriptor(BluetoothGattDescriptor descriptor, Object target) {
+        return descriptor == target || (target instanceof BluetoothGattDescriptor
+                && descriptor.getUuid().equals(((BluetoothGattDescriptor) target).getUuid()));
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+import com.github.captain_miao.android.ble.constant.OperationPriority;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * one GATT request in the per-connection GattOperationQueue.
+ * it is started by execute() and finished by the matching BluetoothGattCallback method.
+ */
+public abstract class GattOperation {
+
+    public enum Type {
+        CHARACTERISTIC_WRITE,
+        CHARACTERISTIC_READ,
+        DESCRIPTOR_WRITE,
+        DESCRIPTOR_READ,
+        READ_REMOTE_RSSI,
+        REQUEST_MTU,
+        RELIABLE_WRITE,
+        STREAM_WRITE,
+        BULK_TRANSFER
+    }
+
+    private final Type mType;
+    protected int mStatus = BluetoothGatt.GATT_SUCCESS;
+    protected boolean mFinished = false;
+    //0: use the default timeout of the queue
+    private long mTimeout = 0;
+    private OperationPriority mPriority = OperationPriority.BULK;
+    //client which waits for the result of this operation, and its request id (0 for none)
+    private Object mRequester = null;
+    private int mRequestId = 0;
+    //number of the start in GattOperationQueue, 0 until it is started
+    private long mGeneration = 0;
+
+    protected GattOperation(Type type) {
+        this.mType = type;
+    }
+
+    /**
+     * hand the request to the stack
+     * @return false if the stack refused it
+     */
+    public abstract boolean execute(BluetoothGatt gatt);
+
+    /**
+     * @param type   the BluetoothGattCallback method which was called
+     * @param target characteristic or descriptor of the callback, null for rssi/mtu/reliable write
+     * @return true if the callback belongs to this operation
+     */
+    public boolean matches(Type type, Object target) {
+        return type == mType;
+    }
+
+    /**
+     * a matching callback arrived, by default it finishes the operation
+     */
+    public void onCallback(BluetoothGatt gatt, Type type, Object target, int status) {
+        mStatus = status;
+        mFinished = true;
+    }
+
+    public void fail(int status) {
+        mStatus = status;
+        mFinished = true;
+    }
+
+    /**
+     * the watchdog gave up waiting for the callback
+     */
+    public void onTimeout(BluetoothGatt gatt) {
+        fail(BleConstants.GATT_OPERATION_TIMEOUT);
+    }
+
+    /**
+     * deadline in milliseconds from execute(), or from the last progress of a multi-step operation
+     */
+    public GattOperation setTimeout(long timeout) {
+        this.mTimeout = timeout;
+        return this;
+    }
+
+    public long getTimeout() {
+        return mTimeout;
+    }
+
+    public GattOperation setPriority(OperationPriority priority) {
+        this.mPriority = priority;
+        return this;
+    }
+
+    public OperationPriority getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * the result goes back to this requester with the request id, the other clients get it without
+     */
+    public GattOperation setRequest(Object requester, int requestId) {
+        this.mRequester = requester;
+        this.mRequestId = requestId;
+        return this;
+    }
+
+    public Object getRequester() {
+        return mRequester;
+    }
+
+    public int getRequestId() {
+        return mRequestId;
+    }
+
+    void setGeneration(long generation) {
+        this.mGeneration = generation;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    //characteristic or descriptor uuid, null if the operation has none
+    public UUID getUuid() {
+        return null;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    @Override
+    public String toString() {
+        return mType + (getUuid() != null ? " " + getUuid() : "") + " #" + mGeneration;
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+import com.github.captain_miao.android.ble.constant.OperationPriority;
+import com.github.captain_miao.android.ble.utils.BleLog;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * per-connection queue of GATT operations.
+ * the android stack only handles one request at a time and silently drops the others,
+ * so every read/write/rssi/mtu request goes through here with one in-flight slot.
+ * a watchdog fails the in-flight operation when its callback never arrives (e.g. after status 133),
+ * so one lost callback can not freeze the queue until disconnect.
+ * a timed-out operation stays on a stale list until its late callback arrives or a grace period passes,
+ * so that callback is dropped instead of finishing the next operation of the same type.
+ * after the grace the stack is taken to have dropped the request (e.g. status 133),
+ * so the next operation of the type does not lose its own callback.
+ * CONTROL operations have strict priority over BULK ones, except that after
+ * mStarvationLimit control operations in a row one waiting bulk operation is let through.
+ */
+public class GattOperationQueue {
+    private final static String TAG = GattOperationQueue.class.getName();
+
+    private final BluetoothGatt mGatt;
+    private final OperationListener mListener;
+    private final Handler mHandler;
+    public static final int DEFAULT_STARVATION_LIMIT = 8;
+
+    private final Queue<GattOperation> mControlQueue = new LinkedList<>();
+    private final Queue<GattOperation> mBulkQueue = new LinkedList<>();
+    private int mStarvationLimit = DEFAULT_STARVATION_LIMIT;
+    private int mControlInARow = 0;
+    private final Map<GattOperation.Type, Long> mTimeouts = new EnumMap<>(GattOperation.Type.class);
+    private GattOperation mCurrent = null;
+    //every started operation gets the next generation, it tells the retries of a request apart in the logs
+    private long mGeneration = 0;
+    //timed out operations whose callback may still come from the stack, oldest first, with their expiry
+    private final Map<GattOperation, Long> mStale = new LinkedHashMap<>();
+    private long mStaleGrace = BleConstants.DEFAULT_STALE_CALLBACK_GRACE;
+    //finished without callback, reported to the listener outside of the lock
+    private final List<GattOperation> mCompleted = new ArrayList<>();
+    //the in-flight operation got at least one callback
+    private boolean mProgressed = false;
+    private long mDeadline = 0;
+
+    //timeouts: deadline passed, stalls: deadline passed without any callback at all
+    private int mTimeoutCount = 0;
+    private int mStallCount = 0;
+
+    private final Runnable mWatchdog = new Runnable() {
+        @Override
+        public void run() {
+            onWatchdog();
+        }
+    };
+
+    public GattOperationQueue(BluetoothGatt gatt, Handler handler, OperationListener listener) {
+        this.mGatt = gatt;
+        this.mHandler = handler;
+        this.mListener = listener;
+    }
+
+    /**
+     * default deadline of every operation of this type, an operation can override it by setTimeout
+     */
+    public synchronized void setTimeout(GattOperation.Type type, long timeout) {
+        mTimeouts.put(type, timeout);
+    }
+
+    public synchronized void setTimeouts(Map<GattOperation.Type, Long> timeouts) {
+        mTimeouts.putAll(timeouts);
+    }
+
+    /**
+     * how long a late callback of a timed out operation is dropped, 0 never drops one
+     */
+    public synchronized void setStaleGrace(long graceMillis) {
+        this.mStaleGrace = Math.max(0, graceMillis);
+    }
+
+    /**
+     * max control operations dispatched in a row while bulk operations are waiting
+     */
+    public synchronized void setStarvationLimit(int starvationLimit) {
+        this.mStarvationLimit = Math.max(1, starvationLimit);
+    }
+
+    public void enqueue(GattOperation operation) {
+        synchronized (this) {
+            if (operation.getPriority() == OperationPriority.CONTROL) {
+                mControlQueue.add(operation);
+            } else {
+                mBulkQueue.add(operation);
+            }
+            drain();
+        }
+        dispatchCompleted();
+    }
+
+    /**
+     * called from BluetoothGattCallback
+     * @return the in-flight operation if the callback belongs to it, null otherwise
+     */
+    public GattOperation onCallback(GattOperation.Type type, Object target, int status) {
+        GattOperation operation;
+        synchronized (this) {
+            GattOperation stale = removeStale(type, target);
+            if (stale != null) {
+                BleLog.w(TAG, "late callback " + type + " of timed out " + stale + ", dropped, in flight: " + mCurrent);
+                return null;
+            }
+            operation = mCurrent;
+            if (operation == null || !operation.matches(type, target)) {
+                BleLog.w(TAG, "unexpected callback " + type + ", in flight: " + operation);
+                return null;
+            }
+            operation.onCallback(mGatt, type, target, status);
+            mHandler.removeCallbacks(mWatchdog);
+            if (operation.isFinished()) {
+                mCurrent = null;
+                drain();
+            } else {
+                //multi-step operation made progress, restart its deadline
+                mProgressed = true;
+                startWatchdog(operation);
+            }
+        }
+        dispatchCompleted();
+        return operation;
+    }
+
+    public synchronized GattOperation getCurrent() {
+        return mCurrent;
+    }
+
+    public synchronized int size() {
+        return mControlQueue.size() + mBulkQueue.size();
+    }
+
+    public synchronized boolean isIdle() {
+        return mCurrent == null && mControlQueue.isEmpty() && mBulkQueue.isEmpty();
+    }
+
+    public synchronized void clear() {
+        mHandler.removeCallbacks(mWatchdog);
+        mCompleted.clear();
+        mControlQueue.clear();
+        mBulkQueue.clear();
+        mControlInARow = 0;
+        mCurrent = null;
+        mStale.clear();
+    }
+
+    /**
+     * timed out operations whose late callback did not arrive yet
+     */
+    public synchronized int getStaleCount() {
+        return mStale.size();
+    }
+
+    public synchronized int getTimeoutCount() {
+        return mTimeoutCount;
+    }
+
+    public synchronized int getStallCount() {
+        return mStallCount;
+    }
+
+    public BluetoothGatt getGatt() {
+        return mGatt;
+    }
+
+    private void drain() {
+        GattOperation operation;
+        while (mCurrent == null && (operation = pollNext()) != null) {
+            mCurrent = operation;
+            operation.setGeneration(++mGeneration);
+            mProgressed = false;
+            if (!operation.execute(mGatt) && !operation.isFinished()) {
+                BleLog.w(TAG, "stack refused " + operation);
+                operation.fail(BluetoothGatt.GATT_FAILURE);
+            }
+            if (operation.isFinished()) {
+                mCurrent = null;
+                mCompleted.add(operation);
+            } else {
+                startWatchdog(operation);
+            }
+        }
+    }
+
+    private GattOperation pollNext() {
+        boolean starving = !mBulkQueue.isEmpty() && mControlInARow >= mStarvationLimit;
+        if (!mControlQueue.isEmpty() && !starving) {
+            mControlInARow++;
+            return mControlQueue.poll();
+        }
+        mControlInARow = 0;
+        return mBulkQueue.poll();
+    }
+
+    private void startWatchdog(GattOperation operation) {
+        long timeout = getTimeout(operation);
+        mDeadline = SystemClock.uptimeMillis() + timeout;
+        mHandler.postDelayed(mWatchdog, timeout);
+    }
+
+    private void onWatchdog() {
+        synchronized (this) {
+            GattOperation operation = mCurrent;
+            if (operation == null) {
+                return;
+            }
+            long now = SystemClock.uptimeMillis();
+            if (now < mDeadline) {
+                //raced with a callback which re-armed the deadline
+                mHandler.postDelayed(mWatchdog, mDeadline - now);
+                return;
+            }
+            mTimeoutCount++;
+            if (!mProgressed) {
+                mStallCount++;
+            }
+            BleLog.w(TAG, "operation timeout: " + operation + (mProgressed ? "" : ", no callback at all"));
+            operation.onTimeout(mGatt);
+            if (!operation.isFinished()) {
+                operation.fail(BleConstants.GATT_OPERATION_TIMEOUT);
+            }
+            mCurrent = null;
+            if (mStaleGrace > 0) {
+                mStale.put(operation, now + mStaleGrace);
+            }
+            mCompleted.add(operation);
+            drain();
+        }
+        dispatchCompleted();
+    }
+
+    /**
+     * the oldest timed out operation the callback belongs to, it is confirmed by the stack and forgotten.
+     * the ones past their grace are forgotten on the way, their callback is not coming any more
+     */
+    private GattOperation removeStale(GattOperation.Type type, Object target) {
+        long now = SystemClock.uptimeMillis();
+        Iterator<Map.Entry<GattOperation, Long>> iterator = mStale.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<GattOperation, Long> entry = iterator.next();
+            GattOperation stale = entry.getKey();
+            if (entry.getValue() <= now) {
+                BleLog.i(TAG, "no late callback of " + stale + ", forgotten");
+                iterator.remove();
+            } else if (stale.matches(type, target)) {
+                iterator.remove();
+                return stale;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the listener may call back into its own locks, so it is never called while holding this one
+     */
+    private void dispatchCompleted() {
+        List<GattOperation> completed;
+        synchronized (this) {
+            if (mCompleted.isEmpty()) {
+                return;
+            }
+            completed = new ArrayList<>(mCompleted);
+            mCompleted.clear();
+        }
+        for (GattOperation operation : completed) {
+            mListener.onOperationCompleted(operation);
+        }
+    }
+
+    private long getTimeout(GattOperation operation) {
+        if (operation.getTimeout() > 0) {
+            return operation.getTimeout();
+        }
+        Long timeout = mTimeouts.get(operation.getType());
+        return timeout != null ? timeout : BleConstants.DEFAULT_OPERATION_TIMEOUT;
+    }
+
+    public interface OperationListener {
+        /**
+         * an operation finished without a BluetoothGattCallback,
+         * e.g. the stack refused it or the watchdog timed it out
+         */
+        void onOperationCompleted(GattOperation operation);
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class ReadRssiOperation extends GattOperation {
+
+    public ReadRssiOperation() {
+        super(Type.READ_REMOTE_RSSI);
+    }
+
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        return gatt.readRemoteRssi();
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * beginReliableWrite, every queued write, executeReliableWrite as one queue operation.
+ * the batch is executed only if every prepared write succeeded, otherwise it is aborted as a whole.
+ * android does not pass the value echoed by the remote to onCharacteristicWrite, so the prepared
+ * values can not be compared here. it is finished by onReliableWriteCompleted.
+ * an abort is answered by onReliableWriteCompleted too, so a failed batch stays in flight until
+ * that answer and then reports the failure which caused the abort, instead of a second result.
+ */
+public class ReliableWriteOperation extends GattOperation {
+    private final List<CharacteristicWriteOperation> mWrites = new ArrayList<>();
+    private int mIndex = 0;
+    //the status reported once the abort is confirmed, 0 (GATT_SUCCESS) while not aborting
+    private int mAbortStatus = BluetoothGatt.GATT_SUCCESS;
+    private boolean mAborting = false;
+
+    public ReliableWriteOperation() {
+        super(Type.RELIABLE_WRITE);
+    }
+
+    public int size() {
+        return mWrites.size();
+    }
+
+    public ReliableWriteOperation add(BluetoothGattCharacteristic characteristic, byte[] value) {
+        mWrites.add(new CharacteristicWriteOperation(characteristic, value));
+        return this;
+    }
+
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        if (mWrites.isEmpty() || !begin(gatt)) {
+            return false;
+        }
+        if (!prepare(gatt, mWrites.get(0))) {
+            startAbort(gatt, BluetoothGatt.GATT_FAILURE);
+        }
+        return true;
+    }
+
+    @Override
+    public void onTimeout(BluetoothGatt gatt) {
+        if (!mAborting) {
+            abort(gatt);
+        }
+        super.onTimeout(gatt);
+    }
+
+    @Override
+    public boolean matches(Type type, Object target) {
+        if (mAborting) {
+            return type == getType();
+        }
+        if (type == Type.CHARACTERISTIC_WRITE) {
+            return mIndex < mWrites.size() && mWrites.get(mIndex).matches(type, target);
+        }
+        return type == getType();
+    }
+
+    @Override
+    public void onCallback(BluetoothGatt gatt, Type type, Object target, int status) {
+        if (type == getType()) {
+            if (mAborting) {
+                //the abort is confirmed, the batch failed with the cause of the abort
+                fail(mAbortStatus);
+            } else {
+                super.onCallback(gatt, type, target, status);
+            }
+            return;
+        }
+        //one of the prepared writes
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            startAbort(gatt, status);
+            return;
+        }
+        mIndex++;
+        boolean success = mIndex < mWrites.size()
+                ? prepare(gatt, mWrites.get(mIndex))
+                : commit(gatt);
+        if (!success) {
+            startAbort(gatt, BluetoothGatt.GATT_FAILURE);
+        }
+    }
+
+    private void startAbort(BluetoothGatt gatt, int status) {
+        mAborting = true;
+        mAbortStatus = status;
+        abort(gatt);
+    }
+
+    //the calls into the stack, overridden by tests
+
+    protected boolean begin(BluetoothGatt gatt) {
+        return gatt.beginReliableWrite();
+    }
+
+    protected boolean prepare(BluetoothGatt gatt, CharacteristicWriteOperation write) {
+        return write.execute(gatt);
+    }
+
+    protected boolean commit(BluetoothGatt gatt) {
+        return gatt.executeReliableWrite();
+    }
+
+    //abortReliableWrite() without device is only available since KITKAT
+    @SuppressWarnings("deprecation")
+    protected void abort(BluetoothGatt gatt) {
+        gatt.abortReliableWrite(gatt.getDevice());
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothGatt;
+import android.os.Build;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * BluetoothGatt#requestMtu is only available since LOLLIPOP
+ */
+public class RequestMtuOperation extends GattOperation {
+    private final int mMtu;
+
+    public RequestMtuOperation(int mtu) {
+        super(Type.REQUEST_MTU);
+        this.mMtu = mtu;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && gatt.requestMtu(mMtu);
+    }
+
+    public int getMtu() {
+        return mMtu;
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.SystemClock;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * write-without-response stream to one characteristic.
+ * the android stack refuses writeCharacteristic while the previous write is pending,
+ * even for WRITE_TYPE_NO_RESPONSE, so only one packet is in flight at a time:
+ * every onCharacteristicWrite sends the next packet right from the callback.
+ * the gain over single writes is that the stream holds the queue for the whole payload,
+ * there is no queue round-trip or client message per packet.
+ */
+public class StreamWriteOperation extends GattOperation {
+    public static final int DEFAULT_PACKET_SIZE = 20;
+
+    private final BluetoothGattCharacteristic mCharacteristic;
+    private final byte[] mData;
+    private final int mPacketSize;
+
+    private int mOffset = 0;
+    private boolean mStarted = false;
+    private int mOriginalWriteType;
+    private long mStartTime;
+    private long mEndTime;
+    //the stack copies the value in writeCharacteristic, so one packet array is reused
+    private byte[] mPacket = null;
+
+    public StreamWriteOperation(BluetoothGattCharacteristic characteristic, byte[] data, int packetSize) {
+        super(Type.STREAM_WRITE);
+        this.mCharacteristic = characteristic;
+        this.mData = data == null ? new byte[0] : data;
+        this.mPacketSize = packetSize > 0 ? packetSize : DEFAULT_PACKET_SIZE;
+    }
+
+    /**
+     * @return false if the stack refused the first packet
+     */
+    @Override
+    public boolean execute(BluetoothGatt gatt) {
+        mStarted = true;
+        mStartTime = SystemClock.elapsedRealtime();
+        mOriginalWriteType = mCharacteristic.getWriteType();
+        mCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+        if (mData.length == 0) {
+            //empty payload, nothing to wait for
+            finish(BluetoothGatt.GATT_SUCCESS);
+            return true;
+        }
+        if (!sendPacket(gatt)) {
+            finish(BluetoothGatt.GATT_FAILURE);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * hand the next packet to the stack
+     * @return false if the stack refused it
+     */
+    private boolean sendPacket(BluetoothGatt gatt) {
+        int end = Math.min(mOffset + mPacketSize, mData.length);
+        if (mPacket == null || mPacket.length != end - mOffset) {
+            mPacket = new byte[end - mOffset];
+        }
+        System.arraycopy(mData, mOffset, mPacket, 0, mPacket.length);
+        mCharacteristic.setValue(mPacket);
+        if (!gatt.writeCharacteristic(mCharacteristic)) {
+            return false;
+        }
+        mOffset = end;
+        return true;
+    }
+
+    @Override
+    public boolean matches(Type type, Object target) {
+        return type == Type.CHARACTERISTIC_WRITE
+                && CharacteristicWriteOperation.isSameCharacteristic(mCharacteristic, target);
+    }
+
+    /**
+     * a packet was accepted by the stack, send the next one
+     */
+    @Override
+    public void onCallback(BluetoothGatt gatt, Type type, Object target, int status) {
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            finish(status);
+        } else if (mOffset >= mData.length) {
+            finish(BluetoothGatt.GATT_SUCCESS);
+        } else if (!sendPacket(gatt)) {
+            finish(BluetoothGatt.GATT_FAILURE);
+        }
+    }
+
+    @Override
+    public void fail(int status) {
+        finish(status);
+    }
+
+    private void finish(int status) {
+        mEndTime = SystemClock.elapsedRealtime();
+        if (mStarted) {
+            mCharacteristic.setWriteType(mOriginalWriteType);
+        }
+        mStatus = status;
+        mFinished = true;
+    }
+
+    @Override
+    public UUID getUuid() {
+        return mCharacteristic.getUuid();
+    }
+
+    public int getBytesSent() {
+        return mOffset;
+    }
+
+    public long getBytesPerSecond() {
+        long elapsed = (mEndTime > 0 ? mEndTime : SystemClock.elapsedRealtime()) - mStartTime;
+        return elapsed > 0 ? mOffset * 1000L / elapsed : mOffset * 1000L;
+    }
+}
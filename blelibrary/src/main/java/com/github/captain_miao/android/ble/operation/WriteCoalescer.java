@@ -0,0 +1,155 @@
+package com.github.captain_miao.android.ble.operation;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * merges adjacent small writes to the same characteristic into one GATT write,
+ * for firmware which accepts concatenated frames.
+ * pending bytes are flushed when the next write does not fit, when maxBytes is reached,
+ * after maxDelay, or before any other operation is queued (keeps the order).
+ */
+public class WriteCoalescer {
+    private final Handler mHandler;
+    private final Object mOrderLock;
+    private final FlushListener mListener;
+    private final long mMaxDelay;
+    private final int mMaxBytes;
+
+    private BluetoothGattCharacteristic mCharacteristic = null;
+    private byte[] mBuffer = null;
+    private int mLength = 0;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (mOrderLock) {
+                flush();
+            }
+        }
+    };
+
+    /**
+     * the listener is never called while holding the lock of this coalescer, it may take its own locks
+     *
+     * @param orderLock lock of the callers of write and flush, the delayed flush holds it too
+     *                  so its bytes can not be overtaken by a write which comes at the same time
+     * @param maxDelay max milliseconds a write waits for followers
+     * @param maxBytes max bytes of a merged write, it is also capped by the payload limit of every write
+     */
+    public WriteCoalescer(Handler handler, Object orderLock, long maxDelay, int maxBytes, FlushListener listener) {
+        this.mHandler = handler;
+        this.mOrderLock = orderLock;
+        this.mMaxDelay = maxDelay;
+        this.mMaxBytes = maxBytes;
+        this.mListener = listener;
+    }
+
+    /**
+     * @param payloadLimit max bytes of one write on this connection (MTU-3)
+     */
+    public void write(BluetoothGattCharacteristic characteristic, byte[] value, int payloadLimit) {
+        write(characteristic, value, 0, value.length, payloadLimit);
+    }
+
+    /**
+     * write value[offset, offset + length), the bytes are copied before this returns
+     */
+    public void write(BluetoothGattCharacteristic characteristic, byte[] value,
+                      int offset, int length, int payloadLimit) {
+        Chunk pending;
+        Chunk direct = null;
+        Chunk full = null;
+        synchronized (this) {
+            int limit = Math.min(mMaxBytes, payloadLimit);
+            pending = mLength > 0 && (characteristic != mCharacteristic || mLength + length > limit) ? take() : null;
+            if (length >= limit) {
+                //nothing to merge it with
+                direct = new Chunk(characteristic, value, offset, length);
+            } else {
+                if (mBuffer == null || mBuffer.length < limit) {
+                    mBuffer = new byte[limit];
+                }
+                if (mLength == 0) {
+                    mCharacteristic = characteristic;
+                    mHandler.postDelayed(mFlushTask, mMaxDelay);
+                }
+                System.arraycopy(value, offset, mBuffer, mLength, length);
+                mLength += length;
+                if (mLength == limit) {
+                    full = take();
+                }
+            }
+        }
+        dispatch(pending);
+        if (direct != null) {
+            mListener.onFlush(direct.mCharacteristic, direct.mValue, direct.mOffset, direct.mLength);
+        }
+        dispatch(full);
+    }
+
+    public void flush() {
+        Chunk pending;
+        synchronized (this) {
+            mHandler.removeCallbacks(mFlushTask);
+            pending = mLength > 0 ? take() : null;
+        }
+        dispatch(pending);
+    }
+
+    /**
+     * drop pending bytes, e.g. on disconnect
+     */
+    public synchronized void clear() {
+        mHandler.removeCallbacks(mFlushTask);
+        mLength = 0;
+        mCharacteristic = null;
+    }
+
+    //the pending bytes, the buffer goes with them until the listener is done
+    private Chunk take() {
+        mHandler.removeCallbacks(mFlushTask);
+        Chunk chunk = new Chunk(mCharacteristic, mBuffer, 0, mLength);
+        mBuffer = null;
+        mLength = 0;
+        mCharacteristic = null;
+        return chunk;
+    }
+
+    private void dispatch(Chunk chunk) {
+        if (chunk == null) {
+            return;
+        }
+        mListener.onFlush(chunk.mCharacteristic, chunk.mValue, chunk.mOffset, chunk.mLength);
+        synchronized (this) {
+            //the listener copied it, reuse it for the next merge
+            if (mBuffer == null) {
+                mBuffer = chunk.mValue;
+            }
+        }
+    }
+
+    private static class Chunk {
+        final BluetoothGattCharacteristic mCharacteristic;
+        final byte[] mValue;
+        final int mOffset;
+        final int mLength;
+
+        Chunk(BluetoothGattCharacteristic characteristic, byte[] value, int offset, int length) {
+            this.mCharacteristic = characteristic;
+            this.mValue = value;
+            this.mOffset = offset;
+            this.mLength = length;
+        }
+    }
+
+    public interface FlushListener {
+        /**
+         * value[offset, offset + length) is only valid during the call
+         */
+        void onFlush(BluetoothGattCharacteristic characteristic, byte[] value, int offset, int length);
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.captain_miao.android.ble.poll;
+
+import com.github.captain_miao.android.ble.request.BleRequest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * reads characteristics of devices without notifications at target periods, e.g. battery at
+ * 1000ms and temperature at 100ms. a device has at most one polling read in its operation queue,
+ * the due reads of the device take turns so writes and other devices are never stuck behind them.
+ * a deadline which passes while the previous read still waits or runs is missed, the period of the
+ * task then doubles up to MAX_BACKOFF times the target and steps back after RECOVER_AFTER
+ * reads on time.
+ */
+public class PollScheduler {
+    public static final int MAX_BACKOFF = 8;
+    public static final int RECOVER_AFTER = 4;
+
+    private final BleRequest.Scheduler mScheduler;
+    private final Reader mReader;
+    private final Map<String, Device> mDevices = new HashMap<>();
+
+    public PollScheduler(BleRequest.Scheduler scheduler, Reader reader) {
+        this.mScheduler = scheduler;
+        this.mReader = reader;
+    }
+
+    /**
+     * @param address null for the device connected last
+     */
+    public PollTask add(String address, UUID serviceUUID, UUID characteristicUUID, long periodMillis,
+                        Listener listener) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("period " + periodMillis);
+        }
+        final PollTask task = new PollTask(address, serviceUUID, characteristicUUID, periodMillis, listener);
+        task.mTick = new Runnable() {
+            @Override
+            public void run() {
+                tick(task);
+            }
+        };
+        synchronized (this) {
+            Device device = mDevices.get(address);
+            if (device == null) {
+                device = new Device();
+                mDevices.put(address, device);
+            }
+            device.mTasks.add(task);
+        }
+        mScheduler.postDelayed(task.mTick, 0);
+        return task;
+    }
+
+    /**
+     * stops the task, a read of it which is running finishes unreported
+     */
+    public void remove(PollTask task) {
+        synchronized (this) {
+            if (task.mCancelled) {
+                return;
+            }
+            task.mCancelled = true;
+            Device device = mDevices.get(task.getAddress());
+            device.mTasks.remove(task);
+            device.mReady.remove(task);
+        }
+        mScheduler.removeCallbacks(task.mTick);
+    }
+
+    public void removeAll() {
+        for (PollTask task : getTasks()) {
+            remove(task);
+        }
+    }
+
+    public synchronized List<PollTask> getTasks() {
+        List<PollTask> tasks = new ArrayList<>();
+        for (Device device : mDevices.values()) {
+            tasks.addAll(device.mTasks);
+        }
+        return tasks;
+    }
+
+    private void tick(PollTask task) {
+        PollTask next = null;
+        boolean missed = false;
+        long period = 0;
+        synchronized (this) {
+            if (task.mCancelled) {
+                return;
+            }
+            if (task.mWaiting || task.mReading) {
+                missed = true;
+                task.mMissed++;
+                task.mOnTime = false;
+                task.mOnTimeReads = 0;
+                long slowest = task.getTargetPeriodMillis() * MAX_BACKOFF;
+                if (task.mPeriod < slowest) {
+                    task.mPeriod = Math.min(task.mPeriod * 2, slowest);
+                    period = task.mPeriod;
+                }
+            } else {
+                Device device = mDevices.get(task.getAddress());
+                task.mWaiting = true;
+                task.mOnTime = true;
+                device.mReady.add(task);
+                next = device.next();
+            }
+            mScheduler.postDelayed(task.mTick, task.mPeriod);
+        }
+        if (missed) {
+            task.mListener.onMissed(task);
+        }
+        if (period > 0) {
+            task.mListener.onPeriodChanged(task, period);
+        }
+        read(next);
+    }
+
+    private void read(final PollTask task) {
+        if (task == null) {
+            return;
+        }
+        BleRequest<byte[]> request = mReader.read(task.getAddress(), task.getServiceUUID(),
+                task.getCharacteristicUUID());
+        request.addCallback(new BleRequest.Callback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] value) {
+                onRead(task, 0, value);
+            }
+
+            @Override
+            public void onFailure(int status) {
+                onRead(task, status, null);
+            }
+        });
+    }
+
+    private void onRead(PollTask task, int status, byte[] value) {
+        PollTask next;
+        long period = 0;
+        synchronized (this) {
+            task.mReading = false;
+            task.mReads++;
+            Device device = mDevices.get(task.getAddress());
+            device.mReading = null;
+            if (task.mOnTime && ++task.mOnTimeReads >= RECOVER_AFTER
+                    && task.mPeriod > task.getTargetPeriodMillis()) {
+                task.mOnTimeReads = 0;
+                task.mPeriod = Math.max(task.mPeriod / 2, task.getTargetPeriodMillis());
+                period = task.mPeriod;
+            }
+            next = device.next();
+        }
+        if (!task.mCancelled) {
+            if (status == 0) {
+                task.mListener.onValue(task, value);
+            } else {
+                task.mListener.onFailure(task, status);
+            }
+            if (period > 0) {
+                task.mListener.onPeriodChanged(task, period);
+            }
+        }
+        read(next);
+    }
+
+    private static class Device {
+        final List<PollTask> mTasks = new ArrayList<>();
+        //due tasks in the order of their deadlines
+        final ArrayDeque<PollTask> mReady = new ArrayDeque<>();
+        PollTask mReading = null;
+
+        //the task whose read starts now, null while one is running
+        PollTask next() {
+            if (mReading != null || mReady.isEmpty()) {
+                return null;
+            }
+            mReading = mReady.poll();
+            mReading.mWaiting = false;
+            mReading.mReading = true;
+            return mReading;
+        }
+    }
+
+    //BluetoothHelper#requestReadCharacteristic
+    public interface Reader {
+        BleRequest<byte[]> read(String address, UUID serviceUUID, UUID characteristicUUID);
+    }
+
+    public abstract static class Listener {
+        public abstract void onValue(PollTask task, byte[] value);
+
+        public void onFailure(PollTask task, int status) {
+
+        }
+
+        //the deadline passed before the previous read finished, this one was skipped
+        public void onMissed(PollTask task) {
+
+        }
+
+        public void onPeriodChanged(PollTask task, long periodMillis) {
+
+        }
+    }
+}
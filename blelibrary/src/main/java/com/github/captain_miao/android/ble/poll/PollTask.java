@@ -0,0 +1,76 @@
+package com.github.captain_miao.android.ble.poll;
+
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * one characteristic read periodically by a PollScheduler.
+ * the fields are guarded by the lock of the scheduler.
+ */
+public class PollTask {
+    private final String mAddress;
+    private final UUID mServiceUUID;
+    private final UUID mCharacteristicUUID;
+    private final long mTargetPeriod;
+    final PollScheduler.Listener mListener;
+    volatile long mPeriod;
+    //due and waiting for the other reads of the device
+    boolean mWaiting = false;
+    boolean mReading = false;
+    boolean mCancelled = false;
+    //no deadline missed since it became due
+    boolean mOnTime = true;
+    int mOnTimeReads = 0;
+    volatile long mReads = 0;
+    volatile long mMissed = 0;
+    Runnable mTick = null;
+
+    PollTask(String address, UUID serviceUUID, UUID characteristicUUID, long periodMillis,
+             PollScheduler.Listener listener) {
+        this.mAddress = address;
+        this.mServiceUUID = serviceUUID;
+        this.mCharacteristicUUID = characteristicUUID;
+        this.mTargetPeriod = periodMillis;
+        this.mPeriod = periodMillis;
+        this.mListener = listener;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public UUID getServiceUUID() {
+        return mServiceUUID;
+    }
+
+    public UUID getCharacteristicUUID() {
+        return mCharacteristicUUID;
+    }
+
+    public long getTargetPeriodMillis() {
+        return mTargetPeriod;
+    }
+
+    /**
+     * the period in use, longer than the target while the link can't keep up
+     */
+    public long getPeriodMillis() {
+        return mPeriod;
+    }
+
+    public long getReads() {
+        return mReads;
+    }
+
+    //deadlines which passed while the previous read was still waiting or running
+    public long getMissed() {
+        return mMissed;
+    }
+
+    @Override
+    public String toString() {
+        return "poll " + mAddress + " " + mCharacteristicUUID + " every " + mTargetPeriod + "ms";
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.captain_miao.android.ble.pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * addresses of the open connections in least recently used order, at most maxConnections of them.
+ * a new connection is admitted by evicting the least recently used idle ones, never a busy one.
+ * evicted addresses are remembered so that their next request can reconnect them.
+ * not thread safe, the owner locks.
+ */
+public class ConnectionPool {
+    private int mMaxConnections;
+    //access order, the eldest first
+    private final LinkedHashMap<String, Boolean> mConnections = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> mEvicted = new HashSet<>();
+    private long mEvictions = 0;
+
+    public interface IdleCheck {
+        /**
+         * @return true if the connection may be closed now
+         */
+        boolean isIdle(String address);
+    }
+
+    public ConnectionPool(int maxConnections) {
+        setMaxConnections(maxConnections);
+    }
+
+    /**
+     * a smaller maximum applies to the next admit
+     */
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("maxConnections " + maxConnections);
+        }
+        this.mMaxConnections = maxConnections;
+    }
+
+    public int getMaxConnections() {
+        return mMaxConnections;
+    }
+
+    /**
+     * make room for the connection and mark it as the most recently used
+     * @return the connections to close first, empty if it fits or is open already,
+     * null if every other connection is busy and the pool is full
+     */
+    public List<String> admit(String address, IdleCheck idleCheck) {
+        if (mConnections.containsKey(address)) {
+            mConnections.get(address);
+            return Collections.emptyList();
+        }
+        int excess = mConnections.size() + 1 - mMaxConnections;
+        List<String> victims = excess > 0 ? new ArrayList<String>(excess) : Collections.<String>emptyList();
+        for (Iterator<String> it = mConnections.keySet().iterator(); it.hasNext() && victims.size() < excess; ) {
+            String eldest = it.next();
+            if (idleCheck.isIdle(eldest)) {
+                victims.add(eldest);
+            }
+        }
+        if (victims.size() < excess) {
+            return null;
+        }
+        for (String victim : victims) {
+            mConnections.remove(victim);
+            mEvicted.add(victim);
+        }
+        mEvictions += victims.size();
+        //a refused connection stays evicted, its next request tries again
+        mEvicted.remove(address);
+        mConnections.put(address, Boolean.TRUE);
+        return victims;
+    }
+
+    /**
+     * the connection was used, it is evicted last
+     */
+    public void touch(String address) {
+        mConnections.get(address);
+    }
+
+    /**
+     * the connection was closed by its owner, it is not reconnected
+     */
+    public void remove(String address) {
+        mConnections.remove(address);
+        mEvicted.remove(address);
+    }
+
+    /**
+     * @return true if the pool closed the connection and it was not admitted again since
+     */
+    public boolean isEvicted(String address) {
+        return address != null && mEvicted.contains(address);
+    }
+
+    public boolean contains(String address) {
+        return mConnections.containsKey(address);
+    }
+
+    public int size() {
+        return mConnections.size();
+    }
+
+    //connections closed to make room since the pool was created
+    public long getEvictions() {
+        return mEvictions;
+    }
+
+    public void clear() {
+        mConnections.clear();
+        mEvicted.clear();
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.captain_miao.android.ble.pool;
+
+import java.util.ArrayDeque;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * lets one connection at a time through its setup (connect, discover services, MTU, CCCD writes),
+ * the others wait in the order they were submitted. once set up, connections run in parallel.
+ * not thread safe, the owner locks.
+ */
+public class SetupScheduler<T> {
+    private final ArrayDeque<T> mWaiting = new ArrayDeque<>();
+    private T mActive = null;
+
+    /**
+     * @return true if the setup of item may start now, false if it waits for finish of the active one
+     */
+    public boolean submit(T item) {
+        if (mActive == null) {
+            mActive = item;
+            return true;
+        }
+        if (mActive == item) {
+            //submitted again, e.g. a connect retry, it keeps its turn
+            return true;
+        }
+        if (!mWaiting.contains(item)) {
+            mWaiting.add(item);
+        }
+        return false;
+    }
+
+    /**
+     * the setup of item ended, or it is not wanted any more
+     * @return the item whose setup starts now, null for none
+     */
+    public T finish(T item) {
+        if (mActive != item) {
+            mWaiting.remove(item);
+            return null;
+        }
+        mActive = mWaiting.poll();
+        return mActive;
+    }
+
+    public T getActive() {
+        return mActive;
+    }
+
+    public boolean isActive(T item) {
+        return item != null && mActive == item;
+    }
+
+    public boolean isWaiting(T item) {
+        return mWaiting.contains(item);
+    }
+
+    public int getWaitingCount() {
+        return mWaiting.size();
+    }
+
+    public void clear() {
+        mActive = null;
+        mWaiting.clear();
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.captain_miao.android.ble.request;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * handle of one GATT read or write, completed by the result which carries its request id.
+ * callbacks run on the thread which completes the request (the callback thread of the
+ * BluetoothHelper), or at once if it is already done. get() blocks and must not be called there.
+ */
+public class BleRequest<T> implements Future<T> {
+    private final int mId;
+    private final List<Callback<T>> mCallbacks = new ArrayList<>(1);
+    private boolean mDone = false;
+    private T mResult;
+    private int mStatus = BleConstants.GATT_REQUEST_PENDING;
+    private Runnable mTimeout = null;
+    private Scheduler mScheduler = null;
+
+    public BleRequest(int id) {
+        this.mId = id;
+    }
+
+    public static <T> BleRequest<T> failed(int status) {
+        BleRequest<T> request = new BleRequest<>(0);
+        request.fail(status);
+        return request;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * @return false if the request was already done
+     */
+    public boolean complete(T result) {
+        return finish(result, 0);
+    }
+
+    public boolean fail(int status) {
+        return finish(null, status);
+    }
+
+    private boolean finish(T result, int status) {
+        List<Callback<T>> callbacks;
+        synchronized (this) {
+            if (mDone) {
+                return false;
+            }
+            mDone = true;
+            mResult = result;
+            mStatus = status;
+            if (mTimeout != null) {
+                mScheduler.removeCallbacks(mTimeout);
+                mTimeout = null;
+            }
+            callbacks = new ArrayList<>(mCallbacks);
+            mCallbacks.clear();
+            notifyAll();
+        }
+        for (Callback<T> callback : callbacks) {
+            dispatch(callback);
+        }
+        return true;
+    }
+
+    private void dispatch(Callback<T> callback) {
+        if (mStatus == 0) {
+            callback.onSuccess(mResult);
+        } else {
+            callback.onFailure(mStatus);
+        }
+    }
+
+    public BleRequest<T> addCallback(Callback<T> callback) {
+        synchronized (this) {
+            if (!mDone) {
+                mCallbacks.add(callback);
+                return this;
+            }
+        }
+        dispatch(callback);
+        return this;
+    }
+
+    /**
+     * start the next request when this one succeeds, e.g. read after write.
+     * a failure of either completes the returned request with its status.
+     */
+    public <R> BleRequest<R> then(final Continuation<T, R> continuation) {
+        final BleRequest<R> next = new BleRequest<>(mId);
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                BleRequest<R> request = continuation.then(result);
+                request.addCallback(new Callback<R>() {
+                    @Override
+                    public void onSuccess(R result) {
+                        next.complete(result);
+                    }
+
+                    @Override
+                    public void onFailure(int status) {
+                        next.fail(status);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(int status) {
+                next.fail(status);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * fail with GATT_OPERATION_TIMEOUT unless the result arrives within millis.
+     * the operation itself may still run, its late result is ignored.
+     */
+    public BleRequest<T> timeout(Scheduler scheduler, long millis) {
+        synchronized (this) {
+            if (mDone) {
+                return this;
+            }
+            if (mTimeout != null) {
+                mScheduler.removeCallbacks(mTimeout);
+            }
+            mScheduler = scheduler;
+            mTimeout = new Runnable() {
+                @Override
+                public void run() {
+                    fail(BleConstants.GATT_OPERATION_TIMEOUT);
+                }
+            };
+            scheduler.postDelayed(mTimeout, millis);
+        }
+        return this;
+    }
+
+    /**
+     * GATT status of a done request, GATT_REQUEST_PENDING before
+     */
+    public synchronized int getStatus() {
+        return mStatus;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return fail(BleConstants.GATT_REQUEST_CANCELLED);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mDone && mStatus == BleConstants.GATT_REQUEST_CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mDone;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!mDone) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!mDone) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                throw new TimeoutException("request " + mId);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        if (mStatus != 0) {
+            throw new ExecutionException(new BleRequestException(mStatus));
+        }
+        return mResult;
+    }
+
+    @Override
+    public String toString() {
+        return "request " + mId + (mDone ? ", status " + mStatus : ", pending");
+    }
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        //a GATT status, GATT_OPERATION_TIMEOUT or GATT_REQUEST_CANCELLED
+        void onFailure(int status);
+    }
+
+    public interface Continuation<T, R> {
+        BleRequest<R> then(T result);
+    }
+
+    //the shape of android.os.Handler
+    public interface Scheduler {
+        boolean postDelayed(Runnable runnable, long delayMillis);
+
+        void removeCallbacks(Runnable runnable);
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.captain_miao.android.ble.request;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * cause of the ExecutionException of a failed BleRequest
+ */
+public class BleRequestException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int mStatus;
+
+    public BleRequestException(int status) {
+        super("gatt status " + status);
+        this.mStatus = status;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.captain_miao.android.ble.ring;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * layout of the shared notification ring, one writer (the service) and any number of readers.
+ *
+ * header: magic, slots, slot size, published count.
+ * slot:   sequence, length, uuid msb/lsb, device address (MacAddressCodec), payload.
+ * the writer marks a slot busy, fills it, stamps it with its sequence + 1 and then
+ * raises the published count. a reader copies a slot and checks the stamp before and after,
+ * if the writer lapped it in between the frame counts as lost (overrun).
+ * nothing is locked. put/get on a MappedByteBuffer are plain accesses which the cpu may reorder,
+ * so both sides separate the stamp, the frame and the published count with fence().
+ */
+public class NotificationRing {
+    public static final int DEFAULT_SLOTS     = 256;
+    //largest attribute value of the spec
+    public static final int DEFAULT_SLOT_SIZE = 512;
+
+    static final int MAGIC            = 0x424c4552;
+    static final int HEADER_SIZE      = 32;
+    static final int MAGIC_OFFSET     = 0;
+    static final int SLOTS_OFFSET     = 4;
+    static final int SLOT_SIZE_OFFSET = 8;
+    static final int PUBLISHED_OFFSET = 16;
+
+    static final int SLOT_HEADER_SIZE = 40;
+    static final int SEQ_OFFSET       = 0;
+    static final int LENGTH_OFFSET    = 8;
+    static final int MSB_OFFSET       = 16;
+    static final int LSB_OFFSET       = 24;
+    static final int ADDRESS_OFFSET   = 32;
+    //stamp of a slot the writer is filling
+    static final long BUSY            = -1;
+
+    private static volatile int sFence;
+
+    protected final ByteBuffer mBuffer;
+    //own position for bulk copies of the payload, the shared buffer is only used absolutely
+    protected final ByteBuffer mView;
+    protected final int mSlots;
+    protected final int mSlotSize;
+
+    protected NotificationRing(ByteBuffer buffer, int slots, int slotSize) {
+        this.mBuffer = buffer;
+        this.mView = buffer.duplicate();
+        this.mSlots = slots;
+        this.mSlotSize = slotSize;
+    }
+
+    /**
+     * bytes of a ring with this geometry
+     */
+    public static int bufferSize(int slots, int slotSize) {
+        return HEADER_SIZE + slots * (SLOT_HEADER_SIZE + slotSize);
+    }
+
+    protected int slotOffset(long seq) {
+        return HEADER_SIZE + (int) (seq % mSlots) * (SLOT_HEADER_SIZE + mSlotSize);
+    }
+
+    public int getSlots() {
+        return mSlots;
+    }
+
+    public int getSlotSize() {
+        return mSlotSize;
+    }
+
+    /**
+     * a full memory barrier before java 9 has fences: a volatile store followed by a volatile load
+     * of the same field needs a StoreLoad barrier, ART and HotSpot emit a full one for it
+     * (dmb ish on arm, a locked instruction on x86). the java memory model only speaks of threads,
+     * the ring is shared with other processes, so it relies on that hardware barrier
+     */
+    protected static void fence() {
+        sFence = 0;
+        int ignored = sFence;
+    }
+
+    /**
+     * frames written since the ring was created
+     */
+    public long getPublished() {
+        return mBuffer.getLong(PUBLISHED_OFFSET);
+    }
+}
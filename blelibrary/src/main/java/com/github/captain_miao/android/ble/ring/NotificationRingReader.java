@@ -0,0 +1,106 @@
+package com.github.captain_miao.android.ble.ring;
+
+import com.github.captain_miao.android.ble.utils.MacAddressCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * one reader of a NotificationRing with its own position, readers do not see each other.
+ * it starts at the sequence given to open, or at the frames published when it was opened.
+ */
+public class NotificationRingReader extends NotificationRing {
+    private long mNext;
+
+    private NotificationRingReader(ByteBuffer buffer, int slots, int slotSize, long start) {
+        super(buffer, slots, slotSize);
+        this.mNext = start < 0 ? getPublished() : Math.min(start, getPublished());
+    }
+
+    /**
+     * @param buffer a ring formatted by a NotificationRingWriter
+     */
+    public static NotificationRingReader open(ByteBuffer buffer) throws IOException {
+        return open(buffer, -1);
+    }
+
+    /**
+     * @param start sequence of the first frame to read, e.g. the published count when the writer
+     *              started to write for this reader. frames already overwritten count as overrun
+     */
+    public static NotificationRingReader open(ByteBuffer buffer, long start) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("not a notification ring");
+        }
+        int slots = buffer.getInt(SLOTS_OFFSET);
+        int slotSize = buffer.getInt(SLOT_SIZE_OFFSET);
+        if (slots <= 0 || slotSize < 0 || buffer.capacity() < bufferSize(slots, slotSize)) {
+            throw new IOException("bad notification ring geometry");
+        }
+        return new NotificationRingReader(buffer, slots, slotSize, start);
+    }
+
+    /**
+     * deliver every frame published since the last poll
+     * @return frames delivered
+     */
+    public int poll(Listener listener) {
+        long published = getPublished();
+        fence();
+        long lost = 0;
+        if (published - mNext > mSlots) {
+            //the writer lapped us, the oldest frames are gone
+            lost += published - mSlots - mNext;
+            mNext = published - mSlots;
+        }
+        int delivered = 0;
+        for (; mNext < published; mNext++) {
+            int base = slotOffset(mNext);
+            long stamp = mNext + 1;
+            if (mBuffer.getLong(base + SEQ_OFFSET) != stamp) {
+                lost++;
+                continue;
+            }
+            //the stamp is read before the frame
+            fence();
+            int length = mBuffer.getInt(base + LENGTH_OFFSET);
+            if (length < 0 || length > mSlotSize) {
+                lost++;
+                continue;
+            }
+            UUID uuid = new UUID(mBuffer.getLong(base + MSB_OFFSET), mBuffer.getLong(base + LSB_OFFSET));
+            long address = mBuffer.getLong(base + ADDRESS_OFFSET);
+            byte[] value = new byte[length];
+            mView.position(base + SLOT_HEADER_SIZE);
+            mView.get(value);
+            fence();
+            if (mBuffer.getLong(base + SEQ_OFFSET) != stamp) {
+                //overwritten while copying
+                lost++;
+                continue;
+            }
+            listener.onNotification(MacAddressCodec.toString(address), uuid, value);
+            delivered++;
+        }
+        if (lost > 0) {
+            listener.onOverrun(lost);
+        }
+        return delivered;
+    }
+
+    public interface Listener {
+        /**
+         * @param address device of the notification, null if the writer gave none
+         */
+        void onNotification(String address, UUID uuid, byte[] value);
+
+        /**
+         * frames overwritten before this reader got to them
+         */
+        void onOverrun(long lost);
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.captain_miao.android.ble.ring;
+
+import com.github.captain_miao.android.ble.utils.MacAddressCodec;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * the only writer of a NotificationRing, never waits for the readers:
+ * a slow reader loses the oldest frames and sees it as an overrun.
+ */
+public class NotificationRingWriter extends NotificationRing {
+    private long mNext = 0;
+
+    /**
+     * formats the buffer, it must hold bufferSize(slots, slotSize) bytes
+     */
+    public NotificationRingWriter(ByteBuffer buffer, int slots, int slotSize) {
+        super(buffer, slots, slotSize);
+        for (int i = 0; i < slots; i++) {
+            buffer.putLong(slotOffset(i) + SEQ_OFFSET, 0);
+        }
+        buffer.putLong(PUBLISHED_OFFSET, 0);
+        buffer.putInt(SLOTS_OFFSET, slots);
+        buffer.putInt(SLOT_SIZE_OFFSET, slotSize);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+    }
+
+    public boolean write(UUID uuid, byte[] value) {
+        return write(null, uuid, value);
+    }
+
+    /**
+     * @param address device of the notification, null for none
+     * @return false if the value does not fit into a slot, send it another way
+     */
+    public synchronized boolean write(String address, UUID uuid, byte[] value) {
+        int length = value == null ? 0 : value.length;
+        if (length > mSlotSize) {
+            return false;
+        }
+        long seq = mNext;
+        int base = slotOffset(seq);
+        mBuffer.putLong(base + SEQ_OFFSET, BUSY);
+        //readers must see the slot busy before any of the new frame
+        fence();
+        mBuffer.putInt(base + LENGTH_OFFSET, length);
+        mBuffer.putLong(base + MSB_OFFSET, uuid.getMostSignificantBits());
+        mBuffer.putLong(base + LSB_OFFSET, uuid.getLeastSignificantBits());
+        mBuffer.putLong(base + ADDRESS_OFFSET, MacAddressCodec.toLong(address));
+        if (length > 0) {
+            mView.position(base + SLOT_HEADER_SIZE);
+            mView.put(value, 0, length);
+        }
+        //the frame before its stamp, the stamp before the published count
+        fence();
+        mBuffer.putLong(base + SEQ_OFFSET, seq + 1);
+        fence();
+        mNext = seq + 1;
+        mBuffer.putLong(PUBLISHED_OFFSET, mNext);
+        return true;
+    }
+}
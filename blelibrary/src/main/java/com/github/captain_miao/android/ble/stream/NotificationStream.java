@@ -0,0 +1,335 @@
+package com.github.captain_miao.android.ble.stream;
+
+import com.github.captain_miao.android.ble.request.BleRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * values of one characteristic as a stream, e.g.
+ * helper.notifications(service, characteristic).map(decoder).window(1000).subscribe(subscriber).request(n).
+ * a stream is hot: it is active while it has subscribers, the first subscriber of a characteristic
+ * turns its notifications on and the last cancel turns them off. operators share one upstream
+ * subscription between their subscribers and take every value, demand is kept per subscriber.
+ * values and timer ticks come on the message thread of the BluetoothHelper.
+ */
+public abstract class NotificationStream<T> {
+    //values held for a subscriber without demand, then the oldest is dropped
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final BleRequest.Scheduler mScheduler;
+    private final List<StreamSubscription<T>> mSubscriptions = new CopyOnWriteArrayList<>();
+    private boolean mCompleted = false;
+
+    /**
+     * @param scheduler runs the timers of sample and window
+     */
+    protected NotificationStream(BleRequest.Scheduler scheduler) {
+        this.mScheduler = scheduler;
+    }
+
+    public Subscription subscribe(Subscriber<? super T> subscriber) {
+        return subscribe(subscriber, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity values held while the subscriber has no demand
+     */
+    public Subscription subscribe(Subscriber<? super T> subscriber, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        StreamSubscription<T> subscription = new StreamSubscription<>(this, subscriber, capacity);
+        synchronized (this) {
+            if (!mCompleted) {
+                mSubscriptions.add(subscription);
+                if (mSubscriptions.size() == 1) {
+                    onActive();
+                }
+                return subscription;
+            }
+        }
+        subscription.complete();
+        return subscription;
+    }
+
+    void remove(StreamSubscription<T> subscription) {
+        synchronized (this) {
+            if (mSubscriptions.remove(subscription) && mSubscriptions.isEmpty()) {
+                onInactive();
+            }
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !mSubscriptions.isEmpty();
+    }
+
+    /**
+     * the first subscriber came, called with the lock of the stream
+     */
+    protected abstract void onActive();
+
+    /**
+     * the last subscriber left, called with the lock of the stream
+     */
+    protected abstract void onInactive();
+
+    protected void emit(T value) {
+        for (StreamSubscription<T> subscription : mSubscriptions) {
+            subscription.offer(value);
+        }
+    }
+
+    /**
+     * end the stream, pending values are still delivered on demand
+     */
+    protected void complete() {
+        synchronized (this) {
+            if (mCompleted) {
+                return;
+            }
+            mCompleted = true;
+        }
+        for (StreamSubscription<T> subscription : mSubscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private BleRequest.Scheduler getScheduler() {
+        if (mScheduler == null) {
+            throw new IllegalStateException("no scheduler for timed operators");
+        }
+        return mScheduler;
+    }
+
+    /**
+     * decode every value, a null result drops the value (e.g. a broken frame)
+     */
+    public <R> NotificationStream<R> map(Decoder<? super T, ? extends R> decoder) {
+        return new MapOperator<>(this, decoder);
+    }
+
+    /**
+     * lists of count values, the last one may be shorter when the stream completes
+     */
+    public NotificationStream<List<T>> buffer(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count " + count);
+        }
+        return new BufferOperator<>(this, count);
+    }
+
+    /**
+     * the latest value every interval milliseconds, nothing if no value came since the last one
+     */
+    public NotificationStream<T> sample(long interval) {
+        return new SampleOperator<>(this, getScheduler(), interval);
+    }
+
+    /**
+     * the values of every millis milliseconds as a list, nothing for a window without values
+     */
+    public NotificationStream<List<T>> window(long millis) {
+        return new WindowOperator<>(this, getScheduler(), millis);
+    }
+
+    public interface Decoder<T, R> {
+        R decode(T value);
+    }
+
+    //subscribes upstream while it has subscribers itself
+    private abstract static class Operator<U, T> extends NotificationStream<T> implements Subscriber<U> {
+        private final NotificationStream<U> mUpstream;
+        private Subscription mUpstreamSubscription = null;
+
+        Operator(NotificationStream<U> upstream) {
+            super(upstream.mScheduler);
+            this.mUpstream = upstream;
+        }
+
+        @Override
+        protected void onActive() {
+            mUpstreamSubscription = mUpstream.subscribe(this);
+            mUpstreamSubscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        protected void onInactive() {
+            if (mUpstreamSubscription != null) {
+                mUpstreamSubscription.cancel();
+                mUpstreamSubscription = null;
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            complete();
+        }
+    }
+
+    private static class MapOperator<U, T> extends Operator<U, T> {
+        private final Decoder<? super U, ? extends T> mDecoder;
+
+        MapOperator(NotificationStream<U> upstream, Decoder<? super U, ? extends T> decoder) {
+            super(upstream);
+            this.mDecoder = decoder;
+        }
+
+        @Override
+        public void onNext(U value) {
+            T decoded = mDecoder.decode(value);
+            if (decoded != null) {
+                emit(decoded);
+            }
+        }
+    }
+
+    private static class BufferOperator<T> extends Operator<T, List<T>> {
+        private final int mCount;
+        private List<T> mBuffer;
+
+        BufferOperator(NotificationStream<T> upstream, int count) {
+            super(upstream);
+            this.mCount = count;
+            this.mBuffer = new ArrayList<>(count);
+        }
+
+        @Override
+        public void onNext(T value) {
+            List<T> full = null;
+            synchronized (this) {
+                mBuffer.add(value);
+                if (mBuffer.size() == mCount) {
+                    full = mBuffer;
+                    mBuffer = new ArrayList<>(mCount);
+                }
+            }
+            if (full != null) {
+                emit(full);
+            }
+        }
+
+        @Override
+        protected void onInactive() {
+            super.onInactive();
+            mBuffer = new ArrayList<>(mCount);
+        }
+
+        @Override
+        public void onComplete() {
+            List<T> rest;
+            synchronized (this) {
+                rest = mBuffer;
+                mBuffer = new ArrayList<>(0);
+            }
+            if (!rest.isEmpty()) {
+                emit(rest);
+            }
+            super.onComplete();
+        }
+    }
+
+    //runs tick() every period while active
+    private abstract static class TimedOperator<U, T> extends Operator<U, T> {
+        private final BleRequest.Scheduler mTimer;
+        private final long mPeriod;
+        private final Runnable mTick = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (TimedOperator.this) {
+                    //onInactive removes it with this lock
+                    if (hasSubscribers()) {
+                        mTimer.postDelayed(this, mPeriod);
+                    }
+                }
+                tick();
+            }
+        };
+
+        TimedOperator(NotificationStream<U> upstream, BleRequest.Scheduler timer, long period) {
+            super(upstream);
+            if (period <= 0) {
+                throw new IllegalArgumentException("period " + period);
+            }
+            this.mTimer = timer;
+            this.mPeriod = period;
+        }
+
+        @Override
+        protected void onActive() {
+            super.onActive();
+            mTimer.postDelayed(mTick, mPeriod);
+        }
+
+        @Override
+        protected void onInactive() {
+            mTimer.removeCallbacks(mTick);
+            super.onInactive();
+        }
+
+        @Override
+        public void onComplete() {
+            mTimer.removeCallbacks(mTick);
+            tick();
+            super.onComplete();
+        }
+
+        abstract void tick();
+    }
+
+    private static class SampleOperator<T> extends TimedOperator<T, T> {
+        private T mLatest = null;
+
+        SampleOperator(NotificationStream<T> upstream, BleRequest.Scheduler timer, long interval) {
+            super(upstream, timer, interval);
+        }
+
+        @Override
+        public synchronized void onNext(T value) {
+            mLatest = value;
+        }
+
+        @Override
+        void tick() {
+            T latest;
+            synchronized (this) {
+                latest = mLatest;
+                mLatest = null;
+            }
+            if (latest != null) {
+                emit(latest);
+            }
+        }
+    }
+
+    private static class WindowOperator<T> extends TimedOperator<T, List<T>> {
+        private List<T> mWindow = new ArrayList<>();
+
+        WindowOperator(NotificationStream<T> upstream, BleRequest.Scheduler timer, long millis) {
+            super(upstream, timer, millis);
+        }
+
+        @Override
+        public synchronized void onNext(T value) {
+            mWindow.add(value);
+        }
+
+        @Override
+        void tick() {
+            List<T> window;
+            synchronized (this) {
+                if (mWindow.isEmpty()) {
+                    return;
+                }
+                window = mWindow;
+                mWindow = new ArrayList<>(window.size());
+            }
+            emit(window);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.captain_miao.android.ble.stream;
+
+import java.util.ArrayDeque;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * demand and pending values of one subscriber. notifications do not wait for demand,
+ * values beyond it are held up to capacity and then the oldest is dropped.
+ */
+class StreamSubscription<T> implements Subscription {
+    private final NotificationStream<T> mStream;
+    private final Subscriber<? super T> mSubscriber;
+    private final int mCapacity;
+    private final ArrayDeque<T> mPending;
+    private long mDemand = 0;
+    private long mDropped = 0;
+    private boolean mCompleted = false;
+    private boolean mCancelled = false;
+    //one thread delivers at a time, the others only queue
+    private boolean mDraining = false;
+
+    StreamSubscription(NotificationStream<T> stream, Subscriber<? super T> subscriber, int capacity) {
+        this.mStream = stream;
+        this.mSubscriber = subscriber;
+        this.mCapacity = capacity;
+        this.mPending = new ArrayDeque<>(Math.min(capacity, 16));
+    }
+
+    void offer(T value) {
+        synchronized (this) {
+            if (mCancelled || mCompleted) {
+                return;
+            }
+            if (mPending.size() == mCapacity) {
+                mPending.poll();
+                mDropped++;
+            }
+            mPending.add(value);
+        }
+        drain();
+    }
+
+    void complete() {
+        synchronized (this) {
+            if (mCancelled || mCompleted) {
+                return;
+            }
+            mCompleted = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            return;
+        }
+        synchronized (this) {
+            mDemand = mDemand + n < 0 ? Long.MAX_VALUE : mDemand + n;
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            mPending.clear();
+        }
+        mStream.remove(this);
+    }
+
+    @Override
+    public synchronized long getDropped() {
+        return mDropped;
+    }
+
+    private void drain() {
+        synchronized (this) {
+            if (mDraining) {
+                return;
+            }
+            mDraining = true;
+        }
+        for (;;) {
+            T value;
+            synchronized (this) {
+                if (mCancelled) {
+                    mDraining = false;
+                    return;
+                }
+                if (mPending.isEmpty() && mCompleted) {
+                    //onComplete once, after the pending values
+                    mCancelled = true;
+                    mDraining = false;
+                    break;
+                }
+                if (mPending.isEmpty() || mDemand == 0) {
+                    mDraining = false;
+                    return;
+                }
+                value = mPending.poll();
+                if (mDemand != Long.MAX_VALUE) {
+                    mDemand--;
+                }
+            }
+            mSubscriber.onNext(value);
+        }
+        mStream.remove(this);
+        mSubscriber.onComplete();
+    }
+}
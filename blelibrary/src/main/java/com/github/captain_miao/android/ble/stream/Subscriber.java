@@ -0,0 +1,17 @@
+package com.github.captain_miao.android.ble.stream;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * receives the values of a NotificationStream, never more than it requested
+ */
+public interface Subscriber<T> {
+
+    void onNext(T value);
+
+    /**
+     * the stream ends, e.g. the BluetoothHelper is released. no value follows
+     */
+    void onComplete();
+}
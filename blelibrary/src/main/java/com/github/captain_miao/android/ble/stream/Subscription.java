@@ -0,0 +1,25 @@
+package com.github.captain_miao.android.ble.stream;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * demand of one subscriber. nothing is delivered before the first request
+ */
+public interface Subscription {
+
+    /**
+     * allow n more values, Long.MAX_VALUE for no limit
+     */
+    void request(long n);
+
+    /**
+     * no value after this returns, the last cancel of a characteristic turns its notifications off
+     */
+    void cancel();
+
+    /**
+     * values dropped because the subscriber did not request them in time
+     */
+    long getDropped();
+}
@@ -0,0 +1,81 @@
+package com.github.captain_miao.android.ble.subscription;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * the events a client registers for: message ids (MSG_BLE_ID_*) and characteristic uuids.
+ * an empty set means all of them. events without a uuid (rssi, mtu, ...) only go through the
+ * event filter. connection state changes are delivered to every client whatever its filter.
+ */
+public class SubscriptionFilter {
+    public static final SubscriptionFilter ALL = new SubscriptionFilter(
+            Collections.<Integer>emptySet(), Collections.<UUID>emptySet());
+
+    private final Set<Integer> mEvents;
+    private final Set<UUID> mUuids;
+
+    /**
+     * @param events message ids, empty for every event
+     * @param uuids  characteristic uuids, empty for every characteristic
+     */
+    public SubscriptionFilter(Collection<Integer> events, Collection<UUID> uuids) {
+        this.mEvents = Collections.unmodifiableSet(new HashSet<>(events));
+        this.mUuids = Collections.unmodifiableSet(new HashSet<>(uuids));
+    }
+
+    public static SubscriptionFilter of(int[] events, UUID... uuids) {
+        Set<Integer> eventSet = new HashSet<>();
+        for (int event : events) {
+            eventSet.add(event);
+        }
+        Set<UUID> uuidSet = new HashSet<>();
+        Collections.addAll(uuidSet, uuids);
+        return new SubscriptionFilter(eventSet, uuidSet);
+    }
+
+    public static boolean isAlwaysDelivered(int event) {
+        return event == BleConstants.BLE_MSG_ID_CONNECTION_STATE_CHANGED;
+    }
+
+    /**
+     * @param uuid characteristic of the event, null if it has none
+     */
+    public boolean accepts(int event, UUID uuid) {
+        if (isAlwaysDelivered(event)) {
+            return true;
+        }
+        return (mEvents.isEmpty() || mEvents.contains(event))
+                && (uuid == null || mUuids.isEmpty() || mUuids.contains(uuid));
+    }
+
+    public boolean isEveryEvent() {
+        return mEvents.isEmpty();
+    }
+
+    public boolean isEveryUuid() {
+        return mUuids.isEmpty();
+    }
+
+    public Set<Integer> getEvents() {
+        return mEvents;
+    }
+
+    public Set<UUID> getUuids() {
+        return mUuids;
+    }
+
+    @Override
+    public String toString() {
+        return "events: " + (mEvents.isEmpty() ? "all" : mEvents)
+                + ", uuids: " + (mUuids.isEmpty() ? "all" : mUuids);
+    }
+}
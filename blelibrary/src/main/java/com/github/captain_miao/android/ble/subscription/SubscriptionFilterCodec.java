@@ -0,0 +1,57 @@
+package com.github.captain_miao.android.ble.subscription;
+
+import android.os.Bundle;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * a filter in the register message: the event ids, then the uuids as two long arrays.
+ */
+public class SubscriptionFilterCodec {
+
+    public static void writeToBundle(SubscriptionFilter filter, Bundle bundle) {
+        Set<Integer> eventSet = filter.getEvents();
+        Set<UUID> uuidSet = filter.getUuids();
+        int[] events = new int[eventSet.size()];
+        int i = 0;
+        for (Integer event : eventSet) {
+            events[i++] = event;
+        }
+        long[] msbs = new long[uuidSet.size()];
+        long[] lsbs = new long[uuidSet.size()];
+        i = 0;
+        for (UUID uuid : uuidSet) {
+            msbs[i] = uuid.getMostSignificantBits();
+            lsbs[i++] = uuid.getLeastSignificantBits();
+        }
+        bundle.putIntArray(BleConstants.BLE_MSG_EVENT_FILTER_KEY, events);
+        bundle.putLongArray(BleConstants.BLE_MSG_UUID_FILTER_MSB_KEY, msbs);
+        bundle.putLongArray(BleConstants.BLE_MSG_UUID_FILTER_LSB_KEY, lsbs);
+    }
+
+    /**
+     * @return ALL if the bundle has no filter, e.g. from a client before filters
+     */
+    public static SubscriptionFilter fromBundle(Bundle bundle) {
+        if (bundle == null) {
+            return SubscriptionFilter.ALL;
+        }
+        int[] events = bundle.getIntArray(BleConstants.BLE_MSG_EVENT_FILTER_KEY);
+        long[] msbs = bundle.getLongArray(BleConstants.BLE_MSG_UUID_FILTER_MSB_KEY);
+        long[] lsbs = bundle.getLongArray(BleConstants.BLE_MSG_UUID_FILTER_LSB_KEY);
+        if (events == null || msbs == null || lsbs == null || msbs.length != lsbs.length) {
+            return SubscriptionFilter.ALL;
+        }
+        UUID[] uuids = new UUID[msbs.length];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = new UUID(msbs[i], lsbs[i]);
+        }
+        return SubscriptionFilter.of(events, uuids);
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.captain_miao.android.ble.subscription;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * clients by the events they subscribed, looked up by event id and characteristic uuid
+ * instead of testing the filter of every client. not thread safe, the owner locks.
+ */
+public class SubscriptionIndex<C> {
+    private final Map<C, SubscriptionFilter> mFilters = new HashMap<>();
+    //clients of every event, and of some events by event id
+    private final Recipients<C> mEveryEvent = new Recipients<>();
+    private final Map<Integer, Recipients<C>> mByEvent = new HashMap<>();
+
+    /**
+     * add the client, or replace its filter
+     */
+    public void put(C client, SubscriptionFilter filter) {
+        remove(client);
+        mFilters.put(client, filter);
+        if (filter.isEveryEvent()) {
+            mEveryEvent.add(client, filter);
+            return;
+        }
+        for (Integer event : filter.getEvents()) {
+            Recipients<C> recipients = mByEvent.get(event);
+            if (recipients == null) {
+                recipients = new Recipients<>();
+                mByEvent.put(event, recipients);
+            }
+            recipients.add(client, filter);
+        }
+    }
+
+    public void remove(C client) {
+        SubscriptionFilter filter = mFilters.remove(client);
+        if (filter == null) {
+            return;
+        }
+        if (filter.isEveryEvent()) {
+            mEveryEvent.remove(client, filter);
+            return;
+        }
+        for (Integer event : filter.getEvents()) {
+            Recipients<C> recipients = mByEvent.get(event);
+            if (recipients != null && recipients.remove(client, filter)) {
+                mByEvent.remove(event);
+            }
+        }
+    }
+
+    public boolean contains(C client) {
+        return mFilters.containsKey(client);
+    }
+
+    public SubscriptionFilter getFilter(C client) {
+        return mFilters.get(client);
+    }
+
+    public int size() {
+        return mFilters.size();
+    }
+
+    /**
+     * append the clients of an event to out, each at most once
+     * @param uuid characteristic of the event, null if it has none
+     */
+    public void collect(int event, UUID uuid, List<C> out) {
+        if (SubscriptionFilter.isAlwaysDelivered(event)) {
+            out.addAll(mFilters.keySet());
+            return;
+        }
+        mEveryEvent.collect(uuid, out);
+        Recipients<C> recipients = mByEvent.get(event);
+        if (recipients != null) {
+            recipients.collect(uuid, out);
+        }
+    }
+
+    private static class Recipients<C> {
+        private final List<C> mEveryUuid = new ArrayList<>();
+        //clients with a uuid filter, they still get the events without a uuid
+        private final List<C> mSomeUuids = new ArrayList<>();
+        private final Map<UUID, List<C>> mByUuid = new HashMap<>();
+
+        void add(C client, SubscriptionFilter filter) {
+            if (filter.isEveryUuid()) {
+                mEveryUuid.add(client);
+                return;
+            }
+            mSomeUuids.add(client);
+            for (UUID uuid : filter.getUuids()) {
+                List<C> clients = mByUuid.get(uuid);
+                if (clients == null) {
+                    clients = new ArrayList<>(2);
+                    mByUuid.put(uuid, clients);
+                }
+                clients.add(client);
+            }
+        }
+
+        /**
+         * @return true if nobody is left
+         */
+        boolean remove(C client, SubscriptionFilter filter) {
+            if (filter.isEveryUuid()) {
+                mEveryUuid.remove(client);
+            } else {
+                mSomeUuids.remove(client);
+                for (UUID uuid : filter.getUuids()) {
+                    List<C> clients = mByUuid.get(uuid);
+                    if (clients != null) {
+                        clients.remove(client);
+                        if (clients.isEmpty()) {
+                            mByUuid.remove(uuid);
+                        }
+                    }
+                }
+            }
+            return mEveryUuid.isEmpty() && mSomeUuids.isEmpty();
+        }
+
+        void collect(UUID uuid, List<C> out) {
+            out.addAll(mEveryUuid);
+            if (uuid == null) {
+                out.addAll(mSomeUuids);
+                return;
+            }
+            List<C> clients = mByUuid.get(uuid);
+            if (clients != null) {
+                out.addAll(clients);
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.github.captain_miao.android.ble.transfer;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * pushes a large TransferSource into a PacketSink with a sliding window of packets in flight.
+ * the checkpoint is the count of acknowledged bytes: packets in flight when the link breaks
+ * are kept and sent again first when the transfer is started on the next connection.
+ * a transfer of an earlier process can be resumed by creating it with its last checkpoint.
+ * no android classes are used here, so it runs against a simulated peripheral in JVM tests.
+ */
+public class BulkTransfer {
+    public static final int DEFAULT_WINDOW      = 4;
+    public static final int DEFAULT_PACKET_SIZE = BleConstants.DEFAULT_MTU - BleConstants.ATT_HEADER_SIZE;
+    //BluetoothGatt.GATT_SUCCESS
+    private static final int GATT_SUCCESS = 0;
+
+    private enum State {
+        IDLE,
+        RUNNING,
+        SUSPENDED,
+        COMPLETED
+    }
+
+    private final TransferSource mSource;
+    private final long mLength;
+    private int mWindow = DEFAULT_WINDOW;
+    private long mProgressStep = 0;
+    private TransferListener mListener = null;
+    private Executor mCallbackExecutor = null;
+
+    private State mState = State.IDLE;
+    private int mStatus = GATT_SUCCESS;
+    private PacketSink mSink = null;
+    private int mPacketSize = DEFAULT_PACKET_SIZE;
+    //skipped in the source on the first start
+    private long mSkip;
+
+    //sent but not acknowledged, in order
+    private final LinkedList<byte[]> mInFlight = new LinkedList<>();
+    //acknowledged full-size packets, reused so the transfer does not allocate per packet
+    private final LinkedList<byte[]> mFree = new LinkedList<>();
+    //refused by the sink, offered again first
+    private byte[] mNext = null;
+    //bytes of a broken link, sent again before anything else is read
+    private byte[] mPending = null;
+    private int mPendingOffset = 0;
+
+    private long mAcked;
+    private long mSent;
+    private long mReported;
+    private long mSessionStart;
+    private long mSessionBytes;
+
+    public BulkTransfer(TransferSource source) {
+        this(source, 0);
+    }
+
+    /**
+     * @param checkpoint bytes the peripheral already has from an earlier transfer
+     */
+    public BulkTransfer(TransferSource source, long checkpoint) {
+        this.mSource = source;
+        this.mLength = source.length();
+        this.mSkip = Math.max(0, Math.min(checkpoint, mLength));
+        this.mAcked = mSkip;
+        this.mSent = mSkip;
+        this.mReported = mSkip;
+    }
+
+    /**
+     * max packets in flight
+     */
+    public synchronized BulkTransfer setWindow(int window) {
+        this.mWindow = Math.max(1, window);
+        return this;
+    }
+
+    /**
+     * min acknowledged bytes between two onProgress, 0: one percent of the length
+     */
+    public synchronized BulkTransfer setProgressStep(long bytes) {
+        this.mProgressStep = bytes;
+        return this;
+    }
+
+    public synchronized BulkTransfer setListener(TransferListener listener) {
+        this.mListener = listener;
+        return this;
+    }
+
+    /**
+     * where the listener is called, null: directly on the thread of the acknowledgement
+     */
+    public synchronized BulkTransfer setCallbackExecutor(Executor executor) {
+        this.mCallbackExecutor = executor;
+        return this;
+    }
+
+    public synchronized Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    /**
+     * start, or resume from the checkpoint after suspend()
+     * @param packetSize max bytes of one packet on this link (MTU-3)
+     * @return false if completed already, or not one packet was accepted (the transfer is suspended)
+     */
+    public synchronized boolean start(PacketSink sink, int packetSize) {
+        if (mState == State.RUNNING || mState == State.COMPLETED) {
+            return false;
+        }
+        mSink = sink;
+        mPacketSize = packetSize > 0 ? packetSize : DEFAULT_PACKET_SIZE;
+        mState = State.RUNNING;
+        mStatus = GATT_SUCCESS;
+        mSessionStart = System.nanoTime();
+        mSessionBytes = 0;
+        if (mSkip > 0) {
+            try {
+                mSource.skip(mSkip);
+            } catch (IOException e) {
+                complete(BleConstants.GATT_TRANSFER_SOURCE_ERROR);
+                return false;
+            }
+            mSkip = 0;
+        }
+        pump();
+        if (mState == State.RUNNING && mAcked == mLength) {
+            //empty payload or resumed at the end
+            complete(GATT_SUCCESS);
+            return true;
+        }
+        if (mState == State.RUNNING && mInFlight.isEmpty()) {
+            suspend(BleConstants.GATT_TRANSFER_REFUSED);
+        }
+        return mState == State.RUNNING;
+    }
+
+    /**
+     * the sink finished the oldest packet in flight
+     */
+    public synchronized void onPacketSent(int status) {
+        if (mState != State.RUNNING || mInFlight.isEmpty()) {
+            return;
+        }
+        if (status != GATT_SUCCESS) {
+            suspend(status);
+            return;
+        }
+        byte[] packet = mInFlight.removeFirst();
+        mAcked += packet.length;
+        mSessionBytes += packet.length;
+        if (packet.length == mPacketSize && mFree.size() < mWindow) {
+            mFree.add(packet);
+        }
+        if (mAcked == mLength) {
+            complete(GATT_SUCCESS);
+            return;
+        }
+        reportProgress();
+        pump();
+        if (mState == State.RUNNING && mInFlight.isEmpty()) {
+            //nothing left to wake us up
+            suspend(BleConstants.GATT_TRANSFER_REFUSED);
+        }
+    }
+
+    /**
+     * link lost or the write timed out, the packets in flight count as lost
+     */
+    public synchronized void suspend(int status) {
+        if (mState != State.RUNNING) {
+            return;
+        }
+        int lost = 0;
+        for (byte[] packet : mInFlight) {
+            lost += packet.length;
+        }
+        int next = mNext == null ? 0 : mNext.length;
+        int pending = mPending == null ? 0 : mPending.length - mPendingOffset;
+        if (lost + next > 0) {
+            byte[] resend = new byte[lost + next + pending];
+            int offset = 0;
+            for (byte[] packet : mInFlight) {
+                System.arraycopy(packet, 0, resend, offset, packet.length);
+                offset += packet.length;
+            }
+            if (mNext != null) {
+                System.arraycopy(mNext, 0, resend, offset, next);
+                offset += next;
+            }
+            if (pending > 0) {
+                System.arraycopy(mPending, mPendingOffset, resend, offset, pending);
+            }
+            mPending = resend;
+            mPendingOffset = 0;
+        }
+        mInFlight.clear();
+        mFree.clear();
+        mNext = null;
+        mSent = mAcked;
+        mSink = null;
+        mState = State.SUSPENDED;
+        mStatus = status;
+
+        final TransferListener listener = mListener;
+        final int suspendStatus = status;
+        final long checkpoint = mAcked;
+        if (listener != null) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onSuspended(suspendStatus, checkpoint);
+                }
+            });
+        }
+    }
+
+    public synchronized void cancel() {
+        if (mState != State.COMPLETED) {
+            complete(BleConstants.GATT_TRANSFER_CANCELLED);
+        }
+    }
+
+    /**
+     * bytes acknowledged by the sink, a transfer resumes from here
+     */
+    public synchronized long getCheckpoint() {
+        return mAcked;
+    }
+
+    public long getLength() {
+        return mLength;
+    }
+
+    public synchronized int getInFlight() {
+        return mInFlight.size();
+    }
+
+    /**
+     * status of the suspension or the completion
+     */
+    public synchronized int getStatus() {
+        return mStatus;
+    }
+
+    public synchronized boolean isRunning() {
+        return mState == State.RUNNING;
+    }
+
+    public synchronized boolean isSuspended() {
+        return mState == State.SUSPENDED;
+    }
+
+    public synchronized boolean isCompleted() {
+        return mState == State.COMPLETED;
+    }
+
+    public synchronized long getBytesPerSecond() {
+        long elapsed = (System.nanoTime() - mSessionStart) / 1000000L;
+        return elapsed > 0 ? mSessionBytes * 1000L / elapsed : mSessionBytes * 1000L;
+    }
+
+    /**
+     * fill the window
+     */
+    private void pump() {
+        while (mState == State.RUNNING && mInFlight.size() < mWindow && mSent < mLength) {
+            if (mNext == null) {
+                try {
+                    mNext = readPacket();
+                } catch (IOException e) {
+                    complete(BleConstants.GATT_TRANSFER_SOURCE_ERROR);
+                    return;
+                }
+            }
+            if (!mSink.send(mNext)) {
+                //sink is busy, retry on the next acknowledgement
+                return;
+            }
+            mInFlight.add(mNext);
+            mSent += mNext.length;
+            mNext = null;
+        }
+    }
+
+    private byte[] readPacket() throws IOException {
+        int length = (int) Math.min(mPacketSize, mLength - mSent);
+        byte[] packet = length == mPacketSize && !mFree.isEmpty() ? mFree.removeFirst() : new byte[length];
+        int offset = 0;
+        if (mPending != null) {
+            offset = Math.min(packet.length, mPending.length - mPendingOffset);
+            System.arraycopy(mPending, mPendingOffset, packet, 0, offset);
+            mPendingOffset += offset;
+            if (mPendingOffset == mPending.length) {
+                mPending = null;
+                mPendingOffset = 0;
+            }
+        }
+        while (offset < packet.length) {
+            int read = mSource.read(packet, offset, packet.length - offset);
+            if (read < 0) {
+                throw new IOException("source ends at " + (mSent + offset) + " of " + mLength);
+            }
+            offset += read;
+        }
+        return packet;
+    }
+
+    private void reportProgress() {
+        long step = mProgressStep > 0 ? mProgressStep : mLength / 100;
+        if (mAcked - mReported < step || mListener == null) {
+            return;
+        }
+        mReported = mAcked;
+        final TransferListener listener = mListener;
+        final long bytes = mAcked;
+        final long bytesPerSecond = getBytesPerSecond();
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProgress(bytes, mLength, bytesPerSecond);
+            }
+        });
+    }
+
+    private void complete(int status) {
+        mState = State.COMPLETED;
+        mStatus = status;
+        mInFlight.clear();
+        mNext = null;
+        mPending = null;
+        mSink = null;
+        try {
+            mSource.close();
+        } catch (IOException e) {
+            //nothing to do, the bytes are out
+        }
+
+        final TransferListener listener = mListener;
+        final int completeStatus = status;
+        final long bytes = mAcked;
+        if (listener != null) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    if (completeStatus == GATT_SUCCESS) {
+                        listener.onProgress(bytes, mLength, getBytesPerSecond());
+                    }
+                    listener.onCompleted(completeStatus, bytes);
+                }
+            });
+        }
+    }
+
+    private void dispatch(Runnable runnable) {
+        if (mCallbackExecutor != null) {
+            mCallbackExecutor.execute(runnable);
+        } else {
+            runnable.run();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.captain_miao.android.ble.transfer;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * where a BulkTransfer puts its packets, e.g. a characteristic written without response.
+ * every accepted packet must be answered by one BulkTransfer#onPacketSent.
+ */
+public interface PacketSink {
+
+    /**
+     * the packet is reused after its acknowledgement, copy it if it has to live longer
+     * @return false if the packet was not accepted (stack busy), it is offered again later
+     */
+    boolean send(byte[] packet);
+}
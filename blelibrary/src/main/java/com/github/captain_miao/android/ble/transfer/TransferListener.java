@@ -0,0 +1,26 @@
+package com.github.captain_miao.android.ble.transfer;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * callbacks of a BulkTransfer, run on its callback executor
+ */
+public interface TransferListener {
+
+    /**
+     * @param bytes          bytes acknowledged so far, the checkpoint
+     * @param bytesPerSecond throughput since the transfer was (re)started
+     */
+    void onProgress(long bytes, long total, long bytesPerSecond);
+
+    /**
+     * link lost or a write failed, start the transfer again to resume from the checkpoint
+     */
+    void onSuspended(int status, long checkpoint);
+
+    /**
+     * finished, cancelled or the source failed
+     */
+    void onCompleted(int status, long bytes);
+}
@@ -0,0 +1,131 @@
+package com.github.captain_miao.android.ble.transfer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * bytes of a BulkTransfer, read once from start to end.
+ * packets lost on a broken link are kept by the transfer, so a source never has to rewind.
+ */
+public abstract class TransferSource implements Closeable {
+
+    /**
+     * total bytes of the payload
+     */
+    public abstract long length();
+
+    /**
+     * @return bytes read, -1 at the end of the source
+     */
+    public abstract int read(byte[] buffer, int offset, int count) throws IOException;
+
+    /**
+     * skip bytes already received by the peripheral, when resuming from a checkpoint
+     */
+    public void skip(long count) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(count, 4096)];
+        while (count > 0) {
+            int read = read(buffer, 0, (int) Math.min(count, buffer.length));
+            if (read < 0) {
+                throw new IOException("source ends before the checkpoint");
+            }
+            count -= read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    public static TransferSource fromBytes(byte[] data) {
+        return new ArraySource(data);
+    }
+
+    public static TransferSource fromFile(File file) throws IOException {
+        return new StreamSource(new FileInputStream(file), file.length());
+    }
+
+    /**
+     * @param length bytes to transfer, the stream must hold at least that many
+     */
+    public static TransferSource fromStream(InputStream in, long length) {
+        return new StreamSource(in, length);
+    }
+
+    private static class ArraySource extends TransferSource {
+        private final byte[] mData;
+        private int mPosition = 0;
+
+        ArraySource(byte[] data) {
+            this.mData = data == null ? new byte[0] : data;
+        }
+
+        @Override
+        public long length() {
+            return mData.length;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if (mPosition >= mData.length) {
+                return -1;
+            }
+            int read = Math.min(count, mData.length - mPosition);
+            System.arraycopy(mData, mPosition, buffer, offset, read);
+            mPosition += read;
+            return read;
+        }
+
+        @Override
+        public void skip(long count) throws IOException {
+            if (mPosition + count > mData.length) {
+                throw new IOException("source ends before the checkpoint");
+            }
+            mPosition += (int) count;
+        }
+    }
+
+    private static class StreamSource extends TransferSource {
+        private final InputStream mIn;
+        private final long mLength;
+
+        StreamSource(InputStream in, long length) {
+            this.mIn = in;
+            this.mLength = length;
+        }
+
+        @Override
+        public long length() {
+            return mLength;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            return mIn.read(buffer, offset, count);
+        }
+
+        @Override
+        public void skip(long count) throws IOException {
+            while (count > 0) {
+                long skipped = mIn.skip(count);
+                if (skipped <= 0) {
+                    //skip may refuse on some streams, fall back to reading
+                    super.skip(count);
+                    return;
+                }
+                count -= skipped;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.github.captain_miao.android.ble.utils;
 import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothProfile;
 
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
 import java.lang.reflect.Method;
 
 /**
@@ -85,6 +87,27 @@ public class BleUtils {
             case BluetoothGatt.GATT_FAILURE:
                 return "GATT_FAILURE";
 
+            case BleConstants.GATT_OPERATION_TIMEOUT:
+                return "GATT_OPERATION_TIMEOUT";
+
+            case BleConstants.GATT_TRANSFER_SOURCE_ERROR:
+                return "GATT_TRANSFER_SOURCE_ERROR";
+
+            case BleConstants.GATT_TRANSFER_CANCELLED:
+                return "GATT_TRANSFER_CANCELLED";
+
+            case BleConstants.GATT_TRANSFER_REFUSED:
+                return "GATT_TRANSFER_REFUSED";
+
+            case BleConstants.GATT_REQUEST_CANCELLED:
+                return "GATT_REQUEST_CANCELLED";
+
+            case BleConstants.GATT_REQUEST_NOT_SENT:
+                return "GATT_REQUEST_NOT_SENT";
+
+            case BleConstants.GATT_REQUEST_PENDING:
+                return "GATT_REQUEST_PENDING";
+
             default:
                 return "STATE_UNKNOWN: " + status;
         }
@@ -0,0 +1,52 @@
+package com.github.captain_miao.android.ble.utils;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * a device address "AA:BB:CC:DD:EE:FF" as the low 48 bits of a long,
+ * for the notification ring and batches which carry primitives only.
+ */
+public class MacAddressCodec {
+    //no address, a real one never has the high bits set
+    public static final long NONE = -1;
+
+    /**
+     * @return NONE for null or a malformed address
+     */
+    public static long toLong(String address) {
+        if (address == null || address.length() != 17) {
+            return NONE;
+        }
+        long value = 0;
+        for (int i = 0; i < 6; i++) {
+            int high = Character.digit(address.charAt(i * 3), 16);
+            int low = Character.digit(address.charAt(i * 3 + 1), 16);
+            if (high < 0 || low < 0 || (i < 5 && address.charAt(i * 3 + 2) != ':')) {
+                return NONE;
+            }
+            value = (value << 8) | (high << 4) | low;
+        }
+        return value;
+    }
+
+    /**
+     * @return the upper case address, null for NONE
+     */
+    public static String toString(long value) {
+        if (value < 0) {
+            return null;
+        }
+        char[] chars = new char[17];
+        for (int i = 5; i >= 0; i--) {
+            int b = (int) (value & 0xff);
+            value >>>= 8;
+            chars[i * 3] = Character.toUpperCase(Character.forDigit(b >> 4, 16));
+            chars[i * 3 + 1] = Character.toUpperCase(Character.forDigit(b & 0xf, 16));
+            if (i < 5) {
+                chars[i * 3 + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+}
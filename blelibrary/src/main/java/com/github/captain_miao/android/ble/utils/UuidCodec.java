@@ -0,0 +1,70 @@
+package com.github.captain_miao.android.ble.utils;
+
+import android.os.Bundle;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * UUIDs in the service/client messages as two longs instead of a Serializable,
+ * which goes through java serialization on every parcel.
+ * the Serializable is only added for clients of protocol version 1.
+ */
+public class UuidCodec {
+
+    public static void putUuid(Bundle bundle, String key, UUID uuid) {
+        putUuid(bundle, key, uuid, false);
+    }
+
+    /**
+     * @param legacy also put the Serializable for a peer of protocol version 1
+     */
+    public static void putUuid(Bundle bundle, String key, UUID uuid, boolean legacy) {
+        if (uuid != null) {
+            UuidLongs.putUuid(new BundleEntries(bundle), key, uuid, legacy);
+        }
+    }
+
+    /**
+     * @return the uuid of either encoding, null if there is none
+     */
+    public static UUID getUuid(Bundle bundle, String key) {
+        return bundle == null ? null : UuidLongs.getUuid(new BundleEntries(bundle), key);
+    }
+
+    private static class BundleEntries implements UuidLongs.Entries {
+        private final Bundle mBundle;
+
+        BundleEntries(Bundle bundle) {
+            this.mBundle = bundle;
+        }
+
+        @Override
+        public void putLong(String key, long value) {
+            mBundle.putLong(key, value);
+        }
+
+        @Override
+        public long getLong(String key) {
+            return mBundle.getLong(key);
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return mBundle.containsKey(key);
+        }
+
+        @Override
+        public void putSerializable(String key, Serializable value) {
+            mBundle.putSerializable(key, value);
+        }
+
+        @Override
+        public Serializable getSerializable(String key) {
+            return mBundle.getSerializable(key);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.captain_miao.android.ble.utils;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * the encoding of UuidCodec on any key/value store: two longs, plus the Serializable for a legacy peer.
+ * kept free of android classes so it runs on the jvm.
+ */
+class UuidLongs {
+    private static final String MSB_SUFFIX = "_msb";
+    private static final String LSB_SUFFIX = "_lsb";
+
+    static void putUuid(Entries entries, String key, UUID uuid, boolean legacy) {
+        if (uuid == null) {
+            return;
+        }
+        entries.putLong(key + MSB_SUFFIX, uuid.getMostSignificantBits());
+        entries.putLong(key + LSB_SUFFIX, uuid.getLeastSignificantBits());
+        if (legacy) {
+            entries.putSerializable(key, uuid);
+        }
+    }
+
+    static UUID getUuid(Entries entries, String key) {
+        String msbKey = key + MSB_SUFFIX;
+        if (entries.containsKey(msbKey)) {
+            return new UUID(entries.getLong(msbKey), entries.getLong(key + LSB_SUFFIX));
+        }
+        Serializable uuid = entries.getSerializable(key);
+        return uuid instanceof UUID ? (UUID) uuid : null;
+    }
+
+    //the Bundle methods the codec uses, tests run it on a map
+    interface Entries {
+        void putLong(String key, long value);
+
+        long getLong(String key);
+
+        boolean containsKey(String key);
+
+        void putSerializable(String key, Serializable value);
+
+        Serializable getSerializable(String key);
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.captain_miao.android.ble.batch;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class NotificationBatchTest {
+    private static final UUID UUID_A = UUID.fromString("0000fff1-0000-1000-8000-00805f9b34fb");
+    private static final UUID UUID_B = UUID.fromString("0000fff2-0000-1000-8000-00805f9b34fb");
+
+    @Test
+    public void groupsByCharacteristicInOrderOfFirstFrame() {
+        NotificationBatch batch = new NotificationBatch(0);
+        batch.add(UUID_B, new byte[]{1}, 10);
+        batch.add(UUID_A, new byte[]{2}, 20);
+        batch.add(UUID_B, new byte[]{3}, 30);
+
+        List<NotificationBatch.Frames> frames = batch.drain();
+        assertEquals(2, frames.size());
+        assertEquals(UUID_B, frames.get(0).getUuid());
+        assertEquals(2, frames.get(0).size());
+        assertArrayEquals(new byte[]{3}, frames.get(0).getValues().get(1));
+        assertArrayEquals(new long[]{10, 30}, frames.get(0).getTimestamps());
+        assertEquals(UUID_A, frames.get(1).getUuid());
+        assertArrayEquals(new long[]{20}, frames.get(1).getTimestamps());
+    }
+
+    @Test
+    public void sameCharacteristicOfTwoDevicesIsKeptApart() {
+        NotificationBatch batch = new NotificationBatch(0);
+        batch.add("AA:BB:CC:DD:EE:01", UUID_A, new byte[]{1}, 10);
+        batch.add("AA:BB:CC:DD:EE:02", UUID_A, new byte[]{2}, 20);
+        batch.add("AA:BB:CC:DD:EE:01", UUID_A, new byte[]{3}, 30);
+
+        List<NotificationBatch.Frames> frames = batch.drain();
+        assertEquals(2, frames.size());
+        assertEquals("AA:BB:CC:DD:EE:01", frames.get(0).getAddress());
+        assertArrayEquals(new long[]{10, 30}, frames.get(0).getTimestamps());
+        assertEquals("AA:BB:CC:DD:EE:02", frames.get(1).getAddress());
+        assertEquals(UUID_A, frames.get(1).getUuid());
+    }
+
+    @Test
+    public void fullAfterMaxFrames() {
+        NotificationBatch batch = new NotificationBatch(3);
+        assertFalse(batch.add(UUID_A, new byte[0], 1));
+        assertFalse(batch.add(UUID_B, new byte[0], 2));
+        assertTrue(batch.add(UUID_A, new byte[0], 3));
+        assertEquals(3, batch.size());
+    }
+
+    @Test
+    public void neverFullWithoutLimit() {
+        NotificationBatch batch = new NotificationBatch(0);
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(batch.add(UUID_A, new byte[]{(byte) i}, i));
+        }
+        NotificationBatch.Frames frames = batch.drain().get(0);
+        assertEquals(1000, frames.getTimestamps().length);
+        assertEquals(999, frames.getTimestamps()[999]);
+    }
+
+    @Test
+    public void drainEmptiesTheBatch() {
+        NotificationBatch batch = new NotificationBatch(2);
+        batch.add(UUID_A, new byte[]{1}, 1);
+        batch.drain();
+
+        assertTrue(batch.isEmpty());
+        assertTrue(batch.drain().isEmpty());
+        assertFalse(batch.add(UUID_A, new byte[]{2}, 2));
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.captain_miao.android.ble.flow;
+
+import com.github.captain_miao.android.ble.constant.OverflowPolicy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class OutboundQueueTest {
+
+    private static List<String> drain(OutboundQueue<String> queue) {
+        List<String> sent = new ArrayList<>();
+        String item;
+        while ((item = queue.poll()) != null) {
+            sent.add(item);
+        }
+        return sent;
+    }
+
+    @Test
+    public void windowLimitsItemsInFlight() {
+        OutboundQueue<String> queue = new OutboundQueue<>(10, 2, OverflowPolicy.DROP_OLDEST);
+        queue.offer("a", null, true);
+        queue.offer("b", null, true);
+        queue.offer("c", null, true);
+
+        assertEquals(Arrays.asList("a", "b"), drain(queue));
+        assertEquals(2, queue.getInFlight());
+        queue.ack(1);
+        assertEquals(Arrays.asList("c"), drain(queue));
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewest() {
+        OutboundQueue<String> queue = new OutboundQueue<>(2, 1, OverflowPolicy.DROP_OLDEST);
+        queue.offer("in flight", null, true);
+        queue.poll();
+        queue.offer("a", null, true);
+        queue.offer("b", null, true);
+
+        assertFalse(queue.offer("c", null, true));
+        assertEquals(1, queue.getDropped());
+        queue.ack(1);
+        assertEquals(Arrays.asList("b"), drain(queue));
+        queue.ack(1);
+        assertEquals(Arrays.asList("c"), drain(queue));
+    }
+
+    @Test
+    public void dropNewestKeepsTheQueued() {
+        OutboundQueue<String> stalled = new OutboundQueue<>(2, 1, OverflowPolicy.DROP_NEWEST);
+        stalled.offer("in flight", null, true);
+        stalled.poll();
+        stalled.offer("a", null, true);
+        stalled.offer("b", null, true);
+
+        assertFalse(stalled.offer("c", null, true));
+        assertEquals(1, stalled.getDropped());
+        assertEquals(2, stalled.size());
+        stalled.ack(10);
+        assertEquals(Arrays.asList("a"), drain(stalled));
+    }
+
+    @Test
+    public void coalesceKeepsLatestPerKey() {
+        OutboundQueue<String> queue = new OutboundQueue<>(10, 1, OverflowPolicy.COALESCE_LATEST);
+        queue.offer("in flight", null, true);
+        queue.poll();
+        queue.offer("a1", "a", true);
+        queue.offer("b1", "b", true);
+        queue.offer("a2", "a", true);
+        queue.offer("a3", "a", true);
+
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getCoalesced());
+        assertEquals(0, queue.getDropped());
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            queue.ack(1);
+            sent.addAll(drain(queue));
+        }
+        assertEquals(Arrays.asList("a3", "b1"), sent);
+    }
+
+    @Test
+    public void keysOnlyCoalesceUnderCoalescePolicy() {
+        OutboundQueue<String> queue = new OutboundQueue<>(10, 1, OverflowPolicy.DROP_OLDEST);
+        queue.offer("in flight", null, true);
+        queue.poll();
+        queue.offer("a1", "a", true);
+        queue.offer("a2", "a", true);
+
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void mandatoryItemsAreNeverDropped() {
+        OutboundQueue<String> queue = new OutboundQueue<>(1, 1, OverflowPolicy.DROP_OLDEST);
+        queue.offer("in flight", null, true);
+        queue.poll();
+        queue.offer("state", null, false);
+        queue.offer("a", null, true);
+        assertFalse(queue.offer("b", null, true));
+
+        queue.ack(1);
+        assertEquals(Arrays.asList("state"), drain(queue));
+        queue.ack(1);
+        assertEquals(Arrays.asList("b"), drain(queue));
+        assertEquals(1, queue.getDropped());
+    }
+
+    @Test
+    public void mandatoryItemsWithKeyAreCoalesced() {
+        OutboundQueue<String> queue = new OutboundQueue<>(1, 1, OverflowPolicy.DROP_NEWEST);
+        queue.offer("in flight", null, true);
+        queue.poll();
+
+        assertTrue(queue.offer("wakeup", "wakeup", false));
+        assertTrue(queue.offer("wakeup", "wakeup", false));
+        assertEquals(1, queue.size());
+        queue.ack(1);
+        assertEquals(Arrays.asList("wakeup"), drain(queue));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void requestRepliesSurviveAFullWindow() {
+        for (OverflowPolicy policy : new OverflowPolicy[]{OverflowPolicy.DROP_OLDEST, OverflowPolicy.DROP_NEWEST}) {
+            OutboundQueue<String> queue = new OutboundQueue<>(2, 1, policy);
+            queue.offer("in flight", null, true);
+            queue.poll();
+            queue.offer("n1", null, true);
+            queue.offer("n2", null, true);
+
+            assertTrue(queue.offer("reply", null, false));
+            assertFalse(queue.offer("n3", null, true));
+            List<String> sent = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                queue.ack(1);
+                sent.addAll(drain(queue));
+            }
+            assertTrue(policy.name(), sent.contains("reply"));
+        }
+    }
+}
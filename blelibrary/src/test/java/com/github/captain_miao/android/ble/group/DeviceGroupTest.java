@@ -0,0 +1,87 @@
+package com.github.captain_miao.android.ble.group;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+import com.github.captain_miao.android.ble.request.BleRequest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class DeviceGroupTest {
+    private static final String A = "AA:BB:CC:DD:EE:01";
+    private static final String B = "AA:BB:CC:DD:EE:02";
+    private static final String C = "AA:BB:CC:DD:EE:03";
+
+    //keeps the request of every device to finish it later
+    private static class Devices implements DeviceGroup.Issuer {
+        final Map<String, BleRequest<Void>> requests = new LinkedHashMap<>();
+
+        @Override
+        public BleRequest<?> issue(String address) {
+            BleRequest<Void> request = new BleRequest<>(requests.size() + 1);
+            requests.put(address, request);
+            return request;
+        }
+    }
+
+    @Test
+    public void everyDeviceIsStartedBeforeAnyResult() throws Exception {
+        Devices devices = new Devices();
+        BleRequest<GroupResult> group = DeviceGroup.of(A, B, C).fanOut(devices);
+
+        assertEquals(Arrays.asList(A, B, C), Arrays.asList(devices.requests.keySet().toArray()));
+        devices.requests.get(B).complete(null);
+        devices.requests.get(A).fail(133);
+        assertFalse(group.isDone());
+        devices.requests.get(C).complete(null);
+
+        GroupResult result = group.get();
+        assertEquals(0, result.getStatus(B));
+        assertEquals(133, result.getStatus(A));
+        assertEquals(Arrays.asList(A), result.getFailed());
+        assertFalse(result.isAllSucceeded());
+        assertTrue(result.getLatencyMillis(C) >= 0);
+        assertEquals(-1, result.getLatencyMillis("AA:BB:CC:DD:EE:04"));
+    }
+
+    @Test
+    public void groupIsReused() throws Exception {
+        DeviceGroup group = DeviceGroup.of(A, B, A);
+        assertEquals(2, group.size());
+        for (int i = 0; i < 2; i++) {
+            Devices devices = new Devices();
+            BleRequest<GroupResult> request = group.fanOut(devices);
+            for (BleRequest<Void> device : devices.requests.values()) {
+                device.complete(null);
+            }
+            assertTrue(request.get().isAllSucceeded());
+        }
+    }
+
+    @Test
+    public void cancelCancelsTheRunningRequests() {
+        Devices devices = new Devices();
+        BleRequest<GroupResult> group = DeviceGroup.of(A, B).fanOut(devices);
+        devices.requests.get(A).complete(null);
+
+        group.cancel(false);
+
+        assertEquals(0, devices.requests.get(A).getStatus());
+        assertEquals(BleConstants.GATT_REQUEST_CANCELLED, devices.requests.get(B).getStatus());
+    }
+
+    @Test
+    public void emptyGroupIsDoneAtOnce() {
+        assertTrue(new DeviceGroup(Arrays.<String>asList()).fanOut(new Devices()).isDone());
+    }
+}
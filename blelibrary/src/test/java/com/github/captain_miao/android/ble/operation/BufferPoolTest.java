@@ -0,0 +1,71 @@
+package com.github.captain_miao.android.ble.operation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class BufferPoolTest {
+
+    @Test
+    public void reusesBuffersOfTheSameLength() {
+        BufferPool pool = new BufferPool();
+        byte[] first = pool.acquire(20);
+        pool.release(first);
+
+        assertSame(first, pool.acquire(20));
+        assertEquals(1, pool.getAllocations());
+    }
+
+    @Test
+    public void lengthsAreSeparateClasses() {
+        BufferPool pool = new BufferPool();
+        byte[] small = pool.acquire(20);
+        pool.release(small);
+
+        byte[] other = pool.acquire(19);
+        assertEquals(19, other.length);
+        assertNotSame(small, other);
+    }
+
+    @Test
+    public void steadyStateWritesDoNotAllocate() {
+        BufferPool pool = new BufferPool();
+        byte[] payload = new byte[244 * 4];
+        for (int round = 0; round < 1000; round++) {
+            byte[][] queued = new byte[4][];
+            for (int i = 0; i < queued.length; i++) {
+                queued[i] = pool.copyOf(payload, i * 244, 244);
+            }
+            for (byte[] buffer : queued) {
+                pool.release(buffer);
+            }
+        }
+        assertEquals(4, pool.getAllocations());
+    }
+
+    @Test
+    public void snapshotIsIndependentOfTheCaller() {
+        BufferPool pool = new BufferPool();
+        byte[] value = {1, 2, 3, 4};
+        byte[] snapshot = pool.copyOf(value, 1, 2);
+        value[1] = 9;
+
+        assertArrayEquals(new byte[]{2, 3}, snapshot);
+    }
+
+    @Test
+    public void largeBuffersAreNotPooled() {
+        BufferPool pool = new BufferPool(64, 2);
+        byte[] large = pool.acquire(65);
+        pool.release(large);
+
+        assertNotSame(large, pool.acquire(65));
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.captain_miao.android.ble.poll;
+
+import com.github.captain_miao.android.ble.request.BleRequest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class PollSchedulerTest {
+    private static final String A = "AA:BB:CC:DD:EE:01";
+    private static final String B = "AA:BB:CC:DD:EE:02";
+    private static final UUID SERVICE = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final UUID BATTERY = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+    private static final UUID TEMPERATURE = UUID.fromString("00002a6e-0000-1000-8000-00805f9b34fb");
+
+    //runs the delayed tasks when the test says so, regardless of their delay
+    private static class ManualScheduler implements BleRequest.Scheduler {
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Long> delays = new ArrayList<>();
+
+        @Override
+        public boolean postDelayed(Runnable runnable, long delayMillis) {
+            tasks.add(runnable);
+            delays.add(delayMillis);
+            return true;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            int index;
+            while ((index = tasks.indexOf(runnable)) >= 0) {
+                tasks.remove(index);
+                delays.remove(index);
+            }
+        }
+
+        void tick() {
+            List<Runnable> due = new ArrayList<>(tasks);
+            tasks.clear();
+            delays.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+
+    //the reads sent to the devices, finished by the test
+    private static class Link implements PollScheduler.Reader {
+        final List<String> addresses = new ArrayList<>();
+        final List<UUID> characteristics = new ArrayList<>();
+        final List<BleRequest<byte[]>> requests = new ArrayList<>();
+
+        @Override
+        public BleRequest<byte[]> read(String address, UUID serviceUUID, UUID characteristicUUID) {
+            BleRequest<byte[]> request = new BleRequest<>(requests.size() + 1);
+            addresses.add(address);
+            characteristics.add(characteristicUUID);
+            requests.add(request);
+            return request;
+        }
+
+        void answer(int index) {
+            requests.get(index).complete(new byte[]{(byte) index});
+        }
+    }
+
+    private static class Recorder extends PollScheduler.Listener {
+        final List<Long> periods = new ArrayList<>();
+        int values = 0;
+        int missed = 0;
+
+        @Override
+        public void onValue(PollTask task, byte[] value) {
+            values++;
+        }
+
+        @Override
+        public void onMissed(PollTask task) {
+            missed++;
+        }
+
+        @Override
+        public void onPeriodChanged(PollTask task, long periodMillis) {
+            periods.add(periodMillis);
+        }
+    }
+
+    @Test
+    public void readsOfOneDeviceTakeTurns() {
+        ManualScheduler scheduler = new ManualScheduler();
+        Link link = new Link();
+        PollScheduler poll = new PollScheduler(scheduler, link);
+        Recorder recorder = new Recorder();
+        poll.add(A, SERVICE, BATTERY, 1000, recorder);
+        poll.add(A, SERVICE, TEMPERATURE, 100, recorder);
+
+        scheduler.tick();
+        assertEquals(1, link.requests.size());
+        assertEquals(BATTERY, link.characteristics.get(0));
+
+        link.answer(0);
+        assertEquals(2, link.requests.size());
+        assertEquals(TEMPERATURE, link.characteristics.get(1));
+        assertEquals(1, recorder.values);
+        assertTrue(scheduler.delays.contains(1000L));
+        assertTrue(scheduler.delays.contains(100L));
+    }
+
+    @Test
+    public void devicesDoNotWaitForEachOther() {
+        ManualScheduler scheduler = new ManualScheduler();
+        Link link = new Link();
+        PollScheduler poll = new PollScheduler(scheduler, link);
+        poll.add(A, SERVICE, BATTERY, 1000, new Recorder());
+        poll.add(B, SERVICE, BATTERY, 1000, new Recorder());
+
+        scheduler.tick();
+
+        assertEquals(2, link.requests.size());
+        assertTrue(link.addresses.contains(A));
+        assertTrue(link.addresses.contains(B));
+    }
+
+    @Test
+    public void missedDeadlinesSlowDownAndOnTimeReadsRecover() {
+        ManualScheduler scheduler = new ManualScheduler();
+        Link link = new Link();
+        PollScheduler poll = new PollScheduler(scheduler, link);
+        Recorder recorder = new Recorder();
+        PollTask task = poll.add(A, SERVICE, TEMPERATURE, 100, recorder);
+
+        scheduler.tick();
+        //the link is slow, two deadlines pass during the first read
+        scheduler.tick();
+        scheduler.tick();
+        assertEquals(2, recorder.missed);
+        assertEquals(2, task.getMissed());
+        assertEquals(400, task.getPeriodMillis());
+
+        link.answer(0);
+        for (int i = 1; i <= PollScheduler.RECOVER_AFTER; i++) {
+            scheduler.tick();
+            link.answer(i);
+        }
+        assertEquals(200, task.getPeriodMillis());
+        for (int i = 0; i < PollScheduler.RECOVER_AFTER * 2; i++) {
+            scheduler.tick();
+            link.answer(link.requests.size() - 1);
+        }
+        assertEquals(100, task.getPeriodMillis());
+        assertEquals(Arrays.asList(200L, 400L, 200L, 100L), recorder.periods);
+    }
+
+    @Test
+    public void backoffIsBounded() {
+        ManualScheduler scheduler = new ManualScheduler();
+        PollScheduler poll = new PollScheduler(scheduler, new Link());
+        PollTask task = poll.add(A, SERVICE, TEMPERATURE, 100, new Recorder());
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.tick();
+        }
+
+        assertEquals(100 * PollScheduler.MAX_BACKOFF, task.getPeriodMillis());
+    }
+
+    @Test
+    public void removedTaskStops() {
+        ManualScheduler scheduler = new ManualScheduler();
+        Link link = new Link();
+        PollScheduler poll = new PollScheduler(scheduler, link);
+        Recorder recorder = new Recorder();
+        PollTask battery = poll.add(A, SERVICE, BATTERY, 1000, recorder);
+        poll.add(A, SERVICE, TEMPERATURE, 100, recorder);
+        scheduler.tick();
+
+        poll.remove(battery);
+        link.answer(0);
+
+        assertEquals(0, recorder.values);
+        //the other task of the device gets its turn
+        assertEquals(2, link.requests.size());
+        poll.removeAll();
+        assertTrue(scheduler.tasks.isEmpty());
+        assertTrue(poll.getTasks().isEmpty());
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.captain_miao.android.ble.pool;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class ConnectionPoolTest {
+
+    //idle unless marked busy
+    private static class Busy implements ConnectionPool.IdleCheck {
+        final Set<String> addresses = new HashSet<>();
+
+        @Override
+        public boolean isIdle(String address) {
+            return !addresses.contains(address);
+        }
+    }
+
+    @Test
+    public void admitsWithoutEvictionBelowTheLimit() {
+        ConnectionPool pool = new ConnectionPool(2);
+        Busy busy = new Busy();
+
+        assertTrue(pool.admit("A", busy).isEmpty());
+        assertTrue(pool.admit("B", busy).isEmpty());
+        assertTrue(pool.admit("A", busy).isEmpty());
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() {
+        ConnectionPool pool = new ConnectionPool(2);
+        Busy busy = new Busy();
+        pool.admit("A", busy);
+        pool.admit("B", busy);
+        pool.touch("A");
+
+        assertEquals(Arrays.asList("B"), pool.admit("C", busy));
+        assertTrue(pool.isEvicted("B"));
+        assertFalse(pool.contains("B"));
+        assertEquals(1, pool.getEvictions());
+    }
+
+    @Test
+    public void busyConnectionsAreSkipped() {
+        ConnectionPool pool = new ConnectionPool(2);
+        Busy busy = new Busy();
+        pool.admit("A", busy);
+        pool.admit("B", busy);
+        busy.addresses.add("A");
+
+        assertEquals(Arrays.asList("B"), pool.admit("C", busy));
+        busy.addresses.add("C");
+        assertNull(pool.admit("D", busy));
+        assertFalse(pool.contains("D"));
+    }
+
+    @Test
+    public void evictedConnectionIsAdmittedAgain() {
+        ConnectionPool pool = new ConnectionPool(1);
+        Busy busy = new Busy();
+        pool.admit("A", busy);
+        pool.admit("B", busy);
+
+        List<String> victims = pool.admit("A", busy);
+        assertEquals(Arrays.asList("B"), victims);
+        assertFalse(pool.isEvicted("A"));
+        assertTrue(pool.isEvicted("B"));
+    }
+
+    @Test
+    public void refusedConnectionStaysEvicted() {
+        ConnectionPool pool = new ConnectionPool(1);
+        Busy busy = new Busy();
+        pool.admit("A", busy);
+        pool.admit("B", busy);
+        busy.addresses.add("B");
+
+        assertNull(pool.admit("A", busy));
+        assertTrue(pool.isEvicted("A"));
+        assertFalse(pool.contains("A"));
+    }
+
+    @Test
+    public void smallerLimitEvictsSeveral() {
+        ConnectionPool pool = new ConnectionPool(3);
+        Busy busy = new Busy();
+        pool.admit("A", busy);
+        pool.admit("B", busy);
+        pool.admit("C", busy);
+        pool.setMaxConnections(2);
+
+        assertEquals(Arrays.asList("A", "B"), pool.admit("D", busy));
+    }
+
+    @Test
+    public void removedConnectionIsNotEvicted() {
+        ConnectionPool pool = new ConnectionPool(1);
+        Busy busy = new Busy();
+        pool.admit("A", busy);
+        pool.admit("B", busy);
+        pool.remove("A");
+
+        assertFalse(pool.isEvicted("A"));
+        assertEquals(1, pool.size());
+    }
+}
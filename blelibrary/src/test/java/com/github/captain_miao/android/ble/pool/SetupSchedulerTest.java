@@ -0,0 +1,54 @@
+package com.github.captain_miao.android.ble.pool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class SetupSchedulerTest {
+
+    @Test
+    public void oneSetupAtATimeInOrder() {
+        SetupScheduler<String> scheduler = new SetupScheduler<>();
+
+        assertTrue(scheduler.submit("A"));
+        assertFalse(scheduler.submit("B"));
+        assertFalse(scheduler.submit("C"));
+        assertEquals(2, scheduler.getWaitingCount());
+
+        assertEquals("B", scheduler.finish("A"));
+        assertTrue(scheduler.isActive("B"));
+        assertEquals("C", scheduler.finish("B"));
+        assertNull(scheduler.finish("C"));
+        assertTrue(scheduler.submit("D"));
+    }
+
+    @Test
+    public void resubmitKeepsTheTurn() {
+        SetupScheduler<String> scheduler = new SetupScheduler<>();
+        scheduler.submit("A");
+        scheduler.submit("B");
+
+        assertTrue(scheduler.submit("A"));
+        assertFalse(scheduler.submit("B"));
+        assertEquals(1, scheduler.getWaitingCount());
+    }
+
+    @Test
+    public void waitingItemCanLeave() {
+        SetupScheduler<String> scheduler = new SetupScheduler<>();
+        scheduler.submit("A");
+        scheduler.submit("B");
+        scheduler.submit("C");
+
+        assertNull(scheduler.finish("B"));
+        assertFalse(scheduler.isWaiting("B"));
+        assertEquals("C", scheduler.finish("A"));
+    }
+}
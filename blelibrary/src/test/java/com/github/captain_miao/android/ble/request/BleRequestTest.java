@@ -0,0 +1,168 @@
+package com.github.captain_miao.android.ble.request;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class BleRequestTest {
+
+    //runs the delayed tasks when the test says so
+    private static class ManualScheduler implements BleRequest.Scheduler {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public boolean postDelayed(Runnable runnable, long delayMillis) {
+            tasks.add(runnable);
+            return true;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            tasks.remove(runnable);
+        }
+
+        void runAll() {
+            for (Runnable task : new ArrayList<>(tasks)) {
+                task.run();
+            }
+            tasks.clear();
+        }
+    }
+
+    private static class Recorder<T> implements BleRequest.Callback<T> {
+        final List<Object> results = new ArrayList<>();
+
+        @Override
+        public void onSuccess(T result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onFailure(int status) {
+            results.add("failed " + status);
+        }
+    }
+
+    @Test
+    public void completeCallsCallbacksOnce() throws Exception {
+        BleRequest<String> request = new BleRequest<>(1);
+        Recorder<String> recorder = new Recorder<>();
+        request.addCallback(recorder);
+
+        assertTrue(request.complete("a"));
+        assertFalse(request.complete("b"));
+        assertFalse(request.fail(133));
+
+        assertEquals(1, recorder.results.size());
+        assertEquals("a", recorder.results.get(0));
+        assertEquals("a", request.get());
+        assertEquals(0, request.getStatus());
+    }
+
+    @Test
+    public void callbackOfDoneRequestRunsAtOnce() {
+        BleRequest<String> request = BleRequest.failed(BleConstants.GATT_REQUEST_NOT_SENT);
+        Recorder<String> recorder = new Recorder<>();
+        request.addCallback(recorder);
+
+        assertEquals("failed " + BleConstants.GATT_REQUEST_NOT_SENT, recorder.results.get(0));
+    }
+
+    @Test
+    public void getThrowsTheStatusOfAFailure() throws Exception {
+        BleRequest<byte[]> request = new BleRequest<>(1);
+        request.fail(133);
+        try {
+            request.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(133, ((BleRequestException) e.getCause()).getStatus());
+        }
+    }
+
+    @Test
+    public void thenChainsTheNextRequest() throws Exception {
+        BleRequest<Void> write = new BleRequest<>(1);
+        final BleRequest<byte[]> read = new BleRequest<>(2);
+        BleRequest<byte[]> chain = write.then(new BleRequest.Continuation<Void, byte[]>() {
+            @Override
+            public BleRequest<byte[]> then(Void result) {
+                return read;
+            }
+        });
+
+        write.complete(null);
+        assertFalse(chain.isDone());
+        read.complete(new byte[]{1, 2});
+
+        assertArrayEquals(new byte[]{1, 2}, chain.get());
+    }
+
+    @Test
+    public void failureSkipsTheRestOfTheChain() {
+        BleRequest<Void> write = new BleRequest<>(1);
+        final boolean[] called = {false};
+        BleRequest<byte[]> chain = write.then(new BleRequest.Continuation<Void, byte[]>() {
+            @Override
+            public BleRequest<byte[]> then(Void result) {
+                called[0] = true;
+                return new BleRequest<>(2);
+            }
+        });
+
+        write.fail(BleConstants.GATT_OPERATION_TIMEOUT);
+
+        assertFalse(called[0]);
+        assertEquals(BleConstants.GATT_OPERATION_TIMEOUT, chain.getStatus());
+    }
+
+    @Test
+    public void timeoutFailsAPendingRequest() {
+        ManualScheduler scheduler = new ManualScheduler();
+        BleRequest<byte[]> request = new BleRequest<byte[]>(1).timeout(scheduler, 1000);
+        assertEquals(1, scheduler.tasks.size());
+
+        scheduler.runAll();
+
+        assertEquals(BleConstants.GATT_OPERATION_TIMEOUT, request.getStatus());
+        //the late result is ignored
+        assertFalse(request.complete(new byte[]{1}));
+    }
+
+    @Test
+    public void resultRemovesTheTimeout() throws Exception {
+        ManualScheduler scheduler = new ManualScheduler();
+        BleRequest<byte[]> request = new BleRequest<byte[]>(1).timeout(scheduler, 1000);
+
+        request.complete(null);
+
+        assertTrue(scheduler.tasks.isEmpty());
+        assertNull(request.get());
+    }
+
+    @Test
+    public void cancelFailsWithCancelled() {
+        BleRequest<byte[]> request = new BleRequest<>(1);
+
+        assertTrue(request.cancel(false));
+
+        assertTrue(request.isCancelled());
+        assertEquals(BleConstants.GATT_REQUEST_CANCELLED, request.getStatus());
+    }
+}
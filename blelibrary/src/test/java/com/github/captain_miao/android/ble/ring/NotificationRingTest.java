@@ -0,0 +1,177 @@
+package com.github.captain_miao.android.ble.ring;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class NotificationRingTest {
+    private static final UUID UUID_A = UUID.fromString("0000fff1-0000-1000-8000-00805f9b34fb");
+    private static final UUID UUID_B = UUID.fromString("0000fff2-0000-1000-8000-00805f9b34fb");
+
+    private static ByteBuffer buffer(int slots, int slotSize) {
+        return ByteBuffer.allocateDirect(NotificationRing.bufferSize(slots, slotSize));
+    }
+
+    @Test
+    public void readerGetsFramesInOrder() throws IOException {
+        ByteBuffer buffer = buffer(8, 20);
+        NotificationRingWriter writer = new NotificationRingWriter(buffer, 8, 20);
+        NotificationRingReader reader = NotificationRingReader.open(buffer);
+        Recorder recorder = new Recorder();
+
+        writer.write(UUID_A, new byte[]{1, 2, 3});
+        writer.write(UUID_B, new byte[0]);
+        writer.write(UUID_A, new byte[]{4});
+
+        assertEquals(3, reader.poll(recorder));
+        assertEquals(UUID_A, recorder.uuids.get(0));
+        assertEquals(UUID_B, recorder.uuids.get(1));
+        assertArrayEquals(new byte[]{1, 2, 3}, recorder.values.get(0));
+        assertArrayEquals(new byte[0], recorder.values.get(1));
+        assertArrayEquals(new byte[]{4}, recorder.values.get(2));
+        assertEquals(0, recorder.lost);
+        assertEquals(0, reader.poll(recorder));
+    }
+
+    @Test
+    public void readersHaveTheirOwnPosition() throws IOException {
+        ByteBuffer buffer = buffer(8, 20);
+        NotificationRingWriter writer = new NotificationRingWriter(buffer, 8, 20);
+        NotificationRingReader first = NotificationRingReader.open(buffer);
+        writer.write(UUID_A, new byte[]{1});
+        NotificationRingReader second = NotificationRingReader.open(buffer);
+        writer.write(UUID_A, new byte[]{2});
+
+        Recorder firstRecorder = new Recorder();
+        Recorder secondRecorder = new Recorder();
+        assertEquals(2, first.poll(firstRecorder));
+        //opened after the first frame
+        assertEquals(1, second.poll(secondRecorder));
+        assertArrayEquals(new byte[]{2}, secondRecorder.values.get(0));
+    }
+
+    @Test
+    public void wrapsAroundAndReportsOverrun() throws IOException {
+        ByteBuffer buffer = buffer(4, 8);
+        NotificationRingWriter writer = new NotificationRingWriter(buffer, 4, 8);
+        NotificationRingReader reader = NotificationRingReader.open(buffer);
+        Recorder recorder = new Recorder();
+
+        for (int i = 0; i < 10; i++) {
+            writer.write(UUID_A, new byte[]{(byte) i});
+        }
+
+        assertEquals(4, reader.poll(recorder));
+        assertEquals(6, recorder.lost);
+        assertArrayEquals(new byte[]{6}, recorder.values.get(0));
+        assertArrayEquals(new byte[]{9}, recorder.values.get(3));
+
+        //keeps up again after the overrun
+        writer.write(UUID_A, new byte[]{10});
+        assertEquals(1, reader.poll(recorder));
+        assertEquals(6, recorder.lost);
+    }
+
+    @Test
+    public void slotOverwrittenWhileReadingIsLost() throws IOException {
+        ByteBuffer buffer = buffer(2, 8);
+        NotificationRingWriter writer = new NotificationRingWriter(buffer, 2, 8);
+        final NotificationRingReader reader = NotificationRingReader.open(buffer);
+        writer.write(UUID_A, new byte[]{1});
+        writer.write(UUID_A, new byte[]{2});
+        //the writer laps the reader between publishing and reading slot 0
+        buffer.putLong(NotificationRing.HEADER_SIZE + NotificationRing.SEQ_OFFSET, NotificationRing.BUSY);
+
+        Recorder recorder = new Recorder();
+        assertEquals(1, reader.poll(recorder));
+        assertEquals(1, recorder.lost);
+        assertArrayEquals(new byte[]{2}, recorder.values.get(0));
+    }
+
+    @Test
+    public void oversizedValueIsRefused() {
+        ByteBuffer buffer = buffer(4, 8);
+        NotificationRingWriter writer = new NotificationRingWriter(buffer, 4, 8);
+
+        assertFalse(writer.write(UUID_A, new byte[9]));
+        assertTrue(writer.write(UUID_A, new byte[8]));
+        assertEquals(1, writer.getPublished());
+    }
+
+    @Test
+    public void framesCarryTheDeviceAddress() throws IOException {
+        ByteBuffer buffer = buffer(4, 8);
+        NotificationRingWriter writer = new NotificationRingWriter(buffer, 4, 8);
+        NotificationRingReader reader = NotificationRingReader.open(buffer);
+        Recorder recorder = new Recorder();
+
+        writer.write("AA:BB:CC:DD:EE:01", UUID_A, new byte[]{1});
+        writer.write(UUID_A, new byte[]{2});
+
+        assertEquals(2, reader.poll(recorder));
+        assertEquals("AA:BB:CC:DD:EE:01", recorder.addresses.get(0));
+        assertEquals(null, recorder.addresses.get(1));
+    }
+
+    @Test
+    public void readerStartsAtTheGivenSequence() throws IOException {
+        ByteBuffer buffer = buffer(4, 8);
+        NotificationRingWriter writer = new NotificationRingWriter(buffer, 4, 8);
+        writer.write(UUID_A, new byte[]{1});
+        long start = writer.getPublished();
+        //written for the reader before it mapped the ring
+        writer.write(UUID_A, new byte[]{2});
+        writer.write(UUID_A, new byte[]{3});
+
+        NotificationRingReader reader = NotificationRingReader.open(buffer, start);
+        Recorder recorder = new Recorder();
+        assertEquals(2, reader.poll(recorder));
+        assertArrayEquals(new byte[]{2}, recorder.values.get(0));
+
+        //a start which was already overwritten is an overrun
+        for (int i = 0; i < 6; i++) {
+            writer.write(UUID_A, new byte[]{(byte) i});
+        }
+        NotificationRingReader late = NotificationRingReader.open(buffer, start);
+        Recorder lateRecorder = new Recorder();
+        assertEquals(4, late.poll(lateRecorder));
+        assertEquals(4, lateRecorder.lost);
+    }
+
+    @Test(expected = IOException.class)
+    public void unformattedBufferIsRejected() throws IOException {
+        NotificationRingReader.open(buffer(4, 8));
+    }
+
+    private static class Recorder implements NotificationRingReader.Listener {
+        final List<String> addresses = new ArrayList<>();
+        final List<UUID> uuids = new ArrayList<>();
+        final List<byte[]> values = new ArrayList<>();
+        long lost = 0;
+
+        @Override
+        public void onNotification(String address, UUID uuid, byte[] value) {
+            addresses.add(address);
+            uuids.add(uuid);
+            values.add(value);
+        }
+
+        @Override
+        public void onOverrun(long lost) {
+            this.lost += lost;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.captain_miao.android.ble.stream;
+
+import com.github.captain_miao.android.ble.request.BleRequest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class NotificationStreamTest {
+
+    //runs the delayed tasks when the test says so
+    private static class ManualScheduler implements BleRequest.Scheduler {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public boolean postDelayed(Runnable runnable, long delayMillis) {
+            tasks.add(runnable);
+            return true;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            tasks.remove(runnable);
+        }
+
+        void tick() {
+            for (Runnable task : new ArrayList<>(tasks)) {
+                tasks.remove(task);
+                task.run();
+            }
+        }
+    }
+
+    //a characteristic which counts the on/off of its notifications
+    private static class Source extends NotificationStream<Integer> {
+        int enabled = 0;
+
+        Source(BleRequest.Scheduler scheduler) {
+            super(scheduler);
+        }
+
+        @Override
+        protected void onActive() {
+            enabled++;
+        }
+
+        @Override
+        protected void onInactive() {
+            enabled--;
+        }
+
+        void publish(int... values) {
+            for (int value : values) {
+                emit(value);
+            }
+        }
+
+        void finish() {
+            complete();
+        }
+    }
+
+    private static class Recorder<T> implements Subscriber<T> {
+        final List<T> values = new ArrayList<>();
+        boolean completed = false;
+
+        @Override
+        public void onNext(T value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    public void subscribersTurnTheSourceOnAndOff() {
+        Source source = new Source(null);
+        Subscription first = source.subscribe(new Recorder<Integer>());
+        Subscription second = source.map(new NotificationStream.Decoder<Integer, Integer>() {
+            @Override
+            public Integer decode(Integer value) {
+                return value;
+            }
+        }).subscribe(new Recorder<Integer>());
+        assertEquals(1, source.enabled);
+
+        first.cancel();
+        assertEquals(1, source.enabled);
+        second.cancel();
+        assertEquals(0, source.enabled);
+        assertFalse(source.hasSubscribers());
+    }
+
+    @Test
+    public void valuesWaitForDemand() {
+        Source source = new Source(null);
+        Recorder<Integer> recorder = new Recorder<>();
+        Subscription subscription = source.subscribe(recorder);
+
+        source.publish(1, 2, 3);
+        assertTrue(recorder.values.isEmpty());
+
+        subscription.request(2);
+        assertEquals(Arrays.asList(1, 2), recorder.values);
+        source.publish(4);
+        subscription.request(5);
+        assertEquals(Arrays.asList(1, 2, 3, 4), recorder.values);
+    }
+
+    @Test
+    public void oldestValueIsDroppedBeyondCapacity() {
+        Source source = new Source(null);
+        Recorder<Integer> recorder = new Recorder<>();
+        Subscription subscription = source.subscribe(recorder, 2);
+
+        source.publish(1, 2, 3);
+        subscription.request(Long.MAX_VALUE);
+
+        assertEquals(Arrays.asList(2, 3), recorder.values);
+        assertEquals(1, subscription.getDropped());
+    }
+
+    @Test
+    public void mapDropsNullResults() {
+        Source source = new Source(null);
+        Recorder<String> recorder = new Recorder<>();
+        source.map(new NotificationStream.Decoder<Integer, String>() {
+            @Override
+            public String decode(Integer value) {
+                return value % 2 == 0 ? "v" + value : null;
+            }
+        }).subscribe(recorder).request(Long.MAX_VALUE);
+
+        source.publish(1, 2, 3, 4);
+
+        assertEquals(Arrays.asList("v2", "v4"), recorder.values);
+    }
+
+    @Test
+    public void bufferEmitsFullListsAndTheRestOnComplete() {
+        Source source = new Source(null);
+        Recorder<List<Integer>> recorder = new Recorder<>();
+        source.buffer(2).subscribe(recorder).request(Long.MAX_VALUE);
+
+        source.publish(1, 2, 3);
+        assertEquals(1, recorder.values.size());
+        source.finish();
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3)), recorder.values);
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void sampleEmitsTheLatestValuePerTick() {
+        ManualScheduler scheduler = new ManualScheduler();
+        Source source = new Source(scheduler);
+        Recorder<Integer> recorder = new Recorder<>();
+        Subscription subscription = source.sample(100).subscribe(recorder);
+        subscription.request(Long.MAX_VALUE);
+
+        source.publish(1, 2, 3);
+        scheduler.tick();
+        scheduler.tick();
+        source.publish(4);
+        scheduler.tick();
+
+        assertEquals(Arrays.asList(3, 4), recorder.values);
+        subscription.cancel();
+        assertTrue(scheduler.tasks.isEmpty());
+        assertEquals(0, source.enabled);
+    }
+
+    @Test
+    public void windowEmitsTheValuesPerTick() {
+        ManualScheduler scheduler = new ManualScheduler();
+        Source source = new Source(scheduler);
+        Recorder<List<Integer>> recorder = new Recorder<>();
+        source.window(1000).subscribe(recorder).request(Long.MAX_VALUE);
+
+        source.publish(1, 2);
+        scheduler.tick();
+        scheduler.tick();
+        source.publish(3);
+        scheduler.tick();
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3)), recorder.values);
+    }
+
+    @Test
+    public void completeWaitsForPendingValues() {
+        Source source = new Source(null);
+        Recorder<Integer> recorder = new Recorder<>();
+        Subscription subscription = source.subscribe(recorder);
+
+        source.publish(1);
+        source.finish();
+        assertFalse(recorder.completed);
+        subscription.request(1);
+
+        assertEquals(Arrays.asList(1), recorder.values);
+        assertTrue(recorder.completed);
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.captain_miao.android.ble.subscription;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class SubscriptionIndexTest {
+    private static final UUID UUID_A = UUID.fromString("0000fff1-0000-1000-8000-00805f9b34fb");
+    private static final UUID UUID_B = UUID.fromString("0000fff2-0000-1000-8000-00805f9b34fb");
+    private static final int NOTIFICATION = BleConstants.MSG_BLE_ID_CHARACTERISTIC_NOTIFICATION;
+    private static final int RSSI = BleConstants.MSG_BLE_ID_READ_REMOTE_RSSI;
+
+    private static List<String> collect(SubscriptionIndex<String> index, int event, UUID uuid) {
+        List<String> out = new ArrayList<>();
+        index.collect(event, uuid, out);
+        return out;
+    }
+
+    private static SubscriptionIndex<String> threeClients() {
+        SubscriptionIndex<String> index = new SubscriptionIndex<>();
+        index.put("ui", SubscriptionFilter.ALL);
+        index.put("logger", SubscriptionFilter.of(new int[]{NOTIFICATION}, UUID_A));
+        index.put("sync", SubscriptionFilter.of(new int[]{NOTIFICATION, RSSI}));
+        return index;
+    }
+
+    @Test
+    public void routesByEventAndUuid() {
+        SubscriptionIndex<String> index = threeClients();
+
+        assertEquals(new HashSet<>(Arrays.asList("ui", "logger", "sync")),
+                new HashSet<>(collect(index, NOTIFICATION, UUID_A)));
+        assertEquals(new HashSet<>(Arrays.asList("ui", "sync")),
+                new HashSet<>(collect(index, NOTIFICATION, UUID_B)));
+        assertEquals(new HashSet<>(Arrays.asList("ui", "sync")),
+                new HashSet<>(collect(index, RSSI, null)));
+        assertEquals(Arrays.asList("ui"),
+                collect(index, BleConstants.MSG_BLE_ID_CHARACTERISTIC_WRITE, UUID_A));
+    }
+
+    @Test
+    public void uuidFilterKeepsEventsWithoutUuid() {
+        SubscriptionIndex<String> index = new SubscriptionIndex<>();
+        index.put("logger", SubscriptionFilter.of(new int[]{NOTIFICATION, RSSI}, UUID_A));
+
+        assertEquals(Arrays.asList("logger"), collect(index, RSSI, null));
+        assertTrue(collect(index, NOTIFICATION, UUID_B).isEmpty());
+    }
+
+    @Test
+    public void connectionStateGoesToEveryClient() {
+        SubscriptionIndex<String> index = threeClients();
+
+        assertEquals(3, collect(index, BleConstants.BLE_MSG_ID_CONNECTION_STATE_CHANGED, null).size());
+    }
+
+    @Test
+    public void putReplacesTheFilter() {
+        SubscriptionIndex<String> index = threeClients();
+        index.put("logger", SubscriptionFilter.of(new int[]{RSSI}));
+
+        assertEquals(3, index.size());
+        assertFalse(collect(index, NOTIFICATION, UUID_A).contains("logger"));
+        assertTrue(collect(index, RSSI, null).contains("logger"));
+    }
+
+    @Test
+    public void removedClientGetsNothing() {
+        SubscriptionIndex<String> index = threeClients();
+        index.remove("logger");
+        index.remove("sync");
+        index.remove("unknown");
+
+        assertFalse(index.contains("logger"));
+        assertEquals(Arrays.asList("ui"), collect(index, NOTIFICATION, UUID_A));
+        assertEquals(Arrays.asList("ui"), collect(index, RSSI, null));
+    }
+
+    @Test
+    public void filterAccepts() {
+        SubscriptionFilter filter = SubscriptionFilter.of(new int[]{NOTIFICATION}, UUID_A);
+
+        assertTrue(filter.accepts(NOTIFICATION, UUID_A));
+        assertFalse(filter.accepts(NOTIFICATION, UUID_B));
+        assertFalse(filter.accepts(RSSI, null));
+        assertTrue(filter.accepts(BleConstants.BLE_MSG_ID_CONNECTION_STATE_CHANGED, null));
+        assertTrue(SubscriptionFilter.ALL.accepts(RSSI, null));
+    }
+}
@@ -0,0 +1,225 @@
+package com.github.captain_miao.android.ble.transfer;
+
+import com.github.captain_miao.android.ble.constant.BleConstants;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class BulkTransferTest {
+
+    private static byte[] payload(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void transfersWholePayloadWithinWindow() {
+        byte[] data = payload(10000);
+        RecordingListener listener = new RecordingListener();
+        BulkTransfer transfer = new BulkTransfer(TransferSource.fromBytes(data))
+                .setWindow(4)
+                .setListener(listener);
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.connect(transfer);
+
+        assertTrue(transfer.start(peripheral, 20));
+        peripheral.deliverAll();
+
+        assertTrue(transfer.isCompleted());
+        assertArrayEquals(data, peripheral.getReceived());
+        assertEquals(4, peripheral.getMaxQueued());
+        assertEquals(20, peripheral.getMaxPacket());
+        assertEquals(0, listener.completedStatus);
+        assertEquals(data.length, listener.lastProgress);
+        //one percent steps plus the final one
+        assertTrue(listener.progressCount <= 101);
+    }
+
+    @Test
+    public void resumesAfterLinkLossWithLargerPackets() {
+        byte[] data = payload(5000);
+        RecordingListener listener = new RecordingListener();
+        BulkTransfer transfer = new BulkTransfer(TransferSource.fromBytes(data)).setListener(listener);
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.connect(transfer);
+
+        transfer.start(peripheral, 20);
+        peripheral.deliver(100);
+        peripheral.disconnect();
+
+        assertTrue(transfer.isSuspended());
+        assertEquals(2000, transfer.getCheckpoint());
+        assertEquals(2000, listener.suspendedCheckpoint);
+
+        //next connection negotiated a larger MTU
+        assertTrue(transfer.start(peripheral, 244));
+        peripheral.deliverAll();
+
+        assertTrue(transfer.isCompleted());
+        assertArrayEquals(data, peripheral.getReceived());
+        assertEquals(244, peripheral.getMaxPacket());
+    }
+
+    @Test
+    public void resumesFromCheckpointInNewTransfer() {
+        byte[] data = payload(3000);
+        BulkTransfer first = new BulkTransfer(TransferSource.fromBytes(data));
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.connect(first);
+        first.start(peripheral, 20);
+        peripheral.deliver(37);
+        peripheral.disconnect();
+        long checkpoint = first.getCheckpoint();
+
+        //e.g. after a restart of the process, the stream can not rewind
+        BulkTransfer second = new BulkTransfer(
+                TransferSource.fromStream(new ByteArrayInputStream(data), data.length), checkpoint);
+        peripheral.connect(second);
+        assertTrue(second.start(peripheral, 20));
+        peripheral.deliverAll();
+
+        assertTrue(second.isCompleted());
+        assertArrayEquals(data, peripheral.getReceived());
+    }
+
+    @Test
+    public void transfersFile() throws Exception {
+        byte[] data = payload(4096);
+        File file = File.createTempFile("bulk", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+
+        BulkTransfer transfer = new BulkTransfer(TransferSource.fromFile(file), 1024);
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.connect(transfer);
+        transfer.start(peripheral, 180);
+        peripheral.deliverAll();
+
+        assertTrue(transfer.isCompleted());
+        assertArrayEquals(Arrays.copyOfRange(data, 1024, data.length), peripheral.getReceived());
+    }
+
+    @Test
+    public void retriesWhenStackIsBusy() {
+        byte[] data = payload(2000);
+        BulkTransfer transfer = new BulkTransfer(TransferSource.fromBytes(data)).setWindow(8);
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.setCapacity(2);
+        peripheral.connect(transfer);
+
+        transfer.start(peripheral, 20);
+        peripheral.deliverAll();
+
+        assertTrue(transfer.isCompleted());
+        assertArrayEquals(data, peripheral.getReceived());
+        assertEquals(2, peripheral.getMaxQueued());
+    }
+
+    @Test
+    public void suspendsWhenNothingIsAccepted() {
+        BulkTransfer transfer = new BulkTransfer(TransferSource.fromBytes(payload(100)));
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.setCapacity(0);
+        peripheral.connect(transfer);
+
+        assertFalse(transfer.start(peripheral, 20));
+        assertTrue(transfer.isSuspended());
+        assertEquals(BleConstants.GATT_TRANSFER_REFUSED, transfer.getStatus());
+        assertEquals(0, transfer.getCheckpoint());
+    }
+
+    @Test
+    public void suspendsOnWriteError() {
+        byte[] data = payload(1000);
+        BulkTransfer transfer = new BulkTransfer(TransferSource.fromBytes(data));
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.connect(transfer);
+
+        transfer.start(peripheral, 20);
+        peripheral.deliver(10);
+        peripheral.fail(133);
+
+        assertTrue(transfer.isSuspended());
+        assertEquals(133, transfer.getStatus());
+        assertEquals(200, transfer.getCheckpoint());
+
+        transfer.start(peripheral, 20);
+        peripheral.deliverAll();
+        assertArrayEquals(data, peripheral.getReceived());
+    }
+
+    @Test
+    public void completesWithErrorWhenSourceIsShort() {
+        byte[] data = payload(100);
+        RecordingListener listener = new RecordingListener();
+        BulkTransfer transfer = new BulkTransfer(
+                TransferSource.fromStream(new ByteArrayInputStream(data), 200)).setListener(listener);
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.connect(transfer);
+
+        transfer.start(peripheral, 20);
+        peripheral.deliverAll();
+
+        assertTrue(transfer.isCompleted());
+        assertEquals(BleConstants.GATT_TRANSFER_SOURCE_ERROR, listener.completedStatus);
+        //stops at the read error, packets still in flight are not counted
+        assertTrue(transfer.getCheckpoint() < 100);
+    }
+
+    @Test
+    public void cancelStopsSending() {
+        BulkTransfer transfer = new BulkTransfer(TransferSource.fromBytes(payload(1000)));
+        SimulatedPeripheral peripheral = new SimulatedPeripheral();
+        peripheral.connect(transfer);
+
+        transfer.start(peripheral, 20);
+        peripheral.deliver(5);
+        transfer.cancel();
+        peripheral.deliverAll();
+
+        assertTrue(transfer.isCompleted());
+        assertEquals(BleConstants.GATT_TRANSFER_CANCELLED, transfer.getStatus());
+        assertEquals(100, transfer.getCheckpoint());
+        assertFalse(transfer.start(peripheral, 20));
+    }
+
+    private static class RecordingListener implements TransferListener {
+        int progressCount = 0;
+        long lastProgress = -1;
+        long suspendedCheckpoint = -1;
+        int completedStatus = Integer.MIN_VALUE;
+
+        @Override
+        public void onProgress(long bytes, long total, long bytesPerSecond) {
+            progressCount++;
+            lastProgress = bytes;
+        }
+
+        @Override
+        public void onSuspended(int status, long checkpoint) {
+            suspendedCheckpoint = checkpoint;
+        }
+
+        @Override
+        public void onCompleted(int status, long bytes) {
+            completedStatus = status;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.captain_miao.android.ble.transfer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedList;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * a characteristic written without response: accepted packets wait in the controller
+ * until deliver(), packets still waiting are lost on disconnect().
+ */
+class SimulatedPeripheral implements PacketSink {
+    private final LinkedList<byte[]> mQueued = new LinkedList<>();
+    private final ByteArrayOutputStream mReceived = new ByteArrayOutputStream();
+    //packets the controller holds before it refuses more
+    private int mCapacity = Integer.MAX_VALUE;
+    private int mMaxQueued = 0;
+    private int mMaxPacket = 0;
+    private BulkTransfer mTransfer;
+
+    void connect(BulkTransfer transfer) {
+        this.mTransfer = transfer;
+    }
+
+    void setCapacity(int capacity) {
+        this.mCapacity = capacity;
+    }
+
+    @Override
+    public boolean send(byte[] packet) {
+        if (mQueued.size() >= mCapacity) {
+            return false;
+        }
+        mQueued.add(packet.clone());
+        mMaxQueued = Math.max(mMaxQueued, mQueued.size());
+        mMaxPacket = Math.max(mMaxPacket, packet.length);
+        return true;
+    }
+
+    /**
+     * one packet goes over the air, the stack reports onCharacteristicWrite
+     */
+    boolean deliver() {
+        if (mQueued.isEmpty()) {
+            return false;
+        }
+        byte[] packet = mQueued.removeFirst();
+        mReceived.write(packet, 0, packet.length);
+        mTransfer.onPacketSent(0);
+        return true;
+    }
+
+    void deliverAll() {
+        while (deliver()) {
+            //until the transfer stops sending
+        }
+    }
+
+    void deliver(int packets) {
+        for (int i = 0; i < packets && deliver(); i++) {
+            //one connection event
+        }
+    }
+
+    void fail(int status) {
+        mQueued.removeFirst();
+        mTransfer.onPacketSent(status);
+        mQueued.clear();
+    }
+
+    void disconnect() {
+        mQueued.clear();
+        mTransfer.suspend(-1);
+    }
+
+    byte[] getReceived() {
+        return mReceived.toByteArray();
+    }
+
+    int getMaxQueued() {
+        return mMaxQueued;
+    }
+
+    int getMaxPacket() {
+        return mMaxPacket;
+    }
+}
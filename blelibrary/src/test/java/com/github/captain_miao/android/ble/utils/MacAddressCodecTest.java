@@ -0,0 +1,30 @@
+package com.github.captain_miao.android.ble.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class MacAddressCodecTest {
+
+    @Test
+    public void roundTripIsUpperCase() {
+        long value = MacAddressCodec.toLong("0a:1B:2c:3D:4e:FF");
+
+        assertEquals(0x0a1b2c3d4effL, value);
+        assertEquals("0A:1B:2C:3D:4E:FF", MacAddressCodec.toString(value));
+    }
+
+    @Test
+    public void malformedAddressIsNone() {
+        assertEquals(MacAddressCodec.NONE, MacAddressCodec.toLong(null));
+        assertEquals(MacAddressCodec.NONE, MacAddressCodec.toLong("AA:BB:CC:DD:EE"));
+        assertEquals(MacAddressCodec.NONE, MacAddressCodec.toLong("AA-BB-CC-DD-EE-FF"));
+        assertEquals(MacAddressCodec.NONE, MacAddressCodec.toLong("AA:BB:CC:DD:EE:GG"));
+        assertNull(MacAddressCodec.toString(MacAddressCodec.NONE));
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.captain_miao.android.ble.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ *
+ * what a UUID in a message costs: Parcel#writeSerializable runs an ObjectOutputStream per value
+ * (protocol version 1), UuidLongs puts two longs (version 2).
+ * the numbers are in the assertion messages.
+ */
+public class UuidLongsBenchmarkTest {
+    private static final int ROUNDS = 20000;
+    private static final String KEY = "characteristic_uuid";
+
+    //a parcel of primitives: the longs are kept unboxed in slots reused by every round
+    private static class PrimitiveEntries implements UuidLongs.Entries {
+        private final String[] mKeys = new String[2];
+        private final long[] mValues = new long[2];
+        private int mSize = 0;
+
+        void clear() {
+            mSize = 0;
+        }
+
+        private int indexOf(String key) {
+            for (int i = 0; i < mSize; i++) {
+                if (mKeys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void putLong(String key, long value) {
+            int index = indexOf(key);
+            if (index < 0) {
+                index = mSize++;
+                mKeys[index] = key;
+            }
+            mValues[index] = value;
+        }
+
+        @Override
+        public long getLong(String key) {
+            int index = indexOf(key);
+            return index < 0 ? 0 : mValues[index];
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public void putSerializable(String key, Serializable value) {
+            throw new UnsupportedOperationException("version 2 only");
+        }
+
+        @Override
+        public Serializable getSerializable(String key) {
+            return null;
+        }
+    }
+
+    private static byte[] serialize(UUID uuid) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(uuid);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static UUID deserialize(byte[] data) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+        return (UUID) in.readObject();
+    }
+
+    //-1 if the vm has no allocation counter
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static UUID compactRoundTrip(PrimitiveEntries entries, UUID uuid) {
+        entries.clear();
+        UuidLongs.putUuid(entries, KEY, uuid, false);
+        return UuidLongs.getUuid(entries, KEY);
+    }
+
+    @Test
+    public void compactEncodingIsSmaller() throws Exception {
+        int serializable = serialize(UUID.randomUUID()).length;
+        assertTrue("uuid on the wire: serializable " + serializable + " bytes, compact 16 bytes",
+                serializable > 4 * 16);
+    }
+
+    @Test
+    public void compactEncodingAllocatesLess() throws Exception {
+        assumeTrue(allocatedBytes() >= 0);
+        UUID uuid = UUID.randomUUID();
+        PrimitiveEntries entries = new PrimitiveEntries();
+        //warm up both paths
+        for (int i = 0; i < 1000; i++) {
+            deserialize(serialize(uuid));
+            compactRoundTrip(entries, uuid);
+        }
+
+        long start = allocatedBytes();
+        long startTime = System.nanoTime();
+        UUID last = null;
+        for (int i = 0; i < ROUNDS; i++) {
+            last = deserialize(serialize(uuid));
+        }
+        long serializableTime = System.nanoTime() - startTime;
+        long serializableBytes = allocatedBytes() - start;
+        assertEquals(uuid, last);
+
+        start = allocatedBytes();
+        startTime = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            last = compactRoundTrip(entries, uuid);
+        }
+        long compactTime = System.nanoTime() - startTime;
+        long compactBytes = allocatedBytes() - start;
+        assertEquals(uuid, last);
+
+        String result = "per uuid put+get: serializable " + serializableBytes / ROUNDS + " B allocated, "
+                + serializableTime / ROUNDS + " ns; UuidLongs " + compactBytes / ROUNDS + " B allocated, "
+                + compactTime / ROUNDS + " ns";
+        assertTrue(result, compactBytes * 10 < serializableBytes);
+    }
+}
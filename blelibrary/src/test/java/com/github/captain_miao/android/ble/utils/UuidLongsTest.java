@@ -0,0 +1,99 @@
+package com.github.captain_miao.android.ble.utils;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author YanLu
+ * @since  2026-10-16
+ */
+public class UuidLongsTest {
+    private static final UUID UUID_A = UUID.fromString("0000fff1-0000-1000-8000-00805f9b34fb");
+    private static final String KEY = "characteristic_uuid";
+
+    //a Bundle as a map
+    private static class MapEntries implements UuidLongs.Entries {
+        final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public void putLong(String key, long value) {
+            values.put(key, value);
+        }
+
+        @Override
+        public long getLong(String key) {
+            Object value = values.get(key);
+            return value instanceof Long ? (Long) value : 0L;
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public void putSerializable(String key, Serializable value) {
+            values.put(key, value);
+        }
+
+        @Override
+        public Serializable getSerializable(String key) {
+            Object value = values.get(key);
+            return value instanceof Serializable ? (Serializable) value : null;
+        }
+    }
+
+    @Test
+    public void compactRoundTrip() {
+        MapEntries entries = new MapEntries();
+        UuidLongs.putUuid(entries, KEY, UUID_A, false);
+
+        assertEquals(UUID_A, UuidLongs.getUuid(entries, KEY));
+        //version 2 only carries the two longs
+        assertFalse(entries.containsKey(KEY));
+        assertEquals(2, entries.values.size());
+    }
+
+    @Test
+    public void legacyPeerAlsoGetsTheSerializable() {
+        MapEntries entries = new MapEntries();
+        UuidLongs.putUuid(entries, KEY, UUID_A, true);
+
+        assertEquals(UUID_A, entries.getSerializable(KEY));
+        assertEquals(UUID_A, UuidLongs.getUuid(entries, KEY));
+    }
+
+    @Test
+    public void messageOfAVersion1PeerIsRead() {
+        MapEntries entries = new MapEntries();
+        entries.putSerializable(KEY, UUID_A);
+
+        assertEquals(UUID_A, UuidLongs.getUuid(entries, KEY));
+    }
+
+    @Test
+    public void nullIsNotPut() {
+        MapEntries entries = new MapEntries();
+        UuidLongs.putUuid(entries, KEY, null, true);
+
+        assertTrue(entries.values.isEmpty());
+        assertNull(UuidLongs.getUuid(entries, KEY));
+    }
+
+    @Test
+    public void otherSerializableIsNoUuid() {
+        MapEntries entries = new MapEntries();
+        entries.putSerializable(KEY, "0000fff1-0000-1000-8000-00805f9b34fb");
+
+        assertNull(UuidLongs.getUuid(entries, KEY));
+    }
+}
@@ -192,6 +192,12 @@ public class BleDeviceActivity extends BaseActivity implements View.OnClickListe
             appendLog("onCharWrite: " + BleUtils.getGattStatus(status));
         }
 
+        @Override
+        public void onMtuChanged(int mtu, int status) {
+            //any length can be written, the service splits it to the MTU
+            appendLog("onMtuChanged: " + mtu + " " + BleUtils.getGattStatus(status));
+        }
+
         @Override
         public void onConnectionStateChange(int status, int newStatus) {
             BleConnectState connectState = BleConnectState.getBleConnectState(newStatus);
@@ -261,9 +267,7 @@ public class BleDeviceActivity extends BaseActivity implements View.OnClickListe
                             public void onClick(View v) {
                                 String hex = hexEdit.getText().toString();
                                 if (!TextUtils.isEmpty(hex)) {
-                                    if (hex.length() > 20) {
-                                        AppToast.showCenter(BleDeviceActivity.this, R.string.app_tips_bluetooth_data_max_len);
-                                    } else if (hex.length() % 2 == 0) {
+                                    if (hex.length() % 2 == 0) {
                                         mBleHelper.writeCharacteristic(UUID.fromString(serviceUUID),
                                                 UUID.fromString(characteristicUUID),
                                                 HexUtil.hexStringToByteArray(hex));
@@ -515,7 +519,8 @@ public class BleDeviceActivity extends BaseActivity implements View.OnClickListe
             if (Build.VERSION.SDK_INT >= 21) {
                 widgetColor = DialogUtils.resolveColor(this, android.R.attr.colorAccent, widgetColor);
             }
-            final boolean isDisabled = currentLength > 20;
+            //two hex chars per byte
+            final boolean isDisabled = currentLength % 2 != 0;
             final int colorText = isDisabled ? ContextCompat.getColor(this, R.color.red)
                     : -1;
             final int colorWidget = isDisabled ? ContextCompat.getColor(this, R.color.red)
@@ -139,18 +139,14 @@ public class DevicesCommandFragment extends BaseFragment {
                             String name = nameEdit.getText().toString();
                             String hex = hexEdit.getText().toString();
                             if (!TextUtils.isEmpty(hex)) {
-                                if (hex.length() > 20) {
-                                    AppToast.showCenter(getActivity(), R.string.app_tips_bluetooth_data_max_len);
+                                if (!TextUtils.isEmpty(name)) {
+                                    BleCommandInfo cmd = new BleCommandInfo(name, hex);
+                                    cmd.save();
+                                    mAdapter.append(cmd);
+                                    mAdapter.notifyItemInserted(mAdapter.getItemCount() - 1);
+                                    dialog.dismiss();
                                 } else {
-                                    if (!TextUtils.isEmpty(name)) {
-                                        BleCommandInfo cmd = new BleCommandInfo(name, hex);
-                                        cmd.save();
-                                        mAdapter.append(cmd);
-                                        mAdapter.notifyItemInserted(mAdapter.getItemCount() - 1);
-                                        dialog.dismiss();
-                                    } else {
-                                        AppToast.showCenter(getActivity(), R.string.app_tips_name_empty);
-                                    }
+                                    AppToast.showCenter(getActivity(), R.string.app_tips_name_empty);
                                 }
                             } else {
                                 AppToast.showCenter(getActivity(), R.string.app_tips_command_empty);
@@ -172,7 +168,8 @@ public class DevicesCommandFragment extends BaseFragment {
             if (Build.VERSION.SDK_INT >= 21) {
                 widgetColor = DialogUtils.resolveColor(getActivity(), android.R.attr.colorAccent, widgetColor);
             }
-            final boolean isDisabled = currentLength > 20;
+            //two hex chars per byte
+            final boolean isDisabled = currentLength % 2 != 0;
             final int colorText = isDisabled ? ContextCompat.getColor(getActivity(), R.color.red)
                     : -1;
             final int colorWidget = isDisabled ? ContextCompat.getColor(getActivity(), R.color.red)